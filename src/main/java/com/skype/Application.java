@@ -147,7 +147,7 @@ public final class Application extends SkypeObject {
                     Utils.checkError(response);
                 }
                 if (!isInitialized) {
-                    Connector.getInstance().addConnectorListener(dataListener, false, true);
+                    Connector.getInstance().addConnectorListener(dataListener, new String[] {"APPLICATION " + name}, false, true);
                     Runtime.getRuntime().addShutdownHook(shutdownHookForFinish);
                     isInitialized = true;
                 }
@@ -238,7 +238,7 @@ public final class Application extends SkypeObject {
                     }
                 };
                 try {
-                    Connector.getInstance().addConnectorListener(connectorListener);
+                    Connector.getInstance().addConnectorListener(connectorListener, new String[] {"APPLICATION " + getName()});
                     synchronized(wait) {
                         for(String skypeId: ids) {
                             if(skypeId != null) {
@@ -526,27 +526,25 @@ public final class Application extends SkypeObject {
          * @param event The event and message that triggered this listener.
          */
         public void messageReceived(ConnectorMessageEvent event) {
-            String message = event.getMessage();
-            String streamsHeader = "APPLICATION " + getName() + " STREAMS ";
-            if(message.startsWith(streamsHeader)) {
-                String streamIds = message.substring(streamsHeader.length());
-                fireStreamEvents(streamIds);
+            ConnectorNotification notification = event.getNotification();
+            if(!notification.isObjectType("APPLICATION") || !notification.isObjectId(getName()) || notification.getPropertyName() == null) {
+                return;
             }
-            final String dataHeader = "APPLICATION " + getName() + " ";
-            if(message.startsWith(dataHeader)) {
-                handleData(message.substring(dataHeader.length()));
+            if(notification.isPropertyName("STREAMS")) {
+                fireStreamEvents(Utils.convertNullToEmptyString(notification.getPropertyValue()));
             }
+            handleData(notification.getPropertyName(), notification.getPropertyValue());
         }
 
         /**
          * This method will process the inner data of a data message.
          * 
-         * @param dataResponse the received data.
+         * @param dataType the type of the received data.
+         * @param data the received data.
          */
-        private void handleData(final String dataResponse) {
+        private void handleData(final String dataType, final String data) {
             try {
-                if(isReceivedText(dataResponse)) {
-                    String data = dataResponse.substring("RECEIVED ".length());
+                if(isReceivedText(dataType, data)) {
                     String streamId = data.substring(0, data.indexOf('='));
                     String dataHeader = "ALTER APPLICATION " + getName() + " READ " + streamId;
                     String response = Connector.getInstance().executeWithId(dataHeader, dataHeader);
@@ -557,8 +555,7 @@ public final class Application extends SkypeObject {
                             streams.get(streamId).fireTextReceived(text);
                         }
                     }
-                } else if(isReceivedDatagram(dataResponse)) {
-                    String data = dataResponse.substring("DATAGRAM ".length());
+                } else if(isReceivedDatagram(dataType, data)) {
                     String streamId = data.substring(0, data.indexOf(' '));
                     String datagram = data.substring(data.indexOf(' ') + 1);
                     synchronized(streams) {
@@ -575,21 +572,23 @@ public final class Application extends SkypeObject {
         /**
          * Check if received data is text instead of DATAGRAM.
          * 
-         * @param dataResponse the data to check.
+         * @param dataType the type of the data to check.
+         * @param data the data to check.
          * @return true if the data is text.
          */
-        private boolean isReceivedText(final String dataResponse) {
-            return dataResponse.startsWith("RECEIVED ") && ("RECEIVED ".length() < dataResponse.length());
+        private boolean isReceivedText(final String dataType, final String data) {
+            return "RECEIVED".equals(dataType) && data != null && data.length() > 0;
         }
 
         /**
          * Check if received data is DATAGRAM instead of text.
          * 
-         * @param dataResponse the data to check.
+         * @param dataType the type of the data to check.
+         * @param data the data to check.
          * @return true if the data is DATAGRAM.
          */
-        private boolean isReceivedDatagram(final String dataResponse) {
-            return dataResponse.startsWith("DATAGRAM ");
+        private boolean isReceivedDatagram(final String dataType, final String data) {
+            return "DATAGRAM".equals(dataType) && data != null;
         }
     }
 
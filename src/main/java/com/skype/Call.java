@@ -25,11 +25,14 @@ package com.skype;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.skype.connector.Connector;
 import com.skype.connector.ConnectorException;
@@ -44,7 +47,21 @@ public final class Call extends SkypeObject {
     /**
      * Collection of Call objects, filled at runtime when new CALL objects are created (by events or by application).
      */
-    private static final Map<String, Call> calls = new HashMap<String, Call>();
+    static final SkypeObjectRegistry<Call> calls = new SkypeObjectRegistry<Call>();
+
+    /**
+     * Factory of Call objects.
+     */
+    private static final SkypeObjectRegistry.Factory<Call> FACTORY = new SkypeObjectRegistry.Factory<Call>() {
+        public Call create(String id) {
+            return new Call(id);
+        }
+    };
+
+    /** The properties which never change once the CALL exists. */
+    private static final Set<String> IMMUTABLE_PROPERTIES = new HashSet<String>(Arrays.asList(new String[] {
+        "TIMESTAMP", "PARTNER_HANDLE", "PARTNER_DISPNAME", "TYPE"
+    }));
     
     /**
      * Returns the Call object by the specified id.
@@ -53,12 +70,7 @@ public final class Call extends SkypeObject {
      * @return Call object with ID == id.
      */
     static Call getInstance(final String id) {
-        synchronized(calls) {
-            if (!calls.containsKey(id)) {
-                calls.put(id, new Call(id));
-            }
-            return calls.get(id);
-        }
+        return calls.getInstance(id, FACTORY);
     }
 
     /**
@@ -69,12 +81,11 @@ public final class Call extends SkypeObject {
      * @return Call object with ID == id.
      */
     static Call getInstance(final String id, final CallMonitorListener callListener) {
-        synchronized (calls) {
-            if (!calls.containsKey(id)) {
-                calls.put(id, new Call(id, callListener));
+        return calls.getInstance(id, new SkypeObjectRegistry.Factory<Call>() {
+            public Call create(String newId) {
+                return new Call(newId, callListener);
             }
-            return calls.get(id);
-        }
+        });
     }
     
     /**
@@ -181,6 +192,11 @@ public final class Call extends SkypeObject {
      */
     private final String id;
 
+    /**
+     * Cached values of the properties which never change.
+     */
+    private final PropertyCache propertyCache = new PropertyCache();
+
     /**
      * List of listeners to CALL objects.
      */
@@ -472,6 +488,10 @@ public final class Call extends SkypeObject {
      * @throws SkypeException when connection is bad.
      */
     public Status getStatus() throws SkypeException {
+        String value = getTableProperty("STATUS");
+        if (value != null) {
+            return Status.valueOf(value);
+        }
         // call Utils#getPropertyWithCommandId(String, String, String) to prevent new event notification
         return Status.valueOf(Utils.getPropertyWithCommandId("CALL", getId(), "STATUS"));
     }
@@ -600,7 +620,52 @@ public final class Call extends SkypeObject {
      * @throws SkypeException when connection is bad.
      */
     private String getProperty(final String name) throws SkypeException {
-        return Utils.getProperty("CALL", getId(), name);
+        String value = getTableProperty(name);
+        if (value != null) {
+            return value;
+        }
+        if (!IMMUTABLE_PROPERTIES.contains(name)) {
+            return Utils.getProperty("CALL", getId(), name);
+        }
+        value = propertyCache.get(name);
+        if (value == null) {
+            value = Utils.getProperty("CALL", getId(), name);
+            propertyCache.putIfAbsent(name, value, PropertyCache.NEVER_EXPIRES);
+        }
+        return value;
+    }
+
+    @Override
+    String getHydrationType() {
+        return "CALL";
+    }
+
+    @Override
+    String getHydrationId() {
+        return getId();
+    }
+
+    @Override
+    boolean isPropertyMissing(String name) {
+        return IMMUTABLE_PROPERTIES.contains(name) && propertyCache.get(name) == null;
+    }
+
+    @Override
+    void propertyHydrated(String name, String value) {
+        propertyCache.putIfAbsent(name, value, PropertyCache.NEVER_EXPIRES);
+    }
+
+    /**
+     * Gets a property from the call state table if it is started.
+     * @param name name of the property.
+     * @return value of the property or null if the table does not know it.
+     */
+    private String getTableProperty(final String name) {
+        CallStateTable table = Skype.callStateTable;
+        if (table == null) {
+            return null;
+        }
+        return table.getProperty(getId(), name);
     }
     
     /**
@@ -20,6 +20,7 @@ package com.skype;
 
 import com.skype.connector.AbstractConnectorListener;
 import com.skype.connector.ConnectorMessageEvent;
+import com.skype.connector.ConnectorNotification;
 
 /**
  * Monitor for CALL events.
@@ -36,16 +37,11 @@ public class CallConnectorListener extends AbstractConnectorListener {
     
     @Override
     public void messageReceived(ConnectorMessageEvent event) {
-        String message = event.getMessage();
-        if (message.startsWith("CALL ")) {
-            String data = message.substring("CALL ".length());
-            String id = data.substring(0, data.indexOf(' '));
-            String propertyNameAndValue = data.substring(data.indexOf(' ') + 1);
-            String propertyName = propertyNameAndValue.substring(0,
-                    propertyNameAndValue.indexOf(' '));
-            if ("STATUS".equals(propertyName)) {
-                String propertyValue = propertyNameAndValue
-                        .substring(propertyNameAndValue.indexOf(' ') + 1);
+        ConnectorNotification notification = event.getNotification();
+        if (notification.isObjectType("CALL")) {
+            String id = notification.getObjectId();
+            if (notification.isPropertyName("STATUS") && notification.getPropertyValue() != null) {
+                String propertyValue = notification.getPropertyValue();
                 Call.Status status = Call.Status.valueOf(propertyValue);
                 if (callMonitorListener != null){
                     Call call = Call.getInstance(id, callMonitorListener);
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ * 
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ * 
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API> 
+ * in your web site or documents.
+ * 
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.skype.connector.AbstractConnectorListener;
+import com.skype.connector.Connector;
+import com.skype.connector.ConnectorException;
+import com.skype.connector.ConnectorListener;
+import com.skype.connector.ConnectorMessageEvent;
+import com.skype.connector.ConnectorNotification;
+import com.skype.connector.ConnectorStatusEvent;
+
+/**
+ * Table of the state of the live calls, kept up to date by the CALL
+ * notifications of the Skype client.
+ * <p>
+ * A call enters the table with its first non-final status and leaves it when
+ * it is finished, missed, refused or failed. The queries and the getters of
+ * the {@link Call} objects in the table are answered locally, without any
+ * command sent to the Skype client.
+ * </p>
+ * @see Skype#getCallStateTable()
+ */
+public final class CallStateTable {
+    /** The status of the calls which are over. */
+    private static final Set<Call.Status> FINAL_STATUSES = EnumSet.of(
+            Call.Status.FAILED, Call.Status.FINISHED, Call.Status.MISSED, Call.Status.REFUSED,
+            Call.Status.BUSY, Call.Status.CANCELLED, Call.Status.VM_SENT, Call.Status.VM_CANCELLED,
+            Call.Status.VM_FAILED, Call.Status.TRANSFERRED);
+
+    /** The property values of the live calls, keyed by call ID then property name. */
+    private final ConcurrentMap<String, Map<String, String>> calls = new ConcurrentHashMap<String, Map<String, String>>();
+
+    /** CALL listener updating this table. */
+    private final ConnectorListener listener = new AbstractConnectorListener() {
+        @Override
+        public void messageReceived(ConnectorMessageEvent event) {
+            ConnectorNotification notification = event.getNotification();
+            if (notification.isObjectType("CALL") && notification.getPropertyValue() != null) {
+                String id = notification.getObjectId();
+                String name = notification.getPropertyName();
+                String value = notification.getPropertyValue();
+                if (pending != null) {
+                    synchronized (seedMutex) {
+                        if (pending != null) {
+                            pending.add(new String[] {id, name, value});
+                            return;
+                        }
+                    }
+                }
+                propertyNotified(id, name, value);
+            }
+        }
+
+        @Override
+        public void statusChanged(ConnectorStatusEvent event) {
+            if (event.getStatus() != Connector.Status.ATTACHED) {
+                // the next Skype.getCallStateTable() seeds a new table
+                Skype.stopCallStateTable(CallStateTable.this);
+            }
+        }
+    };
+
+    /** The connector the listener is added to. */
+    private volatile Connector connector;
+    /** The mutex object for the notifications received while seeding. */
+    private final Object seedMutex = new Object();
+    /** The notifications received while seeding, null once seeded. */
+    private volatile List<String[]> pending = new ArrayList<String[]>();
+
+    /**
+     * Constructor, use {@link Skype#getCallStateTable()} instead.
+     */
+    CallStateTable() {
+    }
+
+    /**
+     * Starts listening to the CALL notifications and adds the active calls.
+     * The notifications received while the active calls are read are applied
+     * after them, so a call finished meanwhile is not added back.
+     * @throws SkypeException when connection has gone bad.
+     */
+    void start() throws SkypeException {
+        connector = Connector.getInstance();
+        try {
+            connector.addConnectorListener(listener, new String[] {"CALL"});
+        } catch (ConnectorException e) {
+            Utils.convertToSkypeException(e);
+        }
+        try {
+            seed();
+        } catch (SkypeException e) {
+            stop();
+            throw e;
+        }
+        synchronized (seedMutex) {
+            for (String[] notification : pending) {
+                propertyNotified(notification[0], notification[1], notification[2]);
+            }
+            pending = null;
+        }
+    }
+
+    private void seed() throws SkypeException {
+        Call[] activeCalls = Skype.getAllActiveCalls();
+        if (activeCalls.length == 0) {
+            return;
+        }
+        String[] ids = new String[activeCalls.length];
+        String[] names = new String[activeCalls.length];
+        for (int i = 0; i < activeCalls.length; i++) {
+            ids[i] = activeCalls[i].getId();
+            names[i] = "STATUS";
+        }
+        String[] statuses = Utils.getPropertiesOfObjects("CALL", ids, names);
+        for (int i = 0; i < ids.length; i++) {
+            if (statuses[i] != null && !isFinal(statuses[i])) {
+                Map<String, String> call = new ConcurrentHashMap<String, String>();
+                call.put("STATUS", statuses[i]);
+                calls.putIfAbsent(ids[i], call);
+            }
+        }
+    }
+
+    /**
+     * Stops listening to the CALL notifications and removes all the calls.
+     */
+    void stop() {
+        Connector started = connector;
+        if (started != null) {
+            started.removeConnectorListener(listener);
+        }
+        calls.clear();
+    }
+
+    private void propertyNotified(String id, String name, String value) {
+        if ("STATUS".equals(name)) {
+            if (isFinal(value)) {
+                calls.remove(id);
+                return;
+            }
+            Map<String, String> call = calls.get(id);
+            if (call == null) {
+                Map<String, String> newCall = new ConcurrentHashMap<String, String>();
+                call = calls.putIfAbsent(id, newCall);
+                if (call == null) {
+                    call = newCall;
+                }
+            }
+            call.put(name, value);
+        } else {
+            Map<String, String> call = calls.get(id);
+            if (call != null) {
+                call.put(name, value);
+            }
+        }
+    }
+
+    private static boolean isFinal(String status) {
+        try {
+            return FINAL_STATUSES.contains(Call.Status.valueOf(status));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets a property of a live call.
+     * @param id the call ID.
+     * @param name the property name.
+     * @return the value or null if the call is not live or the property is not known.
+     */
+    String getProperty(String id, String name) {
+        Map<String, String> call = calls.get(id);
+        if (call == null) {
+            return null;
+        }
+        return call.get(name);
+    }
+
+    /**
+     * Gets the live calls in the specified status.
+     * @param status the status.
+     * @return the calls, maybe empty.
+     */
+    public Call[] getCalls(Call.Status status) {
+        Utils.checkNotNull("status", status);
+        String name = status.name();
+        List<Call> found = new ArrayList<Call>();
+        for (Map.Entry<String, Map<String, String>> entry : calls.entrySet()) {
+            if (name.equals(entry.getValue().get("STATUS"))) {
+                found.add(Call.getInstance(entry.getKey()));
+            }
+        }
+        return found.toArray(new Call[0]);
+    }
+
+    /**
+     * Gets all the live calls.
+     * @return the calls, maybe empty.
+     */
+    public Call[] getAllCalls() {
+        List<Call> found = new ArrayList<Call>();
+        for (String id : calls.keySet()) {
+            found.add(Call.getInstance(id));
+        }
+        return found.toArray(new Call[0]);
+    }
+
+    /**
+     * Gets the number of live calls.
+     * @return the number of calls.
+     */
+    public int getCallCount() {
+        return calls.size();
+    }
+}
@@ -23,13 +23,21 @@
 package com.skype;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import com.skype.connector.AbstractConnectorListener;
 import com.skype.connector.Connector;
 import com.skype.connector.ConnectorException;
+import com.skype.connector.ConnectorListener;
+import com.skype.connector.ConnectorMessageEvent;
+import com.skype.connector.ConnectorNotification;
+import com.skype.connector.ConnectorStatusEvent;
 
 /**
  * object representing Skype CHAT object.
@@ -40,7 +48,27 @@ public final class Chat extends SkypeObject {
     /**
      * Collection of Chat objects.
      */
-    private static final Map<String, Chat> chats = new HashMap<String, Chat>();
+    static final SkypeObjectRegistry<Chat> chats = new SkypeObjectRegistry<Chat>();
+
+    /**
+     * Factory of Chat objects.
+     */
+    private static final SkypeObjectRegistry.Factory<Chat> FACTORY = new SkypeObjectRegistry.Factory<Chat>() {
+        public Chat create(String id) {
+            return new Chat(id);
+        }
+    };
+
+    /** The properties kept up to date by the CHAT notifications when the property cache is enabled. */
+    private static final Set<String> CACHED_PROPERTIES = new LinkedHashSet<String>(Arrays.asList(new String[] {
+        "MEMBERS", "ACTIVEMEMBERS", "POSTERS", "TOPIC", "STATUS", "FRIENDLYNAME"
+    }));
+    /** propertyCacheListener lock. */
+    private static final Object propertyCacheListenerMutex = new Object();
+    /** CHAT listener updating the property caches, null if the cache is disabled. */
+    private static ConnectorListener propertyCacheListener;
+    /** The flag to check if the property cache is enabled. */
+    private static volatile boolean propertyCacheEnabled;
     
     /**
      * Returns the Chat object by the specified id.
@@ -48,40 +76,9 @@ public final class Chat extends SkypeObject {
      * @return Chat object with ID == id.
      */
     static Chat getInstance(final String id) {
-        synchronized(chats) {
-            if (!chats.containsKey(id)) {
-                Chat chat = new Chat(id);
-				chats.put(id, chat);
-            }
-            return chats.get(id);
-        }
+        return chats.getInstance(id, FACTORY);
     }
 
-	private final class ChatInstanceListener implements GlobalChatListener {
-		@Override
-		public void userLeft(Chat chat, User user) {
-			if (chat.equals(Chat.this)) {
-				for (ChatListener listener : instanceChatListeners) {
-					listener.userLeft(user);
-				}
-			}
-		}
-
-		@Override
-		public void userAdded(Chat chat, User user) {
-			if (chat.equals(Chat.this)) {
-				for (ChatListener listener : instanceChatListeners) {
-					listener.userAdded(user);
-				}
-			}
-		}
-
-		@Override
-		public void newChatStarted(Chat chat, User[] users) {
-		}
-	}
-
-
 	/**
 	 * Enumeration of the status of CHAT object.
 	 */
@@ -101,6 +98,17 @@ public final class Chat extends SkypeObject {
      */
     private final String id;
 
+    /**
+     * Cached property values, used only if the property cache is enabled.
+     */
+    private final PropertyCache propertyCache = new PropertyCache();
+
+    /**
+     * The IDs of the members, in the order of the client, or null if not loaded.
+     * The set is replaced, never modified, so it can be read without lock.
+     */
+    private volatile Set<String> memberIds;
+
     /**
      * Constructor, please use getChat() instead.
      * @param newId ID of this CHAT.
@@ -139,6 +147,138 @@ public final class Chat extends SkypeObject {
         return id;
     }
 
+    /**
+     * Enables or disables the property cache of all the chats.
+     * <p>
+     * When enabled, the members, the active members, the posters, the topic,
+     * the status and the window title of a chat are read at once the first
+     * time one of them is needed, then kept up to date by the CHAT
+     * notifications of the Skype client instead of being asked each time.
+     * The cache is cleared when the connection to the Skype client is lost.
+     * </p>
+     * @param on if true the property cache is enabled.
+     * @throws SkypeException when connection to Skype client has gone bad.
+     */
+    public static void setPropertyCacheEnabled(boolean on) throws SkypeException {
+        synchronized (propertyCacheListenerMutex) {
+            if (on && propertyCacheListener == null) {
+                ConnectorListener connectorListener = new AbstractConnectorListener() {
+                    @Override
+                    public void messageReceived(ConnectorMessageEvent event) {
+                        ConnectorNotification notification = event.getNotification();
+                        if (notification.isObjectType("CHAT") && notification.getPropertyValue() != null) {
+                            Chat chat = chats.get(notification.getObjectId());
+                            if (chat != null) {
+                                chat.propertyNotified(notification.getPropertyName(), notification.getPropertyValue());
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void statusChanged(ConnectorStatusEvent event) {
+                        if (event.getStatus() != Connector.Status.ATTACHED) {
+                            clearPropertyCaches();
+                        }
+                    }
+                };
+                try {
+                    Connector.getInstance().addConnectorListener(connectorListener, new String[] {"CHAT"});
+                    propertyCacheListener = connectorListener;
+                } catch(ConnectorException e) {
+                    Utils.convertToSkypeException(e);
+                }
+            } else if (!on && propertyCacheListener != null) {
+                Connector.getInstance().removeConnectorListener(propertyCacheListener);
+                propertyCacheListener = null;
+            }
+            propertyCacheEnabled = on;
+            if (!on) {
+                clearPropertyCaches();
+            }
+        }
+    }
+
+    @Override
+    String getHydrationType() {
+        return "CHAT";
+    }
+
+    @Override
+    String getHydrationId() {
+        return getId();
+    }
+
+    @Override
+    boolean isPropertyMissing(String name) {
+        return propertyCacheEnabled && CACHED_PROPERTIES.contains(name) && propertyCache.get(name) == null;
+    }
+
+    @Override
+    void propertyHydrated(String name, String value) {
+        propertyCache.putIfAbsent(name, value, PropertyCache.NEVER_EXPIRES);
+    }
+
+    private static void clearPropertyCaches() {
+        for (Chat chat : chats.values()) {
+            chat.propertyCache.clear();
+            chat.memberIds = null;
+        }
+    }
+
+    /**
+     * Updates the cache with a notified property value.
+     * @param name the property name.
+     * @param value the new value.
+     */
+    private void propertyNotified(String name, String value) {
+        if (CACHED_PROPERTIES.contains(name)) {
+            propertyCache.put(name, value, PropertyCache.NEVER_EXPIRES);
+            if ("MEMBERS".equals(name)) {
+                synchronized (propertyCache) {
+                    memberIds = toIdSet(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the member cache with a member added to this chat.
+     * @param user the added member.
+     */
+    void memberAdded(User user) {
+        synchronized (propertyCache) {
+            Set<String> members = memberIds;
+            if (members != null && !members.contains(user.getId())) {
+                Set<String> newMembers = new LinkedHashSet<String>(members);
+                newMembers.add(user.getId());
+                memberIds = Collections.unmodifiableSet(newMembers);
+            }
+        }
+    }
+
+    /**
+     * Updates the member cache with a member who left this chat.
+     * @param user the member who left.
+     */
+    void memberLeft(User user) {
+        synchronized (propertyCache) {
+            Set<String> members = memberIds;
+            if (members != null && members.contains(user.getId())) {
+                Set<String> newMembers = new LinkedHashSet<String>(members);
+                newMembers.remove(user.getId());
+                memberIds = Collections.unmodifiableSet(newMembers);
+            }
+        }
+    }
+
+    private static Set<String> toIdSet(String value) {
+        Set<String> ids = new LinkedHashSet<String>();
+        if (!"".equals(value)) {
+            ids.addAll(Arrays.asList(value.split(" ")));
+        }
+        return Collections.unmodifiableSet(ids);
+    }
+
     /**
      * Set the topic of this CHAT.
      * @param newValue The new topic.
@@ -150,10 +290,20 @@ public final class Chat extends SkypeObject {
             String responseHeader = "ALTER CHAT SETTOPIC";
             String response = Connector.getInstance().execute(command, responseHeader);
             Utils.checkError(response);
+            propertyCache.remove("TOPIC");
         } catch (ConnectorException e) {
             Utils.convertToSkypeException(e);
         }
     }
+
+    /**
+     * Return the topic of this CHAT.
+     * @return the topic.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    public String getTopic() throws SkypeException {
+        return getProperty("TOPIC");
+    }
     
     /**
      * Set the guidelines of this CHAT.
@@ -239,6 +389,29 @@ public final class Chat extends SkypeObject {
         }
     }
 
+    /**
+     * Get a cursor over all the chatmessages of this CHAT, in the order of
+     * {@link #getAllChatMessages()}. The messages are created and their
+     * properties read page by page.
+     * @return the cursor.
+     * @throws SkypeException when the connection is gone bad.
+     */
+    public ChatMessageCursor getChatMessageCursor() throws SkypeException {
+        return getChatMessageCursor(ChatMessageCursor.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Get a cursor over all the chatmessages of this CHAT, in the order of
+     * {@link #getAllChatMessages()}.
+     * @param pageSize the number of messages created and read at once.
+     * @return the cursor.
+     * @throws SkypeException when the connection is gone bad.
+     */
+    public ChatMessageCursor getChatMessageCursor(int pageSize) throws SkypeException {
+        String data = Utils.getProperty("CHAT", getId(), "CHATMESSAGES");
+        return new ChatMessageCursor(data, false, pageSize);
+    }
+
     /**
      * Get the most recent chatmessages for this CHAT.
      * @return array of recent chatmessages.
@@ -310,6 +483,9 @@ public final class Chat extends SkypeObject {
      * @throws SkypeException when the connection has gone bad.
      */
     public Status getStatus() throws SkypeException {
+        if (propertyCacheEnabled) {
+            return Status.valueOf(getCachedProperty("STATUS"));
+        }
         return Status.valueOf(Utils.getPropertyWithCommandId("CHAT", getId(), "STATUS"));
     }
 
@@ -337,9 +513,51 @@ public final class Chat extends SkypeObject {
      * @throws SkypeException when connection has gone bad.
      */
     public User[] getAllMembers() throws SkypeException {
+        if (propertyCacheEnabled) {
+            return toUsers(getMemberIds());
+        }
         return getUsersProperty("MEMBERS");
     }
 
+    /**
+     * Indicates if the specified user is a member of this CHAT.
+     * When the property cache is enabled, it is a local lookup.
+     * @param user the user to check.
+     * @return true if the user is a member.
+     * @throws SkypeException when connection has gone bad.
+     */
+    public boolean isMember(User user) throws SkypeException {
+        Utils.checkNotNull("user", user);
+        if (propertyCacheEnabled) {
+            return getMemberIds().contains(user.getId());
+        }
+        return Arrays.asList(getUsersProperty("MEMBERS")).contains(user);
+    }
+
+    private Set<String> getMemberIds() throws SkypeException {
+        Set<String> members = memberIds;
+        if (members == null) {
+            String value = getCachedProperty("MEMBERS");
+            synchronized (propertyCache) {
+                members = memberIds;
+                if (members == null) {
+                    members = toIdSet(value);
+                    memberIds = members;
+                }
+            }
+        }
+        return members;
+    }
+
+    private static User[] toUsers(Set<String> ids) {
+        User[] users = new User[ids.size()];
+        int i = 0;
+        for (String id : ids) {
+            users[i++] = User.getInstance(id);
+        }
+        return users;
+    }
+
     // TODO examine what are active members
     /**
      * Return all active members of CHAT.
@@ -359,28 +577,25 @@ public final class Chat extends SkypeObject {
         return Boolean.parseBoolean(getProperty("BOOKMARKED"));
     }
     
-    List<ChatListener> instanceChatListeners = new ArrayList<ChatListener>();
+    /**
+     * Add a listener for the members joining and leaving this CHAT.
+     * The events of this CHAT only reach the listeners of this CHAT.
+     * @param listener the listener to add.
+     * @throws SkypeException when the connection has gone bad.
+     */
     public void addListener(ChatListener listener) throws SkypeException
     {
-    	if (localListener == null)
-			createInstanceChatListenerDelegator();
-    	synchronized (instanceChatListeners) {
-    		instanceChatListeners.add(listener);
-		}
+        Utils.checkNotNull("listener", listener);
+        Skype.addChatListener(this, listener);
     }
     
+    /**
+     * Remove a listener added by {@link #addListener(ChatListener)}.
+     * @param listener the listener to remove.
+     */
     public void removeListener(ChatListener listener) {
-    	synchronized (instanceChatListeners) {
-    		instanceChatListeners.remove(listener);
-		}
+        Skype.removeChatListener(this, listener);
     }
-
-	private void createInstanceChatListenerDelegator() throws SkypeException {
-		localListener = new ChatInstanceListener();
-		Skype.addGlobalChatListener(localListener, this);
-	}
-    
-	private GlobalChatListener localListener;
   
 
     /**
@@ -407,6 +622,9 @@ public final class Chat extends SkypeObject {
 	 * @throws SkypeException when connection has gone bad.
 	 */
 	private User[] getUsersProperty(String name) throws SkypeException {
+	    if (propertyCacheEnabled && CACHED_PROPERTIES.contains(name)) {
+	        return toUsers(toIdSet(getCachedProperty(name)));
+	    }
 	    try {
 	        String command = "GET CHAT " + getId() + " " + name;
 	        String responseHeader = "CHAT " + id + " " + name + " ";
@@ -435,6 +653,37 @@ public final class Chat extends SkypeObject {
      * @throws SkypeException when the connection has gone bad or property ain't found.
      */
     private String getProperty(String name) throws SkypeException {
+        if (propertyCacheEnabled && CACHED_PROPERTIES.contains(name)) {
+            return getCachedProperty(name);
+        }
         return Utils.getProperty("CHAT", getId(), name);
     }
+
+    /**
+     * Return a cached property of this CHAT. The first time, all the cached
+     * properties are read at once.
+     * @param name propertyname.
+     * @return value of the property.
+     * @throws SkypeException when the connection has gone bad or property ain't found.
+     */
+    private String getCachedProperty(String name) throws SkypeException {
+        String value = propertyCache.get(name);
+        if (value != null) {
+            return value;
+        }
+        List<String> missing = new ArrayList<String>();
+        for (String cached : CACHED_PROPERTIES) {
+            if (propertyCache.get(cached) == null) {
+                missing.add(cached);
+            }
+        }
+        if (!missing.contains(name)) {
+            missing.add(name);
+        }
+        Map<String, String> values = Utils.getProperties("CHAT", getId(), missing.toArray(new String[0]));
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            propertyCache.putIfAbsent(entry.getKey(), entry.getValue(), PropertyCache.NEVER_EXPIRES);
+        }
+        return values.get(name);
+    }
 }
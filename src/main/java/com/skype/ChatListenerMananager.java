@@ -1,32 +1,222 @@
 package com.skype;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.skype.ChatMessage.LeaveReason;
 import com.skype.ChatMessage.Type;
+import com.skype.connector.CommandCallback;
+import com.skype.connector.Connector;
+import com.skype.connector.ConnectorException;
 
+/**
+ * Chat message listener firing the GlobalChatListener events.
+ * <p>
+ * The properties of the messages the events need are read by an enrichment
+ * stage: the GET commands of all the arriving messages are in flight at the
+ * same time, none of them waits on the event delivery thread. First the chat
+ * and the type of a message are read, then its added users or its leave
+ * reason and sender if it is a join or a leave. The events are fired on a
+ * delivery thread, in the order of the messages of each chat.
+ * </p>
+ */
 public class ChatListenerMananager implements ChatMessageListener {
-	private List<GlobalChatListener> listeners = new ArrayList<GlobalChatListener>();
+	/** The properties read for every message. */
+	private static final String[] FIRST_PROPERTIES = {"CHATNAME", "TYPE"};
+	/** The properties read for the messages of members added. */
+	private static final String[] ADDEDMEMBERS_PROPERTIES = {"USERS"};
+	/** The properties read for the messages of members who left. */
+	private static final String[] LEFT_PROPERTIES = {"LEAVEREASON", "FROM_HANDLE"};
+	/** The properties read for the other messages. */
+	private static final String[] NO_PROPERTIES = {};
+
+	/**
+	 * A message being enriched with the properties its event needs.
+	 */
+	private final class Enrichment {
+		/** The message. */
+		private final ChatMessage message;
+		/** The commands in flight, plus one while sending. */
+		private final AtomicInteger pending = new AtomicInteger();
+		/** The chat name once read, empty if it cannot be read. */
+		private volatile String chatName;
+		/** The flag to check if all the properties are read. */
+		private volatile boolean done;
+
+		private Enrichment(ChatMessage message) {
+			this.message = message;
+		}
+
+		/**
+		 * Sends the GET commands of the properties not cached yet.
+		 */
+		private void read(String[] names) {
+			pending.set(1);
+			Connector connector = Connector.getInstance();
+			for (final String name : names) {
+				if (!message.isPropertyMissing(name)) {
+					continue;
+				}
+				final String responseHeader = "CHATMESSAGE " + message.getId() + " " + name + " ";
+				pending.incrementAndGet();
+				try {
+					connector.executeWithIdAsync("GET " + responseHeader.trim(), responseHeader).addCallback(new CommandCallback() {
+						public void commandCompleted(String response) {
+							if (response.startsWith(responseHeader)) {
+								message.propertyHydrated(name, response.substring(responseHeader.length()));
+							}
+							propertyRead();
+						}
+
+						public void commandFailed(ConnectorException cause) {
+							// the getter reads it again on the delivery thread
+							propertyRead();
+						}
+					});
+				} catch (ConnectorException e) {
+					propertyRead();
+				}
+			}
+			propertyRead();
+		}
+
+		private void propertyRead() {
+			if (pending.decrementAndGet() != 0) {
+				return;
+			}
+			if (chatName == null) {
+				String name = message.getCachedProperty("CHATNAME");
+				chatName = name == null ? "" : name;
+				read(getEventProperties(message.getCachedProperty("TYPE")));
+			} else {
+				done = true;
+			}
+			requestDelivery();
+		}
+	}
+
+	private List<GlobalChatListener> listeners = new CopyOnWriteArrayList<GlobalChatListener>();
+	/** The listeners of each chat, by chat ID. */
+	private final ConcurrentMap<String, List<ChatListener>> chatListeners = new ConcurrentHashMap<String, List<ChatListener>>();
+
+	/** The mutex object for the queues. */
+	private final Object queueMutex = new Object();
+	/** The messages whose chat is not read yet, in arrival order. */
+	private final LinkedList<Enrichment> arrivals = new LinkedList<Enrichment>();
+	/** The messages whose chat is read, in arrival order, by chat name. */
+	private final Map<String, LinkedList<Enrichment>> chatQueues = new HashMap<String, LinkedList<Enrichment>>();
+	/** The number of delivery requests not run yet. */
+	private final AtomicInteger deliveryRequests = new AtomicInteger();
+
+	/** The thread firing the events. */
+	private final Executor deliverer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "GlobalChatListenerDeliverer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 
 	@Override
 	public void chatMessageReceived(ChatMessage chatMessage) throws SkypeException {
-		determineChatEvent(chatMessage);
+		enrich(chatMessage);
 	}
 
 
 	@Override
 	public void chatMessageSent(ChatMessage chatMessage) throws SkypeException {
-		determineChatEvent(chatMessage);
+		enrich(chatMessage);
 	}
-	
-	private synchronized void determineChatEvent(ChatMessage chatMessage) throws SkypeException {
+
+	private void enrich(ChatMessage chatMessage) {
+		Enrichment enrichment = new Enrichment(chatMessage);
+		synchronized (queueMutex) {
+			arrivals.add(enrichment);
+		}
+		enrichment.read(FIRST_PROPERTIES);
+	}
+
+	private static String[] getEventProperties(String type) {
+		if (Type.ADDEDMEMBERS.name().equals(type)) {
+			return ADDEDMEMBERS_PROPERTIES;
+		} else if (Type.LEFT.name().equals(type)) {
+			return LEFT_PROPERTIES;
+		}
+		return NO_PROPERTIES;
+	}
+
+	private void requestDelivery() {
+		// one delivery run handles all the messages ready when it starts
+		if (deliveryRequests.getAndIncrement() == 0) {
+			deliverer.execute(new Runnable() {
+				public void run() {
+					deliver();
+				}
+			});
+		}
+	}
+
+	private void deliver() {
+		do {
+			deliveryRequests.set(1);
+			for (Enrichment enrichment : takeReady()) {
+				try {
+					determineChatEvent(enrichment.message);
+				} catch (Throwable e) {
+					Skype.handleUncaughtException(e);
+				}
+			}
+		} while (deliveryRequests.decrementAndGet() != 0);
+	}
+
+	/**
+	 * Takes the messages whose properties are all read and which are not
+	 * behind a message of the same chat still being read.
+	 */
+	private List<Enrichment> takeReady() {
+		List<Enrichment> ready = new ArrayList<Enrichment>();
+		synchronized (queueMutex) {
+			while (!arrivals.isEmpty() && arrivals.getFirst().chatName != null) {
+				Enrichment enrichment = arrivals.removeFirst();
+				LinkedList<Enrichment> queue = chatQueues.get(enrichment.chatName);
+				if (queue == null) {
+					queue = new LinkedList<Enrichment>();
+					chatQueues.put(enrichment.chatName, queue);
+				}
+				queue.add(enrichment);
+			}
+			for (Iterator<LinkedList<Enrichment>> queues = chatQueues.values().iterator(); queues.hasNext();) {
+				LinkedList<Enrichment> queue = queues.next();
+				while (!queue.isEmpty() && queue.getFirst().done) {
+					ready.add(queue.removeFirst());
+				}
+				if (queue.isEmpty()) {
+					queues.remove();
+				}
+			}
+		}
+		return ready;
+	}
+
+	private void determineChatEvent(ChatMessage chatMessage) throws SkypeException {
 		Chat chat = chatMessage.getChat();
 		Type type = chatMessage.getType();
 		switch(type){
 			case ADDEDMEMBERS:
 				User[] addedUsers = chatMessage.getAllUsers();
 				for (User user : addedUsers) {
+					chat.memberAdded(user);
 					fireChatUserAdded(chat, user);
 				}
 				break;
@@ -34,6 +224,7 @@ public class ChatListenerMananager implements ChatMessageListener {
 				LeaveReason leaveReason = chatMessage.getLeaveReason();
 				if (leaveReason.equals(LeaveReason.UNSUBSCRIBE)) {
 					User user = chatMessage.getSender();
+					chat.memberLeft(user);
 					fireChatUserLeft(chat, user);
 				}
 				break;
@@ -45,17 +236,49 @@ public class ChatListenerMananager implements ChatMessageListener {
 	private void fireChatUserAdded(Chat chat, User user) {
 		for (GlobalChatListener listener : listeners) 
 			listener.userAdded(chat, user);
+		List<ChatListener> listenersOfChat = chatListeners.get(chat.getId());
+		if (listenersOfChat != null) {
+			for (ChatListener listener : listenersOfChat)
+				listener.userAdded(user);
+		}
 	}
 	
 	private void fireChatUserLeft(Chat chat, User user) {
 		for (GlobalChatListener listener : listeners) 
 			listener.userLeft(chat, user);
+		List<ChatListener> listenersOfChat = chatListeners.get(chat.getId());
+		if (listenersOfChat != null) {
+			for (ChatListener listener : listenersOfChat)
+				listener.userLeft(user);
+		}
 	}
 	
 	void addGlobalChatListener(GlobalChatListener listener) {
 		listeners.add(listener);
 	}
 
+	void addChatListener(Chat chat, ChatListener listener) {
+		List<ChatListener> listenersOfChat = chatListeners.get(chat.getId());
+		if (listenersOfChat == null) {
+			List<ChatListener> created = new CopyOnWriteArrayList<ChatListener>();
+			listenersOfChat = chatListeners.putIfAbsent(chat.getId(), created);
+			if (listenersOfChat == null) {
+				listenersOfChat = created;
+			}
+		}
+		listenersOfChat.add(listener);
+	}
+
+	void removeChatListener(Chat chat, ChatListener listener) {
+		List<ChatListener> listenersOfChat = chatListeners.get(chat.getId());
+		if (listenersOfChat != null) {
+			listenersOfChat.remove(listener);
+			if (listenersOfChat.isEmpty()) {
+				chatListeners.remove(chat.getId(), listenersOfChat);
+			}
+		}
+	}
+
 	void removeListener(GlobalChatListener listener) {
 		listeners.remove(listener);
 	}
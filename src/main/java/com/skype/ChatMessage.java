@@ -22,21 +22,46 @@
  ******************************************************************************/
 package com.skype;
 
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * This class implements Skype CHATMESSAGE object.
  * @see https://developer.skype.com/Docs/ApiDoc/CHATMESSAGE_object
  * Protocol 3. Supersedes the MESSAGE object.
+ * The properties which never change are cached once read. The content and the
+ * status are cached too while the CHATMESSAGE notifications are listened to by
+ * a {@link ChatMessageEditListener}.
  * @author Koji Hisano
  */
 public final class ChatMessage extends SkypeObject {
     /**
      * Collection of ChatMessage objects.
      */
-    private static final Map<String, ChatMessage> chatMessages = new HashMap<String, ChatMessage>();
+    static final SkypeObjectRegistry<ChatMessage> chatMessages = new SkypeObjectRegistry<ChatMessage>();
+
+    /**
+     * Factory of ChatMessage objects.
+     */
+    private static final SkypeObjectRegistry.Factory<ChatMessage> FACTORY = new SkypeObjectRegistry.Factory<ChatMessage>() {
+        public ChatMessage create(String id) {
+            return new ChatMessage(id);
+        }
+    };
+
+    /** The properties which never change once the CHATMESSAGE exists. */
+    private static final Set<String> IMMUTABLE_PROPERTIES = new HashSet<String>(Arrays.asList(new String[] {
+        "TIMESTAMP", "FROM_HANDLE", "FROM_DISPNAME", "TYPE", "CHATNAME", "USERS", "LEAVEREASON"
+    }));
+    /** The properties which change and are kept up to date by the notifications. */
+    private static final Set<String> NOTIFIED_PROPERTIES = new HashSet<String>(Arrays.asList(new String[] {
+        "BODY", "STATUS"
+    }));
+    /** The flag to check if the notifications of CHATMESSAGE changes are listened to. */
+    private static volatile boolean notified;
     
     /**
      * Returns the ChatMessage object by the specified id.
@@ -44,12 +69,7 @@ public final class ChatMessage extends SkypeObject {
      * @return ChatMessage object with ID == id.
      */
     static ChatMessage getInstance(final String id) {
-        synchronized(chatMessages) {
-            if (!chatMessages.containsKey(id)) {
-                chatMessages.put(id, new ChatMessage(id));
-            }
-            return chatMessages.get(id);
-        }
+        return chatMessages.getInstance(id, FACTORY);
     }
 
     /**
@@ -111,6 +131,11 @@ public final class ChatMessage extends SkypeObject {
      */
     private final String id;
 
+    /**
+     * Cached property values.
+     */
+    private final PropertyCache propertyCache = new PropertyCache();
+
     /**
      * Constructor.
      * @param newId The ID of this CHATMESSAGE.
@@ -203,7 +228,7 @@ public final class ChatMessage extends SkypeObject {
      * @throws SkypeException when the connection has gone bad.
      */
     public Status getStatus() throws SkypeException {
-        return Status.valueOf(Utils.getPropertyWithCommandId("CHATMESSAGE", getId(), "STATUS"));
+        return Status.valueOf(getProperty("STATUS", true));
     }
 
     /**
@@ -234,6 +259,7 @@ public final class ChatMessage extends SkypeObject {
      */
     public void setContent(final String content) throws SkypeException {
         setProperty("BODY", content);
+        propertyCache.remove("BODY");
     }
     /**
      * Set the seen of the chat message.
@@ -242,6 +268,7 @@ public final class ChatMessage extends SkypeObject {
      */
     public void setSeen() throws SkypeException {
         Utils.setProperty("CHATMESSAGE", getId(), "SEEN", "", "CHATMESSAGE "+getId()+" STATUS READ");
+        propertyCache.remove("STATUS");
     }
 
     /**
@@ -288,9 +315,129 @@ public final class ChatMessage extends SkypeObject {
      * @throws SkypeException when connection has gone bad or property not found.
      */
     private String getProperty(String name) throws SkypeException {
+        return getProperty(name, false);
+    }
+
+    /**
+     * Get CHATMESSAGE property, from the cache if the property is cacheable.
+     * @param name of the property.
+     * @param withCommandId if true the GET command is sent with a command ID.
+     * @return value of the property.
+     * @throws SkypeException when connection has gone bad or property not found.
+     */
+    private String getProperty(String name, boolean withCommandId) throws SkypeException {
+        if (!isCacheable(name)) {
+            return fetchProperty(name, withCommandId);
+        }
+        String value = propertyCache.get(name);
+        if (value == null) {
+            value = fetchProperty(name, withCommandId);
+            propertyCache.putIfAbsent(name, value, PropertyCache.NEVER_EXPIRES);
+        }
+        return value;
+    }
+
+    private String fetchProperty(String name, boolean withCommandId) throws SkypeException {
+        if (withCommandId) {
+            return Utils.getPropertyWithCommandId("CHATMESSAGE", getId(), name);
+        }
         return Utils.getProperty("CHATMESSAGE", getId(), name);
     }
 
+    private static boolean isCacheable(String name) {
+        return IMMUTABLE_PROPERTIES.contains(name) || (notified && NOTIFIED_PROPERTIES.contains(name));
+    }
+
+    /**
+     * Gets the names of the properties which can be cached.
+     * @return the property names.
+     */
+    static String[] getCacheablePropertyNames() {
+        Set<String> names = new LinkedHashSet<String>(IMMUTABLE_PROPERTIES);
+        names.addAll(NOTIFIED_PROPERTIES);
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Gets the cached value of a property without sending a command.
+     * @param name the property name.
+     * @return the value or null if it is not cached.
+     */
+    String getCachedProperty(String name) {
+        return propertyCache.get(name);
+    }
+
+    @Override
+    String getHydrationType() {
+        return "CHATMESSAGE";
+    }
+
+    @Override
+    String getHydrationId() {
+        return getId();
+    }
+
+    @Override
+    boolean isPropertyMissing(String name) {
+        return isCacheable(name) && propertyCache.get(name) == null;
+    }
+
+    @Override
+    void propertyHydrated(String name, String value) {
+        propertyCache.putIfAbsent(name, value, PropertyCache.NEVER_EXPIRES);
+    }
+
+    /**
+     * Gets all the cacheable properties of the specified messages which are not
+     * cached yet, through a window of GET commands in flight.
+     * The getters of the messages are answered from the cache afterwards.
+     * The properties the Skype client replies an ERROR for are left uncached.
+     * @param messages the messages to get the properties of.
+     * @throws SkypeException when connection has gone bad.
+     * @see Skype#setHydrationWindow(int)
+     */
+    public static void hydrate(ChatMessage... messages) throws SkypeException {
+        Utils.checkNotNull("messages", messages);
+        new PropertyHydrator(Skype.getHydrationWindow()).hydrate(messages, getCacheablePropertyNames());
+    }
+
+    /**
+     * Sets if the notifications of CHATMESSAGE changes are listened to, so
+     * that the properties which change can be cached too.
+     * @param on true if the notifications are listened to.
+     */
+    static void setNotified(boolean on) {
+        notified = on;
+        if (!on) {
+            clearNotifiedProperties();
+        }
+    }
+
+    /**
+     * Updates the cache with a notified property value.
+     * @param name the property name.
+     * @param value the new value.
+     */
+    void propertyNotified(String name, String value) {
+        if (NOTIFIED_PROPERTIES.contains(name) || IMMUTABLE_PROPERTIES.contains(name)) {
+            propertyCache.put(name, value, PropertyCache.NEVER_EXPIRES);
+        } else if (name.startsWith("EDITED_")) {
+            propertyCache.remove("BODY");
+        }
+    }
+
+    /**
+     * Removes the cached values of the properties which change from all the
+     * messages, because their notifications may have been missed.
+     */
+    static void clearNotifiedProperties() {
+        for (ChatMessage message : chatMessages.values()) {
+            for (String name : NOTIFIED_PROPERTIES) {
+                message.propertyCache.remove(name);
+            }
+        }
+    }
+
     private void setProperty(String name, String value) throws SkypeException {
         Utils.setProperty("CHATMESSAGE", getId(), name, value);
     }
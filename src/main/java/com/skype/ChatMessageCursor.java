@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ * 
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ * 
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API> 
+ * in your web site or documents.
+ * 
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Cursor over the history of chat messages.
+ * <p>
+ * The IDs are taken one by one from the reply of the Skype client instead of
+ * being split into an array, and the messages are created page by page. When
+ * a page is returned, the cacheable properties of the messages of the next
+ * page are requested without waiting for the replies, so that the getters of
+ * the messages answer without a command when the next page is reached. At most two pages of
+ * messages are held, whatever the size of the history.
+ * </p>
+ * @see Chat#getChatMessageCursor()
+ * @see User#getChatMessageCursor()
+ */
+public final class ChatMessageCursor {
+    /** The default number of messages in a page. */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /** The separator of the IDs in the reply. */
+    private static final String SEPARATOR = ", ";
+
+    /** The comma separated IDs replied by the Skype client. */
+    private final String ids;
+    /** The flag to check if the IDs are read from the last one. */
+    private final boolean reversed;
+    /** The number of messages in a page. */
+    private final int pageSize;
+    /** The index of the next ID to read in ids, from the start or the end. */
+    private int position;
+
+    /** The page being returned by next(), or null. */
+    private ChatMessage[] page;
+    /** The index of the next message in page. */
+    private int pageIndex;
+    /** The next page, read ahead, or null. */
+    private ChatMessage[] nextPage;
+    /** The reading of the properties of the next page, or null. */
+    private PropertyHydrator.Hydration prefetch;
+
+    /**
+     * Constructor.
+     * @param newIds the comma separated IDs replied by the Skype client.
+     * @param newReversed if true, the IDs are returned from the last one.
+     * @param newPageSize the number of messages in a page.
+     */
+    ChatMessageCursor(String newIds, boolean newReversed, int newPageSize) {
+        if (newPageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be positive.");
+        }
+        this.ids = newIds;
+        this.reversed = newReversed;
+        this.pageSize = newPageSize;
+        this.position = newReversed ? newIds.length() : 0;
+    }
+
+    /**
+     * Indicates if there is a message left.
+     * @return true if next() can be called.
+     */
+    public boolean hasNext() {
+        return (page != null && pageIndex < page.length) || nextPage != null || hasNextId();
+    }
+
+    /**
+     * Returns the next message.
+     * @return the next message.
+     * @throws SkypeException when connection has gone bad.
+     * @throws NoSuchElementException if there is no message left.
+     */
+    public ChatMessage next() throws SkypeException {
+        if (page == null || pageIndex == page.length) {
+            page = nextPage();
+            pageIndex = 0;
+        }
+        return page[pageIndex++];
+    }
+
+    /**
+     * Returns the next page of messages, their cacheable properties read.
+     * The messages not returned yet by next() in the current page are skipped.
+     * @return the messages, at most the page size of them.
+     * @throws SkypeException when connection has gone bad.
+     * @throws NoSuchElementException if there is no message left.
+     */
+    public ChatMessage[] nextPage() throws SkypeException {
+        page = null;
+        if (nextPage == null) {
+            if (!hasNextId()) {
+                throw new NoSuchElementException();
+            }
+            nextPage = readPage();
+            prefetch = startPrefetch(nextPage);
+        }
+        ChatMessage[] result = nextPage;
+        awaitPrefetch();
+        nextPage = hasNextId() ? readPage() : null;
+        if (nextPage != null) {
+            prefetch = startPrefetch(nextPage);
+        }
+        return result;
+    }
+
+    private void awaitPrefetch() throws SkypeException {
+        PropertyHydrator.Hydration pending = prefetch;
+        prefetch = null;
+        pending.await();
+    }
+
+    private static PropertyHydrator.Hydration startPrefetch(ChatMessage[] messages) {
+        return new PropertyHydrator(Skype.getHydrationWindow()).start(messages, ChatMessage.getCacheablePropertyNames());
+    }
+
+    private ChatMessage[] readPage() {
+        ChatMessage[] messages = new ChatMessage[pageSize];
+        int count = 0;
+        while (count < pageSize && hasNextId()) {
+            messages[count++] = ChatMessage.getInstance(readId());
+        }
+        if (count < pageSize) {
+            ChatMessage[] shrunk = new ChatMessage[count];
+            System.arraycopy(messages, 0, shrunk, 0, count);
+            messages = shrunk;
+        }
+        return messages;
+    }
+
+    private boolean hasNextId() {
+        return reversed ? 0 < position : position < ids.length();
+    }
+
+    private String readId() {
+        if (reversed) {
+            int separator = ids.lastIndexOf(SEPARATOR, position - 1);
+            String id = ids.substring(separator < 0 ? 0 : separator + SEPARATOR.length(), position);
+            position = separator < 0 ? 0 : separator;
+            return id;
+        }
+        int separator = ids.indexOf(SEPARATOR, position);
+        if (separator < 0) {
+            separator = ids.length();
+        }
+        String id = ids.substring(position, separator);
+        position = separator + SEPARATOR.length();
+        return id;
+    }
+}
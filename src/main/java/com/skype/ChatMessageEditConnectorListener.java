@@ -1,21 +1,60 @@
 package com.skype;
 
 import java.util.Date;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.skype.connector.AbstractConnectorListener;
+import com.skype.connector.Connector;
 import com.skype.connector.ConnectorMessageEvent;
+import com.skype.connector.ConnectorNotification;
+import com.skype.connector.ConnectorStatusEvent;
 
+/**
+ * Correlates the EDITED_TIMESTAMP, EDITED_BY and BODY notifications of a
+ * message into one edit event.
+ * <p>
+ * Each message being edited has an immutable {@link EditData} replaced by
+ * compare-and-set, so notifications of different messages never wait for each
+ * other. Edits whose BODY never arrives are dropped once they are older than
+ * the expiry.
+ * </p>
+ * @see Skype#getChatMessageEditTracker()
+ */
 public class ChatMessageEditConnectorListener extends AbstractConnectorListener {
-	class EditData {
-		private Date eventDate;
-		private User author;
+	/** The default time after which an incomplete edit is dropped. */
+	static final long DEFAULT_EDIT_EXPIRY_MILLIS = 60 * 1000;
+
+	/**
+	 * The state of an edit waiting for its BODY notification.
+	 */
+	static final class EditData {
+		private final Date eventDate;
+		private final User author;
+		/** The time of the first notification of the edit, from {@link System#nanoTime()}. */
+		private final long startedAt;
+
+		private EditData(Date eventDate, User author, long startedAt) {
+			this.eventDate = eventDate;
+			this.author = author;
+			this.startedAt = startedAt;
+		}
 	}
+
 	final List<ChatMessageEditListener> listeners = new CopyOnWriteArrayList<ChatMessageEditListener>();
-	Map<ChatMessage, EditData> edits = new LinkedHashMap<ChatMessage, ChatMessageEditConnectorListener.EditData>();
+	/** The pending edits, by message ID. */
+	final ConcurrentMap<String, EditData> edits = new ConcurrentHashMap<String, EditData>();
+
+	private volatile long editExpiryNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_EDIT_EXPIRY_MILLIS);
+	/** The time of the next sweep of the expired edits, from {@link System#nanoTime()}. */
+	private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + editExpiryNanos);
+	private final AtomicLong completedEditCount = new AtomicLong();
+	private final AtomicLong expiredEditCount = new AtomicLong();
 
 	public void addListener(ChatMessageEditListener listener) {
 		listeners.add(listener);
@@ -25,57 +64,122 @@ public class ChatMessageEditConnectorListener extends AbstractConnectorListener
 		listeners.remove(listener);
 	}
 
+	boolean hasListeners() {
+		return !listeners.isEmpty();
+	}
+
+	/**
+	 * Sets the time after which an edit whose BODY notification did not
+	 * arrive is dropped. The default is one minute.
+	 * @param expiry the time.
+	 * @param unit the unit of the time.
+	 */
+	public void setEditExpiry(long expiry, TimeUnit unit) {
+		editExpiryNanos = unit.toNanos(expiry);
+		nextSweep.set(System.nanoTime() + editExpiryNanos);
+	}
+
+	/**
+	 * Gets the number of edits fired to the listeners.
+	 * @return the completed edit count.
+	 */
+	public long getCompletedEditCount() {
+		return completedEditCount.get();
+	}
+
+	/**
+	 * Gets the number of edits dropped because their BODY notification did not arrive in time.
+	 * @return the expired edit count.
+	 */
+	public long getExpiredEditCount() {
+		return expiredEditCount.get();
+	}
+
+	/**
+	 * Gets the number of edits waiting for their BODY notification.
+	 * @return the pending edit count.
+	 */
+	public int getPendingEditCount() {
+		return edits.size();
+	}
+
 	
 	public void messageReceived(ConnectorMessageEvent event) {
-		String message = event.getMessage();
-		processMessage(message);
+		processMessage(event.getNotification());
+	}
+
+	@Override
+	public void statusChanged(ConnectorStatusEvent event) {
+		if (event.getStatus() != Connector.Status.ATTACHED) {
+			ChatMessage.clearNotifiedProperties();
+		}
 	}
 
-	synchronized void processMessage(String message) {
-		String cmd = "CHATMESSAGE ";
-		if (!message.startsWith(cmd))
+	void processMessage(String message) {
+		processMessage(new ConnectorNotification(message));
+	}
+
+	void processMessage(ConnectorNotification notification) {
+		if (!notification.isObjectType("CHATMESSAGE") || notification.getPropertyValue() == null)
 			return;
-		String remain = message.substring(cmd.length());
-		String messageId = remain.substring(0, remain.indexOf(" "));
-		ChatMessage chatMessage = ChatMessage.getInstance(messageId);
+		ChatMessage chatMessage = ChatMessage.getInstance(notification.getObjectId());
 		
-		remain = remain.substring(messageId.length()+1);
+		String chatEvent = notification.getPropertyName();
 		
-		String chatEvent = remain.substring(0, remain.indexOf(" "));
+		String parameter = notification.getPropertyValue();
 		
-		String parameter = remain.substring(chatEvent.length()+1);
+		chatMessage.propertyNotified(chatEvent, parameter);
 		
 		if (chatEvent.equals("EDITED_TIMESTAMP")) {
 			processTimeStamp(chatMessage, parameter);
-			return;
-		}
-		if (chatEvent.equals("EDITED_BY")) {
+		} else if (chatEvent.equals("EDITED_BY")) {
 			processAuthor(chatMessage, parameter);
-			return;
-		}
-		if (chatEvent.equals("BODY"))
+		} else if (chatEvent.equals("BODY")) {
 			processBody(chatMessage, parameter);
-		
+		}
+		sweepIfDue();
 	}
 
 	private void processTimeStamp(ChatMessage chatMessage, String parameter) {
-		EditData editData = getEditData(chatMessage);
-		editData.eventDate = new Date(Integer.parseInt(parameter));
-		edits.put(chatMessage, editData);
+		Date eventDate = new Date(Integer.parseInt(parameter));
+		String id = chatMessage.getId();
+		long now = System.nanoTime();
+		while (true) {
+			EditData current = edits.get(id);
+			if (current == null || isExpired(current, now)) {
+				if (restart(id, current, new EditData(eventDate, null, now)))
+					return;
+			} else if (edits.replace(id, current, new EditData(eventDate, current.author, current.startedAt))) {
+				return;
+			}
+		}
 	}
 	
 	private void processAuthor(ChatMessage chatMessage, String parameter) {
-		EditData editData = getEditData(chatMessage);
-		editData.author = User.getInstance(parameter);
+		User author = User.getInstance(parameter);
+		String id = chatMessage.getId();
+		long now = System.nanoTime();
+		while (true) {
+			EditData current = edits.get(id);
+			if (current == null || isExpired(current, now)) {
+				if (restart(id, current, new EditData(null, author, now)))
+					return;
+			} else if (edits.replace(id, current, new EditData(current.eventDate, author, current.startedAt))) {
+				return;
+			}
+		}
 	}
 
-	private EditData getEditData(ChatMessage chatMessage) {
-		EditData editData = edits.get(chatMessage);
-		if (editData == null) {
-			editData = new EditData();
-			edits.put(chatMessage, editData);
-		}
-		return editData;
+	/**
+	 * Starts a new edit in place of the missing or expired one.
+	 */
+	private boolean restart(String id, EditData expired, EditData started) {
+		if (expired == null)
+			return edits.putIfAbsent(id, started) == null;
+		if (!edits.replace(id, expired, started))
+			return false;
+		expiredEditCount.incrementAndGet();
+		return true;
 	}
 	
 	private void processBody(ChatMessage chatMessage, String parameter) {
@@ -83,14 +187,35 @@ public class ChatMessageEditConnectorListener extends AbstractConnectorListener
 	}
 
 	private void fireEdit(ChatMessage chatMessage) {
-		EditData editData = edits.get(chatMessage);
+		EditData editData = edits.remove(chatMessage.getId());
 		if (editData == null)
 			return;
+		if (isExpired(editData, System.nanoTime())) {
+			expiredEditCount.incrementAndGet();
+			return;
+		}
+		completedEditCount.incrementAndGet();
 		for (ChatMessageEditListener l : listeners) {
 			l.chatMessageEdited(chatMessage, editData.eventDate, editData.author);
 		}
-		edits.remove(chatMessage);
 	}
 
+	private boolean isExpired(EditData editData, long now) {
+		return now - editData.startedAt > editExpiryNanos;
+	}
 
+	/**
+	 * Drops the expired edits, at most once per expiry period. Only the thread
+	 * winning the update of the next sweep time does the sweep.
+	 */
+	private void sweepIfDue() {
+		long now = System.nanoTime();
+		long due = nextSweep.get();
+		if (now - due < 0 || !nextSweep.compareAndSet(due, now + editExpiryNanos))
+			return;
+		for (Map.Entry<String, EditData> entry : edits.entrySet()) {
+			if (isExpired(entry.getValue(), now) && edits.remove(entry.getKey(), entry.getValue()))
+				expiredEditCount.incrementAndGet();
+		}
+	}
 }
@@ -22,41 +22,43 @@
  ******************************************************************************/
 package com.skype;
 
+import java.util.Set;
+
 import com.skype.connector.Connector;
 import com.skype.connector.ConnectorException;
 
 /**
  * This object can be used for all actions normal to a contactlist, like searching users and friends.
+ * The friends and the custom groups are looked up in an index kept up to date by the notifications.
  * @author Koji Hisano.
  */
 public final class ContactList {
+    /**
+     * The index of the friends and groups.
+     */
+    private final ContactListIndex index = new ContactListIndex();
+
 	/**
 	 * Constructor.
 	 */
     ContactList() {
     }
 
+    /**
+     * Gets the index of the friends and groups.
+     * @return the index.
+     */
+    ContactListIndex getIndex() {
+        return index;
+    }
+
     /**
      * Get all authorized users.
      * @return array of friends.
      * @throws SkypeException when the connection has gone bad.
      */
     public Friend[] getAllFriends() throws SkypeException {
-        try {
-            String responseHeader = "USERS ";
-            String response = Connector.getInstance().execute("SEARCH FRIENDS", responseHeader);
-            Utils.checkError(response);
-            String data = response.substring(responseHeader.length());
-            String[] ids = Utils.convertToArray(data);
-            Friend[] friends = new Friend[ids.length];
-            for (int i = 0; i < ids.length; i++) {
-                friends[i] = User.getFriendInstance(ids[i]);
-            }
-            return friends;
-        } catch (ConnectorException e) {
-            Utils.convertToSkypeException(e);
-            return null;
-        }
+        return index.getAllFriends();
     }
 
     /**
@@ -90,12 +92,7 @@ public final class ContactList {
      */
     public Friend getFriend(String skypeId) throws SkypeException {
         Utils.checkNotNull(skypeId, "skypeId");
-        for (Friend friend : getAllFriends()) {
-            if (skypeId.equals(friend.getId())) {
-                return friend;
-            }
-        }
-        return null;
+        return index.getFriend(skypeId);
     }
 
 
@@ -132,7 +129,7 @@ public final class ContactList {
      * @throws SkypeException when connection has gone bad.
      */
     public Group[] getAllGroups() throws SkypeException {
-        return getAllGroups("CUSTOM");
+        return index.getAllGroups();
     }
 
     /**
@@ -167,12 +164,29 @@ public final class ContactList {
      */
     public Group getGroup(String displayName) throws SkypeException {
         Utils.checkNotNull(displayName, "displayName");
-        for (Group group : getAllGroups()) {
-            if (displayName.equals(group.getDisplayName())) {
-                return group;
-            }
-        }
-        return null;
+        return index.getGroup(displayName);
+    }
+
+    /**
+     * Get the member IDs of a group.
+     * @param group the group.
+     * @return the member IDs or null if the group is not known.
+     * @throws SkypeException when connection has gone bad.
+     */
+    Set<String> getMemberIds(Group group) throws SkypeException {
+        return index.getMemberIds(group);
+    }
+
+    /**
+     * Get the groups a user is a member of, custom and system ones.
+     * It is a local lookup in the index of the contact list.
+     * @param user the user.
+     * @return array of groups.
+     * @throws SkypeException when connection has gone bad.
+     */
+    public Group[] getGroups(User user) throws SkypeException {
+        Utils.checkNotNull("user", user);
+        return index.getGroups(user);
     }
 
     /**
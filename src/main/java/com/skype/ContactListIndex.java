@@ -0,0 +1,459 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ * 
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ * 
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API> 
+ * in your web site or documents.
+ * 
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.skype.connector.AbstractConnectorListener;
+import com.skype.connector.Connector;
+import com.skype.connector.ConnectorException;
+import com.skype.connector.ConnectorListener;
+import com.skype.connector.ConnectorMessageEvent;
+import com.skype.connector.ConnectorNotification;
+import com.skype.connector.ConnectorStatusEvent;
+
+/**
+ * Index of the contact list: the friends by ID, the custom groups by display
+ * name, the members of every group and the groups of every user.
+ * <p>
+ * The index is built the first time it is used, with all the commands sent
+ * back-to-back, then kept up to date by the USER and GROUP notifications.
+ * It is built again when the connector is detached or a group it does not
+ * know about appears. It can also be preloaded from a warm start file and
+ * refreshed in the background.
+ * </p>
+ * @see ContactList
+ */
+final class ContactListIndex {
+    /**
+     * The content of the index.
+     */
+    private static final class Snapshot {
+        /** The friends by ID. */
+        private final Map<String, Friend> friends = new ConcurrentSkipListMap<String, Friend>();
+        /** The custom groups by display name. */
+        private final Map<String, Group> groupsByDisplayName = new ConcurrentHashMap<String, Group>();
+        /** The display names of the custom groups by group ID. */
+        private final Map<String, String> displayNames = new ConcurrentSkipListMap<String, String>();
+        /** All the groups by ID. The groups hold their member IDs. */
+        private final Map<String, Group> groups = new ConcurrentHashMap<String, Group>();
+        /** The number of members notified by NROFUSERS, by group ID. */
+        private final Map<String, Integer> memberCounts = new ConcurrentHashMap<String, Integer>();
+        /** The groups of every user, by user ID. */
+        private final Map<String, Set<Group>> groupsByMember = new ConcurrentHashMap<String, Set<Group>>();
+    }
+
+    /** The mutex object for building the index. */
+    private final Object buildMutex = new Object();
+    /** The mutex object for the fields updated by the notifications. */
+    private final Object updateMutex = new Object();
+    /** The current content or null if it must be built. */
+    private volatile Snapshot snapshot;
+    /** The connector the listener is added to. */
+    private Connector connector;
+    /** The notifications received while building, null if not building. */
+    private List<ConnectorNotification> pendingNotifications;
+
+    /** USER and GROUP listener updating this index. */
+    private final ConnectorListener listener = new AbstractConnectorListener() {
+        @Override
+        public void messageReceived(ConnectorMessageEvent event) {
+            ConnectorNotification notification = event.getNotification();
+            synchronized (updateMutex) {
+                if (pendingNotifications != null) {
+                    pendingNotifications.add(notification);
+                    return;
+                }
+                update(notification);
+            }
+        }
+
+        @Override
+        public void statusChanged(ConnectorStatusEvent event) {
+            if (event.getStatus() != Connector.Status.ATTACHED) {
+                snapshot = null;
+            }
+        }
+    };
+
+    /**
+     * Gets the friend with the specified ID.
+     * @param id the Skype ID.
+     * @return the friend or null if there is no such friend.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    Friend getFriend(String id) throws SkypeException {
+        return getSnapshot().friends.get(id);
+    }
+
+    /**
+     * Gets all the friends.
+     * @return the friends.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    Friend[] getAllFriends() throws SkypeException {
+        return getSnapshot().friends.values().toArray(new Friend[0]);
+    }
+
+    /**
+     * Gets the custom group with the specified display name.
+     * @param displayName the display name.
+     * @return the group or null if there is no such group.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    Group getGroup(String displayName) throws SkypeException {
+        return getSnapshot().groupsByDisplayName.get(displayName);
+    }
+
+    /**
+     * Gets all the custom groups.
+     * @return the groups.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    Group[] getAllGroups() throws SkypeException {
+        Snapshot current = getSnapshot();
+        List<Group> groups = new ArrayList<Group>();
+        for (String id : current.displayNames.keySet()) {
+            groups.add(Group.getInstance(id));
+        }
+        return groups.toArray(new Group[0]);
+    }
+
+    /**
+     * Gets the member IDs of the specified group.
+     * If the number of members notified by NROFUSERS does not match, the
+     * members are read again.
+     * @param group the group.
+     * @return the member IDs or null if the group is not known.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    Set<String> getMemberIds(Group group) throws SkypeException {
+        Snapshot current = getSnapshot();
+        if (!current.groups.containsKey(group.getId())) {
+            return null;
+        }
+        Set<String> ids = group.getMemberIds();
+        Integer count = current.memberCounts.get(group.getId());
+        if (ids == null || (count != null && count.intValue() != ids.size())) {
+            String value = Utils.getProperty("GROUP", group.getId(), "USERS");
+            synchronized (updateMutex) {
+                current.memberCounts.remove(group.getId());
+                setMembers(current, group, toMemberIds(value));
+            }
+            ids = group.getMemberIds();
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the groups the specified user is a member of.
+     * @param user the user.
+     * @return the groups.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    Group[] getGroups(User user) throws SkypeException {
+        Set<Group> groups = getSnapshot().groupsByMember.get(user.getId());
+        if (groups == null) {
+            return new Group[0];
+        }
+        return groups.toArray(new Group[0]);
+    }
+
+    /**
+     * Serves the lookups from the content of a warm start file until the
+     * index is refreshed. Ignored if the index is already built.
+     * @param file the warm start file.
+     * @throws SkypeException when the connection has gone bad.
+     * @see #refresh()
+     */
+    void preload(WarmStartFile file) throws SkypeException {
+        synchronized (buildMutex) {
+            attach();
+            if (snapshot != null) {
+                return;
+            }
+            Snapshot loaded = new Snapshot();
+            for (String id : file.getFriends().keySet()) {
+                loaded.friends.put(id, User.getFriendInstance(id));
+            }
+            for (Map.Entry<String, String[]> entry : file.getGroupMembers().entrySet()) {
+                Group group = Group.getInstance(entry.getKey());
+                loaded.groups.put(entry.getKey(), group);
+                setMembers(loaded, group, Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(entry.getValue()))));
+            }
+            for (Map.Entry<String, String> entry : file.getGroupDisplayNames().entrySet()) {
+                setDisplayName(loaded, entry.getKey(), entry.getValue());
+            }
+            synchronized (updateMutex) {
+                snapshot = loaded;
+            }
+        }
+    }
+
+    /**
+     * Builds the index again from the Skype client. The lookups are served
+     * from the current content meanwhile.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    void refresh() throws SkypeException {
+        synchronized (buildMutex) {
+            attach();
+            rebuild();
+        }
+    }
+
+    /**
+     * Copies the content of this index to a warm start file.
+     * @param file the warm start file.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    void exportTo(WarmStartFile file) throws SkypeException {
+        Snapshot current = getSnapshot();
+        for (String id : current.friends.keySet()) {
+            file.getFriends().put(id, new LinkedHashMap<String, String>());
+        }
+        for (Map.Entry<String, Group> entry : current.groups.entrySet()) {
+            Set<String> ids = entry.getValue().getMemberIds();
+            if (ids != null) {
+                file.getGroupMembers().put(entry.getKey(), ids.toArray(new String[0]));
+            }
+        }
+        file.getGroupDisplayNames().putAll(current.displayNames);
+    }
+
+    private Snapshot getSnapshot() throws SkypeException {
+        Snapshot current = snapshot;
+        if (current != null && connector == Connector.getInstance()) {
+            return current;
+        }
+        synchronized (buildMutex) {
+            attach();
+            current = snapshot;
+            if (current == null) {
+                current = rebuild();
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Adds the listener to the current connector if it has changed.
+     * The content is dropped when the connector changes.
+     * @throws SkypeException when the listener cannot be added.
+     */
+    private void attach() throws SkypeException {
+        if (connector != Connector.getInstance()) {
+            if (connector != null) {
+                connector.removeConnectorListener(listener);
+            }
+            connector = Connector.getInstance();
+            snapshot = null;
+            try {
+                connector.addConnectorListener(listener, new String[] {"USER", "GROUP", "DELETED GROUP"});
+            } catch (ConnectorException e) {
+                connector = null;
+                Utils.convertToSkypeException(e);
+            }
+        }
+    }
+
+    /**
+     * Builds the content and replaces the current one, replaying the
+     * notifications received while building.
+     * @return the new content.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    private Snapshot rebuild() throws SkypeException {
+        Snapshot current = null;
+        synchronized (updateMutex) {
+            pendingNotifications = new ArrayList<ConnectorNotification>();
+        }
+        try {
+            current = build();
+        } finally {
+            synchronized (updateMutex) {
+                if (current != null) {
+                    snapshot = current;
+                    for (ConnectorNotification notification : pendingNotifications) {
+                        update(notification);
+                    }
+                }
+                pendingNotifications = null;
+            }
+        }
+        return current;
+    }
+
+    private Snapshot build() throws SkypeException {
+        String[] responses = null;
+        try {
+            responses = connector.executeWithId(
+                    new String[] {"SEARCH FRIENDS", "SEARCH GROUPS CUSTOM", "SEARCH GROUPS HARDWIRED"},
+                    new String[] {"USERS ", "GROUPS ", "GROUPS "});
+        } catch (ConnectorException e) {
+            Utils.convertToSkypeException(e);
+        }
+        for (String response : responses) {
+            Utils.checkError(response);
+        }
+        String[] friendIds = Utils.convertToArray(responses[0].substring("USERS ".length()));
+        String[] customIds = Utils.convertToArray(responses[1].substring("GROUPS ".length()));
+        String[] hardwiredIds = Utils.convertToArray(responses[2].substring("GROUPS ".length()));
+
+        String[] ids = new String[customIds.length * 2 + hardwiredIds.length];
+        String[] names = new String[ids.length];
+        for (int i = 0; i < customIds.length; i++) {
+            ids[i * 2] = customIds[i];
+            names[i * 2] = "DISPLAYNAME";
+            ids[i * 2 + 1] = customIds[i];
+            names[i * 2 + 1] = "USERS";
+        }
+        for (int i = 0; i < hardwiredIds.length; i++) {
+            ids[customIds.length * 2 + i] = hardwiredIds[i];
+            names[customIds.length * 2 + i] = "USERS";
+        }
+        String[] values = ids.length == 0 ? new String[0] : Utils.getPropertiesOfObjects("GROUP", ids, names);
+
+        Snapshot built = new Snapshot();
+        for (String id : friendIds) {
+            built.friends.put(id, User.getFriendInstance(id));
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            if ("DISPLAYNAME".equals(names[i])) {
+                setDisplayName(built, ids[i], values[i]);
+            } else {
+                Group group = Group.getInstance(ids[i]);
+                built.groups.put(ids[i], group);
+                setMembers(built, group, toMemberIds(values[i]));
+            }
+        }
+        return built;
+    }
+
+    private void update(ConnectorNotification notification) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        if (notification.isObjectType("DELETED")) {
+            String message = notification.getMessage();
+            if (message.startsWith("DELETED GROUP ")) {
+                String id = message.substring("DELETED GROUP ".length()).trim();
+                String displayName = current.displayNames.remove(id);
+                if (displayName != null) {
+                    current.groupsByDisplayName.remove(displayName);
+                }
+                Group group = current.groups.remove(id);
+                if (group != null) {
+                    setMembers(current, group, Collections.<String>emptySet());
+                }
+                current.memberCounts.remove(id);
+            }
+            return;
+        }
+        String id = notification.getObjectId();
+        String name = notification.getPropertyName();
+        String value = notification.getPropertyValue();
+        if (id == null || value == null) {
+            return;
+        }
+        if (notification.isObjectType("USER") && "BUDDYSTATUS".equals(name)) {
+            if ("2".equals(value) || "3".equals(value)) {
+                if (!current.friends.containsKey(id)) {
+                    current.friends.put(id, User.getFriendInstance(id));
+                }
+            } else {
+                current.friends.remove(id);
+            }
+        } else if (notification.isObjectType("GROUP")) {
+            Group group = current.groups.get(id);
+            if (group == null) {
+                // a new group, its type is not known
+                snapshot = null;
+            } else if ("USERS".equals(name)) {
+                current.memberCounts.remove(id);
+                setMembers(current, group, toMemberIds(value));
+            } else if ("NROFUSERS".equals(name)) {
+                try {
+                    current.memberCounts.put(id, Integer.valueOf(value));
+                } catch (NumberFormatException e) {
+                    current.memberCounts.remove(id);
+                }
+            } else if ("DISPLAYNAME".equals(name) && current.displayNames.containsKey(id)) {
+                setDisplayName(current, id, value);
+            }
+        }
+    }
+
+    private static void setDisplayName(Snapshot target, String id, String displayName) {
+        String oldDisplayName = target.displayNames.put(id, displayName);
+        if (oldDisplayName != null) {
+            target.groupsByDisplayName.remove(oldDisplayName);
+        }
+        target.groupsByDisplayName.put(displayName, Group.getInstance(id));
+    }
+
+    /**
+     * Replaces the members of a group and updates the groups of the users.
+     * @param target the index content.
+     * @param group the group.
+     * @param ids the new member IDs.
+     */
+    private static void setMembers(Snapshot target, Group group, Set<String> ids) {
+        Set<String> oldIds = group.getMemberIds();
+        group.setMemberIds(ids);
+        if (oldIds != null) {
+            for (String id : oldIds) {
+                if (!ids.contains(id)) {
+                    Set<Group> groups = target.groupsByMember.get(id);
+                    if (groups != null) {
+                        groups.remove(group);
+                    }
+                }
+            }
+        }
+        for (String id : ids) {
+            Set<Group> groups = target.groupsByMember.get(id);
+            if (groups == null) {
+                groups = Collections.newSetFromMap(new ConcurrentHashMap<Group, Boolean>());
+                target.groupsByMember.put(id, groups);
+            }
+            groups.add(group);
+        }
+    }
+
+    private static Set<String> toMemberIds(String value) {
+        return Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(Utils.convertToArray(value))));
+    }
+}
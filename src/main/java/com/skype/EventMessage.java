@@ -110,7 +110,7 @@ public final class EventMessage extends SkypeObject {
                     }
                 };
                 try {
-                    Connector.getInstance().addConnectorListener(eventMessageListener);
+                    Connector.getInstance().addConnectorListener(eventMessageListener, new String[] {"EVENT"});
                 } catch (ConnectorException e) {
                     Utils.convertToSkypeException(e);
                 }
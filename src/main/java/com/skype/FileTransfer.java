@@ -20,9 +20,7 @@ package com.skype;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * object representing Skype FILETRANSFER object.
@@ -36,7 +34,16 @@ public final class FileTransfer extends SkypeObject {
     /**
      * Collection of FileTransfer objects.
      */
-    private static final Map<String, FileTransfer> files = new HashMap<String, FileTransfer>();
+    static final SkypeObjectRegistry<FileTransfer> files = new SkypeObjectRegistry<FileTransfer>();
+
+    /**
+     * Factory of FileTransfer objects.
+     */
+    private static final SkypeObjectRegistry.Factory<FileTransfer> FACTORY = new SkypeObjectRegistry.Factory<FileTransfer>() {
+        public FileTransfer create(String id) {
+            return new FileTransfer(id);
+        }
+    };
     
     /**
      * Returns the FileTransfer object by the specified id.
@@ -44,13 +51,7 @@ public final class FileTransfer extends SkypeObject {
      * @return FileTransfer object with ID == id.
      */
     static FileTransfer getInstance(final String id) {
-        synchronized (files) {
-            if (!files.containsKey(id)) {
-                FileTransfer file = new FileTransfer(id);
-                files.put(id, file);
-            }
-            return files.get(id);
-        }
+        return files.getInstance(id, FACTORY);
     }
 
     /**
@@ -61,12 +62,11 @@ public final class FileTransfer extends SkypeObject {
      * @return Call object with ID == id.
      */
     static FileTransfer getInstance(final String id, final FileTransferListener fileTransferListener) {
-        synchronized (files) {
-            if (!files.containsKey(id)) {
-                files.put(id, new FileTransfer(id, fileTransferListener));
+        return files.getInstance(id, new SkypeObjectRegistry.Factory<FileTransfer>() {
+            public FileTransfer create(String newId) {
+                return new FileTransfer(newId, fileTransferListener);
             }
-            return files.get(id);
-        }
+        });
     }
     
     /**
@@ -20,6 +20,7 @@ package com.skype;
 
 import com.skype.connector.AbstractConnectorListener;
 import com.skype.connector.ConnectorMessageEvent;
+import com.skype.connector.ConnectorNotification;
 
 /**
  * Monitor for FILETRANSFER events.
@@ -36,16 +37,11 @@ final class FileTransferConnectorListener extends AbstractConnectorListener {
 
     @Override
     public void messageReceived(ConnectorMessageEvent event) {
-        String message = event.getMessage();
-        if (message.startsWith("FILETRANSFER ")) {
-            String data = message.substring("FILETRANSFER ".length());
-            String id = data.substring(0, data.indexOf(' '));
-            String propertyNameAndValue = data.substring(data.indexOf(' ') + 1);
-            String propertyName = propertyNameAndValue.substring(0,
-                    propertyNameAndValue.indexOf(' '));
-            if ("STATUS".equals(propertyName)) {
-                String propertyValue = propertyNameAndValue
-                        .substring(propertyNameAndValue.indexOf(' ') + 1);
+        ConnectorNotification notification = event.getNotification();
+        if (notification.isObjectType("FILETRANSFER")) {
+            String id = notification.getObjectId();
+            if (notification.isPropertyName("STATUS") && notification.getPropertyValue() != null) {
+                String propertyValue = notification.getPropertyValue();
                 FileTransfer.Status status = FileTransfer.Status.valueOf(propertyValue);
                 if (fileTransferListener != null){
                     FileTransfer fileTransfer = FileTransfer.getInstance(id, fileTransferListener);
@@ -60,4 +56,4 @@ final class FileTransferConnectorListener extends AbstractConnectorListener {
             }
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
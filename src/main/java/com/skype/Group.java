@@ -22,8 +22,9 @@
  ******************************************************************************/
 package com.skype;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
 
 import com.skype.connector.Connector;
 import com.skype.connector.ConnectorException;
@@ -38,7 +39,16 @@ public final class Group extends SkypeObject {
     /**
      * Collection of Group objects.
      */
-    private static final Map<String, Group> groups = new HashMap<String, Group>();
+    static final SkypeObjectRegistry<Group> groups = new SkypeObjectRegistry<Group>();
+
+    /**
+     * Factory of Group objects.
+     */
+    private static final SkypeObjectRegistry.Factory<Group> FACTORY = new SkypeObjectRegistry.Factory<Group>() {
+        public Group create(String id) {
+            return new Group(id);
+        }
+    };
     
     /**
      * Returns the Group object by the specified id.
@@ -46,12 +56,7 @@ public final class Group extends SkypeObject {
      * @return Group object with ID == id.
      */
     static Group getInstance(final String id) {
-        synchronized(groups) {
-            if (!groups.containsKey(id)) {
-                groups.put(id, new Group(id));
-            }
-            return groups.get(id);
-        }
+        return groups.getInstance(id, FACTORY);
     }
 
 	/**
@@ -82,6 +87,12 @@ public final class Group extends SkypeObject {
      */
     private String id;
 
+    /**
+     * The IDs of the members, kept by the index of the contact list, or null if not known.
+     * The set is replaced, never modified, so it can be read without lock.
+     */
+    private volatile Set<String> memberIds;
+
     /**
      * Constructor.
      * @param newId ID of this GROUP.
@@ -193,21 +204,31 @@ public final class Group extends SkypeObject {
      * @throws SkypeException when the connection has gone bad.
      */
     public Friend[] getAllFriends() throws SkypeException {
-        String[] ids = Utils.convertToArray(getProperty("USERS"));
-        Friend[] friends = new Friend[ids.length];
-        for (int i = 0; i < ids.length; i++) {
-            friends[i] = Skype.getContactList().getFriend(ids[i]);
+        ContactList contactList = Skype.getContactList();
+        Collection<String> ids = contactList.getMemberIds(this);
+        if (ids == null) {
+            ids = Arrays.asList(Utils.convertToArray(getProperty("USERS")));
+        }
+        Friend[] friends = new Friend[ids.size()];
+        int i = 0;
+        for (String id : ids) {
+            friends[i++] = contactList.getFriend(id);
         }
         return friends;
     }
 
     /**
      * Check for any friends.
+     * It is a local lookup in the index of the contact list.
      * @param checked the friend to check against.
      * @return True if friend is authorized.
      * @throws SkypeException when connection has gone bad.
      */
     public boolean hasFriend(Friend checked) throws SkypeException {
+        Set<String> ids = Skype.getContactList().getMemberIds(this);
+        if (ids != null) {
+            return ids.contains(checked.getId());
+        }
         for (Friend friend : getAllFriends()) {
             if (checked.equals(friend)) {
                 return true;
@@ -261,6 +282,22 @@ public final class Group extends SkypeObject {
         return Type.valueOf(getProperty("TYPE"));
     }
 
+    /**
+     * Returns the IDs of the members kept by the index of the contact list.
+     * @return the member IDs or null if not known.
+     */
+    Set<String> getMemberIds() {
+        return memberIds;
+    }
+
+    /**
+     * Sets the IDs of the members, called by the index of the contact list.
+     * @param newMemberIds the member IDs, not modified afterwards.
+     */
+    void setMemberIds(Set<String> newMemberIds) {
+        memberIds = newMemberIds;
+    }
+
     /**
      * Retrieve a property of this GROUP.
      * @param name name of the property.
@@ -184,7 +184,7 @@ public final class MenuItem {
                     }
                 };
                 try {
-                    Connector.getInstance().addConnectorListener(menuItemListener);
+                    Connector.getInstance().addConnectorListener(menuItemListener, new String[] {"MENU_ITEM"});
                 } catch (ConnectorException e) {
                     Utils.convertToSkypeException(e);
                 }
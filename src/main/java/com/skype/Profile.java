@@ -32,6 +32,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import javax.imageio.ImageIO;
 
@@ -169,6 +170,15 @@ public final class Profile {
         }
     }
     
+    /** The properties saved to a warm start file. */
+    static final String[] WARM_START_PROPERTIES = {
+        "FULLNAME", "MOOD_TEXT", "BIRTHDAY", "SEX", "LANGUAGES", "COUNTRY", "PROVINCE", "CITY",
+        "PHONE_HOME", "PHONE_OFFICE", "PHONE_MOBILE", "HOMEPAGE", "ABOUT", "TIMEZONE"
+    };
+
+    /** The values of a warm start file served until the warm start ends. */
+    private final PropertyCache warmStartProperties = new PropertyCache();
+
     private PropertyChangeSupport listeners = new PropertyChangeSupport(this);
     private final Object propertyChangeListenerMutex = new Object();
     private ConnectorListener propertyChangeListener;
@@ -869,6 +879,10 @@ public final class Profile {
      * @throws SkypeException when the connection has gone bad or an ERROR message is received.
      */
     private String getProperty(final String name) throws SkypeException {
+        String value = warmStartProperties.get(name);
+        if (value != null) {
+            return value;
+        }
         return Utils.getProperty("PROFILE", name);
     }
 
@@ -880,6 +894,25 @@ public final class Profile {
      */
     private void setProperty(final String name, final String value) throws SkypeException {
         Utils.setProperty("PROFILE", name, Utils.convertNullToEmptyString(value));
+        warmStartProperties.remove(name);
+    }
+
+    /**
+     * Starts serving the specified properties from the values of a warm start file.
+     * @param values the property values by name.
+     * @see #endWarmStart()
+     */
+    void startWarmStart(Map<String, String> values) {
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            warmStartProperties.put(entry.getKey(), entry.getValue(), PropertyCache.NEVER_EXPIRES);
+        }
+    }
+
+    /**
+     * Ends the warm start: the properties are read from the Skype client again.
+     */
+    void endWarmStart() {
+        warmStartProperties.clear();
     }
     
     /**
@@ -917,7 +950,7 @@ public final class Profile {
                     }
                 };
                 try {
-                    Connector.getInstance().addConnectorListener(connectorListener);
+                    Connector.getInstance().addConnectorListener(connectorListener, new String[] {"PROFILE", "USERSTATUS"});
                     propertyChangeListener = connectorListener;
                 } catch(ConnectorException e) {
                     Utils.convertToSkypeException(e);
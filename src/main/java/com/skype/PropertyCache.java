@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ * 
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ * 
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API> 
+ * in your web site or documents.
+ * 
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of the property values of one Skype object.
+ * Each value expires at its own deadline, or never if it is kept up to date by
+ * the notifications of the Skype client.
+ */
+final class PropertyCache {
+    /** The value meaning a cached value never expires. */
+    static final long NEVER_EXPIRES = Long.MAX_VALUE;
+
+    /**
+     * A cached value.
+     */
+    private static final class Value {
+        /** The property value. */
+        private final String value;
+        /** The System.nanoTime() deadline or NEVER_EXPIRES. */
+        private final long expiresAt;
+
+        private Value(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt != NEVER_EXPIRES && now - expiresAt >= 0;
+        }
+    }
+
+    /** The cached values keyed by property name. */
+    private final ConcurrentMap<String, Value> values = new ConcurrentHashMap<String, Value>();
+
+    /**
+     * Gets the cached value of a property.
+     * @param name the property name.
+     * @return the value or null if it is not cached or expired.
+     */
+    String get(String name) {
+        Value cached = values.get(name);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.isExpired(System.nanoTime())) {
+            values.remove(name, cached);
+            return null;
+        }
+        return cached.value;
+    }
+
+    /**
+     * Caches the value of a property, replacing the cached one.
+     * Used for the values pushed by the Skype client.
+     * @param name the property name.
+     * @param value the value.
+     * @param timeToLive the time to live in nanoseconds or NEVER_EXPIRES.
+     */
+    void put(String name, String value, long timeToLive) {
+        values.put(name, new Value(value, toDeadline(timeToLive)));
+    }
+
+    /**
+     * Caches the value of a property unless a valid value is already cached.
+     * Used for the values fetched by a command, so that a value pushed while
+     * the command was in flight is not replaced by an older one.
+     * @param name the property name.
+     * @param value the value.
+     * @param timeToLive the time to live in nanoseconds or NEVER_EXPIRES.
+     */
+    void putIfAbsent(String name, String value, long timeToLive) {
+        Value fetched = new Value(value, toDeadline(timeToLive));
+        while (true) {
+            Value cached = values.putIfAbsent(name, fetched);
+            if (cached == null || !cached.isExpired(System.nanoTime()) || values.replace(name, cached, fetched)) {
+                return;
+            }
+        }
+    }
+
+    private static long toDeadline(long timeToLive) {
+        if (timeToLive == NEVER_EXPIRES) {
+            return NEVER_EXPIRES;
+        }
+        long deadline = System.nanoTime() + timeToLive;
+        return deadline == NEVER_EXPIRES ? deadline - 1 : deadline;
+    }
+
+    /**
+     * Removes the cached value of a property.
+     * @param name the property name.
+     */
+    void remove(String name) {
+        values.remove(name);
+    }
+
+    /**
+     * Removes all the cached values.
+     */
+    void clear() {
+        values.clear();
+    }
+
+    /**
+     * Copies the cached values of another cache to this.
+     * @param base the cache to copy from.
+     */
+    void copyFrom(PropertyCache base) {
+        values.putAll(base.values);
+    }
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ * 
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ * 
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API> 
+ * in your web site or documents.
+ * 
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.skype.connector.CommandCallback;
+import com.skype.connector.CommandFuture;
+import com.skype.connector.Connector;
+import com.skype.connector.ConnectorException;
+
+/**
+ * Reads properties of several Skype objects into their caches through a
+ * window of GET commands: up to the window size of commands are in flight, a
+ * new one is sent as soon as a reply arrives.
+ * <p>
+ * Only the properties the objects would cache and do not cache yet are read.
+ * The properties the Skype client replies an ERROR for are left uncached.
+ * </p>
+ * @see Skype#hydrate(Object[], String...)
+ */
+final class PropertyHydrator {
+    /** The maximum number of commands in flight. */
+    private final int window;
+
+    /**
+     * Constructor.
+     * @param newWindow the maximum number of commands in flight.
+     */
+    PropertyHydrator(int newWindow) {
+        if (newWindow <= 0) {
+            throw new IllegalArgumentException("The window must be positive.");
+        }
+        this.window = newWindow;
+    }
+
+    /**
+     * Reads the specified properties of the specified objects, returning
+     * when all the replies are received.
+     * @param objects the objects.
+     * @param names the property names.
+     * @return the number of commands sent.
+     * @throws SkypeException when connection has gone bad.
+     */
+    int hydrate(SkypeObject[] objects, String[] names) throws SkypeException {
+        return start(objects, names).await();
+    }
+
+    /**
+     * Starts reading the specified properties of the specified objects,
+     * returning once the first window of commands is sent. The following
+     * commands are sent from the callbacks of the replies, so no thread waits
+     * until {@link Hydration#await()} is called.
+     * @param objects the objects.
+     * @param names the property names.
+     * @return the reading in progress.
+     */
+    Hydration start(SkypeObject[] objects, String[] names) {
+        Hydration hydration = new Hydration(objects, names);
+        hydration.start(window);
+        return hydration;
+    }
+
+    /**
+     * The reading of the properties started by
+     * {@link PropertyHydrator#start(SkypeObject[], String[])}.
+     */
+    static final class Hydration {
+        /** The objects to read the properties of. */
+        private final SkypeObject[] objects;
+        /** The property names. */
+        private final String[] names;
+        /** The end of the reading, when no command is in flight any more. */
+        private final CountDownLatch finished = new CountDownLatch(1);
+        /** The index of the current object in objects. */
+        private int objectIndex;
+        /** The index of the next property name in names. */
+        private int nameIndex;
+        /** The number of commands in flight. */
+        private int inFlight;
+        /** The number of commands sent. */
+        private int sent;
+        /** The first failure, or null. */
+        private ConnectorException failure;
+
+        private Hydration(SkypeObject[] newObjects, String[] newNames) {
+            this.objects = newObjects;
+            this.names = newNames;
+        }
+
+        private synchronized void start(int window) {
+            boolean sending = true;
+            while (sending && inFlight < window) {
+                sending = sendNext();
+            }
+            finishIfIdle();
+        }
+
+        /**
+         * Waits until all the replies are received.
+         * @return the number of commands sent.
+         * @throws SkypeException when connection has gone bad.
+         */
+        int await() throws SkypeException {
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SkypeException("The hydration was interrupted.", e);
+            }
+            synchronized (this) {
+                if (failure != null) {
+                    Utils.convertToSkypeException(failure);
+                }
+                return sent;
+            }
+        }
+
+        private synchronized void replied(ConnectorException cause) {
+            inFlight--;
+            if (cause != null && failure == null) {
+                failure = cause;
+            }
+            sendNext();
+            finishIfIdle();
+        }
+
+        private void finishIfIdle() {
+            if (inFlight == 0) {
+                finished.countDown();
+            }
+        }
+
+        private boolean sendNext() {
+            if (failure != null) {
+                return false;
+            }
+            while (objectIndex < objects.length) {
+                final SkypeObject object = objects[objectIndex];
+                String type = object.getHydrationType();
+                if (type == null || nameIndex == names.length) {
+                    objectIndex++;
+                    nameIndex = 0;
+                    continue;
+                }
+                final String name = names[nameIndex++];
+                if (!object.isPropertyMissing(name)) {
+                    continue;
+                }
+                final String responseHeader = type + " " + object.getHydrationId() + " " + name + " ";
+                CommandFuture future;
+                try {
+                    future = Connector.getInstance().executeWithIdAsync("GET " + responseHeader.trim(), responseHeader);
+                } catch (ConnectorException e) {
+                    failure = e;
+                    return false;
+                }
+                inFlight++;
+                sent++;
+                future.addCallback(new CommandCallback() {
+                    public void commandCompleted(String response) {
+                        if (response.startsWith(responseHeader)) {
+                            object.propertyHydrated(name, response.substring(responseHeader.length()));
+                        }
+                        replied(null);
+                    }
+
+                    public void commandFailed(ConnectorException cause) {
+                        replied(cause);
+                    }
+                });
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ * 
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ * 
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API> 
+ * in your web site or documents.
+ * 
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of the most recent numeric IDs, in constant memory and without lock.
+ * <p>
+ * The IDs are kept in a ring of words, each word holding the bits of a block
+ * of 32 consecutive IDs in its lower half and the block number in its upper
+ * half, so that one compare-and-set both recycles a word for a newer block
+ * and adds an ID. An ID whose word has been recycled for a newer block is
+ * too old to be tracked and is considered as already added.
+ * </p>
+ */
+final class RecentIdSet {
+    /** The number of IDs in a block. */
+    private static final int BLOCK_SIZE = 32;
+    /** The shift from an ID to its block number. */
+    private static final int BLOCK_SHIFT = 5;
+    /** The upper bound of the IDs, so that a block number fits in half a word. */
+    private static final long MAX_ID = 1L << (BLOCK_SIZE + BLOCK_SHIFT);
+    /** The mask of the bits of a word. */
+    private static final long BITS_MASK = 0xFFFFFFFFL;
+
+    /** The words, a block number and the bits of its IDs each. */
+    private final AtomicLongArray words;
+
+    /**
+     * Constructor.
+     * @param capacity the minimum number of consecutive IDs tracked.
+     */
+    RecentIdSet(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+        this.words = new AtomicLongArray((capacity + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    }
+
+    /**
+     * Gets the number of consecutive IDs tracked.
+     * @return the capacity.
+     */
+    int getCapacity() {
+        return words.length() * BLOCK_SIZE;
+    }
+
+    /**
+     * Adds an ID.
+     * @param id the ID, not negative and below 2^37.
+     * @return true if the ID was not added yet and is not too old.
+     */
+    boolean add(long id) {
+        if (id < 0 || MAX_ID <= id) {
+            throw new IllegalArgumentException("The ID " + id + " is out of range.");
+        }
+        long block = id >>> BLOCK_SHIFT;
+        int index = (int)(block % words.length());
+        long bit = 1L << (id & (BLOCK_SIZE - 1));
+        while (true) {
+            long word = words.get(index);
+            long wordBlock = word >>> BLOCK_SIZE;
+            long updated;
+            if (wordBlock == block) {
+                if ((word & bit) != 0) {
+                    return false;
+                }
+                updated = word | bit;
+            } else if (wordBlock < block) {
+                updated = (block << BLOCK_SIZE) | bit;
+            } else {
+                return false;
+            }
+            if (words.compareAndSet(index, word, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Checks if an ID was added or is too old to be tracked.
+     * @param id the ID, not negative.
+     * @return true if the ID was added or is too old.
+     */
+    boolean contains(long id) {
+        long block = id >>> BLOCK_SHIFT;
+        long word = words.get((int)(block % words.length()));
+        long wordBlock = word >>> BLOCK_SIZE;
+        if (wordBlock == block) {
+            return (word & BITS_MASK & (1L << (id & (BLOCK_SIZE - 1)))) != 0;
+        }
+        return wordBlock > block;
+    }
+}
@@ -24,6 +24,7 @@
 package com.skype;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -95,6 +96,19 @@ public final class Skype {
     /** Collection of all VOICEMAIL listeners. */
     static List<VoiceMailListener> voiceMailListeners = new CopyOnWriteArrayList<VoiceMailListener>();
 
+    /** callStateTable lock object. */
+    private final static Object callStateTableMutex = new Object();
+    /** The live call state table, null until requested. */
+    static volatile CallStateTable callStateTable;
+
+    /** The maximum number of GET commands in flight during a hydration. */
+    private static volatile int hydrationWindow = 32;
+
+    /** warmStartFile lock. */
+    private static final Object warmStartFileMutex = new Object();
+    /** The warm start file, null if not set. */
+    private static File warmStartFile;
+
     /** User threading lock object. */
     private final static Object userThreadFieldMutex = new Object();
     /** User thread. */
@@ -111,6 +125,8 @@ public final class Skype {
     private static SkypeExceptionHandler exceptionHandler = defaultExceptionHandler;
 
     private static ChatMessageEditConnectorListener chatMessageEditConnectorListener;
+    /** The flag to check if chatMessageEditConnectorListener is added to the connector. */
+    private static boolean chatMessageEditConnectorListenerAdded;
 
     /**
      * Sets the thread of Skype4Java to "daemon mode" or not.
@@ -844,7 +860,7 @@ public final class Skype {
             if (chatMessageListener == null) {
                 chatMessageListener = new ChatMessageConnectorListener();
                 try {
-                    getConnectorInstance().addConnectorListener(chatMessageListener);
+                    getConnectorInstance().addConnectorListener(chatMessageListener, new String[] {"CHATMESSAGE", "CHAT"});
                 } catch (ConnectorException e) {
                     Utils.convertToSkypeException(e);
                 }
@@ -880,8 +896,12 @@ public final class Skype {
         synchronized (chatMessageEditListenerMutext) {
             if (chatMessageEditConnectorListener == null) {
             	chatMessageEditConnectorListener = new ChatMessageEditConnectorListener();
+            }
+            if (!chatMessageEditConnectorListenerAdded) {
                 try {
-                    getConnectorInstance().addConnectorListener(chatMessageEditConnectorListener);
+                    getConnectorInstance().addConnectorListener(chatMessageEditConnectorListener, new String[] {"CHATMESSAGE"});
+                    chatMessageEditConnectorListenerAdded = true;
+                    ChatMessage.setNotified(true);
                 } catch (ConnectorException e) {
                     Utils.convertToSkypeException(e);
                 }
@@ -893,6 +913,9 @@ public final class Skype {
     /**
      * Remove a listener for CHATMESSAGE with status EDITED_BY events.
      * If the listener is already removed nothing happens.
+     * When the last listener is removed, the CHATMESSAGE notifications are
+     * not listened to any more, so the chat messages stop caching the
+     * properties which change.
      * @param listener The listener to remove.
      * @see #addChatMessageEditListener(ChatMessageEditListener)
      */
@@ -901,10 +924,31 @@ public final class Skype {
         synchronized (chatMessageEditListenerMutext) {
             if (chatMessageEditConnectorListener != null) {
             	chatMessageEditConnectorListener.removeListener(listener);
+                if (chatMessageEditConnectorListenerAdded && !chatMessageEditConnectorListener.hasListeners()) {
+                    getConnectorInstance().removeConnectorListener(chatMessageEditConnectorListener);
+                    chatMessageEditConnectorListenerAdded = false;
+                    ChatMessage.setNotified(false);
+                }
             }
         }
     }
 
+    /**
+     * Gets the tracker correlating the edits of the chat messages, to read
+     * its counters or change the expiry of the incomplete edits. It tracks
+     * the edits while a {@link ChatMessageEditListener} is added.
+     * @return the tracker.
+     * @see #addChatMessageEditListener(ChatMessageEditListener)
+     */
+    public static ChatMessageEditConnectorListener getChatMessageEditTracker() {
+        synchronized (chatMessageEditListenerMutext) {
+            if (chatMessageEditConnectorListener == null) {
+                chatMessageEditConnectorListener = new ChatMessageEditConnectorListener();
+            }
+            return chatMessageEditConnectorListener;
+        }
+    }
+
     /**
      * Add a listener for FILETRANSFER events received from the Skype API.
      *
@@ -921,7 +965,7 @@ public final class Skype {
                 if (fileTransferListener == null) {
                     fileTransferListener = new FileTransferConnectorListener(listener);
                     try {
-                        getConnectorInstance().addConnectorListener(fileTransferListener);
+                        getConnectorInstance().addConnectorListener(fileTransferListener, new String[] {"FILETRANSFER"});
                     } catch (ConnectorException e) {
                         Utils.convertToSkypeException(e);
                     }
@@ -968,7 +1012,7 @@ public final class Skype {
                 if (userListener == null) {
                     userListener = new UserConnectorListener(listener);
                     try {
-                        getConnectorInstance().addConnectorListener(userListener);
+                        getConnectorInstance().addConnectorListener(userListener, new String[] {"USER"});
                     } catch (ConnectorException e) {
                         Utils.convertToSkypeException(e);
                     }
@@ -1015,7 +1059,7 @@ public final class Skype {
                 if (callMonitorListener == null) {
                     callMonitorListener = new CallConnectorListener(listener);
                     try {
-                        getConnectorInstance().addConnectorListener(callMonitorListener);
+                        getConnectorInstance().addConnectorListener(callMonitorListener, new String[] {"CALL"});
                     } catch (ConnectorException e) {
                         Utils.convertToSkypeException(e);
                     }
@@ -1046,6 +1090,207 @@ public final class Skype {
         }
     }
     
+    /**
+     * Gets the registry of the objects of the specified type, to read its
+     * counters or change its capacity. The friends are in the registry of
+     * the users.
+     * @param type the type of the objects: User, Friend, Chat, ChatMessage,
+     *            Call, Group, FileTransfer or VoiceMail.
+     * @return the registry.
+     * @throws IllegalArgumentException if the objects of the type are not registered.
+     */
+    public static SkypeObjectRegistry<?> getObjectRegistry(Class<?> type) {
+        Utils.checkNotNull("type", type);
+        if (type == User.class || type == Friend.class) {
+            return User.users;
+        } else if (type == Chat.class) {
+            return Chat.chats;
+        } else if (type == ChatMessage.class) {
+            return ChatMessage.chatMessages;
+        } else if (type == Call.class) {
+            return Call.calls;
+        } else if (type == Group.class) {
+            return Group.groups;
+        } else if (type == FileTransfer.class) {
+            return FileTransfer.files;
+        } else if (type == VoiceMail.class) {
+            return VoiceMail.voiceMails;
+        }
+        throw new IllegalArgumentException("The " + type.getName() + " objects are not registered.");
+    }
+
+    /**
+     * Gets the table of the live calls, kept up to date by the CALL
+     * notifications. The first call starts the table. The table is stopped
+     * when the connection is detached, get it again after attaching.
+     * @return the call state table.
+     * @throws SkypeException when connection has gone bad or ERROR reply.
+     */
+    public static CallStateTable getCallStateTable() throws SkypeException {
+        synchronized (callStateTableMutex) {
+            if (callStateTable == null) {
+                CallStateTable table = new CallStateTable();
+                table.start();
+                callStateTable = table;
+            }
+            return callStateTable;
+        }
+    }
+
+    /**
+     * Reads the specified properties of the specified objects into their
+     * property caches, so that the getters answer without a command afterwards.
+     * <p>
+     * The GET commands are pipelined: up to the hydration window of commands
+     * are in flight at once, instead of one round trip per property.
+     * Only the properties the objects cache with the current settings are
+     * read: those of {@link User} when {@link User#setPropertyCacheEnabled(boolean)}
+     * is on, those kept by {@link Chat#setPropertyCacheEnabled(boolean)}, and
+     * the ones which never change for {@link ChatMessage} and {@link Call}.
+     * The other objects and properties are ignored.
+     * </p>
+     * @param objects the objects, typically an array returned by a getAll method.
+     * @param properties the property names, as in the Skype API.
+     * @throws SkypeException when connection has gone bad.
+     * @throws IllegalArgumentException if an object is not a Skype object.
+     * @see #setHydrationWindow(int)
+     */
+    public static void hydrate(Object[] objects, String... properties) throws SkypeException {
+        Utils.checkNotNull("objects", objects);
+        Utils.checkNotNull("properties", properties);
+        SkypeObject[] targets = new SkypeObject[objects.length];
+        for (int i = 0; i < objects.length; i++) {
+            if (!(objects[i] instanceof SkypeObject)) {
+                throw new IllegalArgumentException("The object " + objects[i] + " is not a Skype object.");
+            }
+            targets[i] = (SkypeObject)objects[i];
+        }
+        new PropertyHydrator(hydrationWindow).hydrate(targets, properties);
+    }
+
+    /**
+     * Sets the maximum number of GET commands in flight during a hydration.
+     * The default is 32.
+     * @param window the maximum number of commands in flight.
+     * @throws IllegalArgumentException if the window is not positive.
+     * @see #hydrate(Object[], String...)
+     */
+    public static void setHydrationWindow(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("The window must be positive.");
+        }
+        hydrationWindow = window;
+    }
+
+    /**
+     * Gets the maximum number of GET commands in flight during a hydration.
+     * @return the window.
+     */
+    static int getHydrationWindow() {
+        return hydrationWindow;
+    }
+
+    /**
+     * Sets the file the friends, the groups and the profile are saved to when
+     * the application shuts down.
+     * <p>
+     * If the file exists, it is loaded now: the contact list, the main
+     * properties of the friends and the profile are served from the saved
+     * values at once, and reconciled with the Skype client in the background.
+     * The saved properties of the friends are used only if the user property
+     * cache is enabled. An unreadable file is ignored.
+     * </p>
+     * @param file the warm start file.
+     * @throws SkypeException when connection has gone bad or ERROR reply.
+     * @see #saveWarmStartFile()
+     */
+    public static void setWarmStartFile(File file) throws SkypeException {
+        Utils.checkNotNull("file", file);
+        synchronized (warmStartFileMutex) {
+            if (warmStartFile == null) {
+                Runtime.getRuntime().addShutdownHook(new Thread("SkypeWarmStartSaver") {
+                    @Override
+                    public void run() {
+                        try {
+                            saveWarmStartFile();
+                        } catch (Throwable e) {
+                            handleUncaughtException(e);
+                        }
+                    }
+                });
+            }
+            warmStartFile = file;
+        }
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            WarmStartFile.read(file).apply();
+        } catch (IOException e) {
+            return;
+        }
+        Thread reconciler = new Thread("SkypeWarmStartReconciler") {
+            @Override
+            public void run() {
+                try {
+                    WarmStartFile.reconcile();
+                } catch (Throwable e) {
+                    handleUncaughtException(e);
+                }
+            }
+        };
+        reconciler.setDaemon(true);
+        reconciler.start();
+    }
+
+    /**
+     * Saves the friends with their main properties, the groups and the
+     * profile to the warm start file now. It is done automatically when the
+     * application shuts down.
+     * @throws SkypeException when connection has gone bad, ERROR reply or the file cannot be written.
+     * @see #setWarmStartFile(File)
+     */
+    public static void saveWarmStartFile() throws SkypeException {
+        File file;
+        synchronized (warmStartFileMutex) {
+            file = warmStartFile;
+        }
+        if (file == null) {
+            return;
+        }
+        try {
+            WarmStartFile.capture().write(file);
+        } catch (IOException e) {
+            throw new SkypeException("The warm start file '" + file + "' cannot be saved.", e);
+        }
+    }
+
+    /**
+     * Stops the table of the live calls if it is started.
+     */
+    static void stopCallStateTable() {
+        synchronized (callStateTableMutex) {
+            if (callStateTable != null) {
+                stopCallStateTable(callStateTable);
+            }
+        }
+    }
+
+    /**
+     * Stops the specified table of the live calls, and forgets it if it is
+     * the current one so the next {@link #getCallStateTable()} starts a new
+     * one.
+     * @param table the table to stop.
+     */
+    static void stopCallStateTable(CallStateTable table) {
+        table.stop();
+        synchronized (callStateTableMutex) {
+            if (callStateTable == table) {
+                callStateTable = null;
+            }
+        }
+    }
+
     /**
      * Add a listener for CALL events received from the Skype API.
      * @see CallListener
@@ -1062,7 +1307,7 @@ public final class Skype {
 	            if (callListener == null) {
 	                callListener = new ConnectorListenerImpl();
 	                try {
-	                    getConnectorInstance().addConnectorListener(callListener);
+	                    getConnectorInstance().addConnectorListener(callListener, new String[] {"CALL"});
 	                } catch (ConnectorException e) {
 	                    Utils.convertToSkypeException(e);
 	                }
@@ -1114,7 +1359,7 @@ public final class Skype {
             if (voiceMailListener == null) {
                 voiceMailListener = new VoiceMailConnectorListener();
                 try {
-                    getConnectorInstance().addConnectorListener(voiceMailListener);
+                    getConnectorInstance().addConnectorListener(voiceMailListener, new String[] {"VOICEMAIL"});
                 } catch (ConnectorException e) {
                     Utils.convertToSkypeException(e);
                 }
@@ -1159,8 +1404,33 @@ public final class Skype {
         }
     }
 	
-    static void addGlobalChatListener(GlobalChatListener listener, Chat chat) throws SkypeException {
-        addGlobalChatListener(listener);
+    /**
+     * Adds a listener for the members joining and leaving a chat.
+     * @param chat the chat.
+     * @param listener the listener.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    static void addChatListener(Chat chat, ChatListener listener) throws SkypeException {
+        synchronized (chatListenerManagerMutex) {
+            if (chatListenerManager == null) {
+                chatListenerManager = new ChatListenerMananager();
+                addChatMessageListener(chatListenerManager);
+            }
+            chatListenerManager.addChatListener(chat, listener);
+        }
+    }
+
+    /**
+     * Removes a listener for the members joining and leaving a chat.
+     * @param chat the chat.
+     * @param listener the listener.
+     */
+    static void removeChatListener(Chat chat, ChatListener listener) {
+        synchronized (chatListenerManagerMutex) {
+            if (chatListenerManager != null) {
+                chatListenerManager.removeChatListener(chat, listener);
+            }
+        }
     }
 
     /**
@@ -64,6 +64,42 @@ class SkypeObject {
         userDataMap.put(name, userData);
     }
     
+    /**
+     * Gets the object type used in the GET commands for the properties of
+     * this object, or null if this object does not cache its properties.
+     * @return the object type or null.
+     * @see Skype#hydrate(Object[], String...)
+     */
+    String getHydrationType() {
+        return null;
+    }
+
+    /**
+     * Gets the ID used in the GET commands for the properties of this object.
+     * @return the object ID or null.
+     */
+    String getHydrationId() {
+        return null;
+    }
+
+    /**
+     * Checks if a property would be cached by this object but is not cached yet.
+     * @param name the property name.
+     * @return true if the property should be read by a hydration.
+     */
+    boolean isPropertyMissing(String name) {
+        return false;
+    }
+
+    /**
+     * Caches a property value read by a hydration. Called on the thread
+     * receiving the replies of the Skype client, so it must not block.
+     * @param name the property name.
+     * @param value the value.
+     */
+    void propertyHydrated(String name, String value) {
+    }
+
     /**
      * Copy the contents of another object to this.
      * @param base the Object to copy from.
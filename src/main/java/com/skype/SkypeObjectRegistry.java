@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ * 
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ * 
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API> 
+ * in your web site or documents.
+ * 
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registry of the Skype objects of a type by ID.
+ * <p>
+ * The registry gives the same object for an ID as long as the object is
+ * strongly reachable. The objects are held weakly, except the most recently
+ * created ones, up to the capacity, which are held strongly too so that the
+ * data and listeners of a recent object survive while the application does
+ * not reference it. The other objects are dropped by the garbage collector
+ * once unreachable, and created again if asked afterwards.
+ * </p><p>
+ * The lookups do not lock: the registry is a concurrent map of weak
+ * references, and the strongly held objects are kept in a ring.
+ * </p>
+ * @param <T> the type of the registered objects.
+ * @see Skype#getObjectRegistry(Class)
+ */
+public final class SkypeObjectRegistry<T extends SkypeObject> {
+    /** The system property for the default capacity of the registries. */
+    public static final String CAPACITY_PROPERTY = "skype.objectRegistryCapacity";
+
+    /** The default capacity of the registries. */
+    private static final int DEFAULT_CAPACITY = 10000;
+
+    /**
+     * Factory of the registered objects.
+     * @param <T> the type of the created objects.
+     */
+    interface Factory<T> {
+        /**
+         * Creates the object with the specified ID.
+         * @param id the ID.
+         * @return the new object.
+         */
+        T create(String id);
+    }
+
+    /**
+     * Upgrade of the registered objects to a subtype, like a user to a friend.
+     * @param <T> the type of the upgraded objects.
+     */
+    interface Upgrade<T> {
+        /**
+         * Checks if the specified object is already upgraded.
+         * @param object the registered object.
+         * @return true if it is upgraded.
+         */
+        boolean isUpgraded(T object);
+
+        /**
+         * Creates the upgrade of the specified object.
+         * @param id the ID.
+         * @param object the registered object or null if there is none.
+         * @return the upgraded object.
+         */
+        T upgrade(String id, T object);
+    }
+
+    /**
+     * Weak reference to a registered object, knowing its ID.
+     */
+    private static final class Entry<T> extends WeakReference<T> {
+        /** The ID of the object. */
+        private final String id;
+
+        private Entry(String id, T object, ReferenceQueue<? super T> queue) {
+            super(object, queue);
+            this.id = id;
+        }
+    }
+
+    /** The registered objects by ID. */
+    private final ConcurrentMap<String, Entry<T>> entries = new ConcurrentHashMap<String, Entry<T>>();
+    /** The queue of the references cleared by the garbage collector. */
+    private final ReferenceQueue<T> clearedEntries = new ReferenceQueue<T>();
+    /** The most recently created objects, held strongly. */
+    private volatile AtomicReferenceArray<T> recentObjects;
+    /** The next position in the ring of recent objects. */
+    private final AtomicLong recentIndex = new AtomicLong();
+
+    /** The number of lookups finding a registered object. */
+    private final AtomicLong hitCount = new AtomicLong();
+    /** The number of lookups creating a new object. */
+    private final AtomicLong missCount = new AtomicLong();
+    /** The number of objects dropped after the garbage collector cleared them. */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Constructor with the default capacity.
+     */
+    SkypeObjectRegistry() {
+        this(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Constructor.
+     * @param capacity the number of recent objects held strongly.
+     */
+    SkypeObjectRegistry(int capacity) {
+        setCapacity(capacity);
+    }
+
+    /**
+     * Returns the object with the specified ID, creating it if it is not
+     * registered.
+     * @param id the ID.
+     * @param factory the factory used if the object is not registered.
+     * @return the object.
+     */
+    T getInstance(String id, Factory<T> factory) {
+        expungeClearedEntries();
+        Entry<T> entry = entries.get(id);
+        T object = entry == null ? null : entry.get();
+        if (object != null) {
+            hitCount.incrementAndGet();
+            return object;
+        }
+        T created = factory.create(id);
+        Entry<T> newEntry = new Entry<T>(id, created, clearedEntries);
+        while (true) {
+            if (entry == null) {
+                entry = entries.putIfAbsent(id, newEntry);
+                if (entry == null) {
+                    break;
+                }
+            } else if (entries.replace(id, entry, newEntry)) {
+                break;
+            } else {
+                entry = entries.get(id);
+            }
+            object = entry == null ? null : entry.get();
+            if (object != null) {
+                hitCount.incrementAndGet();
+                return object;
+            }
+        }
+        missCount.incrementAndGet();
+        hold(created);
+        return created;
+    }
+
+    /**
+     * Returns the registered object with the specified ID without creating it.
+     * @param id the ID.
+     * @return the object or null if it is not registered.
+     */
+    T get(String id) {
+        Entry<T> entry = entries.get(id);
+        return entry == null ? null : entry.get();
+    }
+
+    /**
+     * Returns the upgraded object with the specified ID, replacing the
+     * registered object by its upgrade with compare-and-set if it is not
+     * upgraded yet. An object registered concurrently is upgraded too instead
+     * of being overwritten.
+     * @param id the ID.
+     * @param upgrade the upgrade.
+     * @return the upgraded object.
+     */
+    T upgrade(String id, Upgrade<T> upgrade) {
+        expungeClearedEntries();
+        while (true) {
+            Entry<T> entry = entries.get(id);
+            T object = entry == null ? null : entry.get();
+            if (object != null && upgrade.isUpgraded(object)) {
+                hitCount.incrementAndGet();
+                return object;
+            }
+            T upgraded = upgrade.upgrade(id, object);
+            Entry<T> newEntry = new Entry<T>(id, upgraded, clearedEntries);
+            if (entry == null ? entries.putIfAbsent(id, newEntry) == null : entries.replace(id, entry, newEntry)) {
+                missCount.incrementAndGet();
+                hold(upgraded);
+                return upgraded;
+            }
+        }
+    }
+
+    /**
+     * Removes the object with the specified ID.
+     * @param id the ID.
+     */
+    void remove(String id) {
+        entries.remove(id);
+    }
+
+    /**
+     * Returns the registered objects.
+     * @return the objects.
+     */
+    List<T> values() {
+        List<T> values = new ArrayList<T>(entries.size());
+        for (Entry<T> entry : entries.values()) {
+            T object = entry.get();
+            if (object != null) {
+                values.add(object);
+            }
+        }
+        return values;
+    }
+
+    private void hold(T object) {
+        AtomicReferenceArray<T> ring = recentObjects;
+        if (ring.length() != 0) {
+            ring.set((int)(recentIndex.getAndIncrement() % ring.length()), object);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expungeClearedEntries() {
+        Entry<T> entry;
+        while ((entry = (Entry<T>)clearedEntries.poll()) != null) {
+            if (entries.remove(entry.id, entry)) {
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Sets the number of recently created objects held strongly. The
+     * objects held before are held weakly only until they are created again.
+     * @param capacity the capacity, 0 to hold all the objects weakly.
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The capacity must not be negative.");
+        }
+        recentObjects = new AtomicReferenceArray<T>(capacity);
+    }
+
+    /**
+     * Returns the number of recently created objects held strongly.
+     * @return the capacity.
+     */
+    public int getCapacity() {
+        return recentObjects.length();
+    }
+
+    /**
+     * Returns the number of registered objects, including the ones cleared
+     * by the garbage collector but not removed yet.
+     * @return the size.
+     */
+    public int getSize() {
+        expungeClearedEntries();
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups which found a registered object.
+     * @return the hit count.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups which created a new object.
+     * @return the miss count.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of objects removed after the garbage collector
+     * cleared them.
+     * @return the eviction count.
+     */
+    public long getEvictionCount() {
+        expungeClearedEntries();
+        return evictionCount.get();
+    }
+}
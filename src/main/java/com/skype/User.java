@@ -32,9 +32,11 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
 
@@ -43,6 +45,8 @@ import com.skype.connector.Connector;
 import com.skype.connector.ConnectorException;
 import com.skype.connector.ConnectorListener;
 import com.skype.connector.ConnectorMessageEvent;
+import com.skype.connector.ConnectorNotification;
+import com.skype.connector.ConnectorStatusEvent;
 import java.util.ArrayList;
 
 /**
@@ -59,10 +63,53 @@ public class User extends SkypeObject {
     /**
      * Collection of User objects.
      */
-    private static final Map<String, User> users = new HashMap<String, User>();
+    static final SkypeObjectRegistry<User> users = new SkypeObjectRegistry<User>();
+
+    /**
+     * Factory of User objects.
+     */
+    private static final SkypeObjectRegistry.Factory<User> FACTORY = new SkypeObjectRegistry.Factory<User>() {
+        public User create(String id) {
+            return new User(id);
+        }
+    };
+
+    /** The upgrade of the registered users to friends. */
+    private static final SkypeObjectRegistry.Upgrade<User> FRIEND_UPGRADE = new SkypeObjectRegistry.Upgrade<User>() {
+        public boolean isUpgraded(User user) {
+            return user instanceof Friend;
+        }
+
+        public User upgrade(String id, User user) {
+            Friend friend = new Friend(id);
+            if (user != null) {
+                friend.copyFrom(user);
+            }
+            return friend;
+        }
+    };
     
     private static final Object propertyChangeListenerMutex = new Object();
     private static ConnectorListener propertyChangeListener;
+
+    /** The properties the Skype client notifies the changes of. */
+    private static final Set<String> NOTIFIED_PROPERTIES = new HashSet<String>(Arrays.asList(new String[] {
+        "ONLINESTATUS", "MOOD_TEXT", "FULLNAME", "PHONE_MOBILE", "PHONE_HOME", "PHONE_OFFICE", "DISPLAYNAME",
+        "COUNTRY", "PROVINCE", "CITY", "TIMEZONE", "SEX", "HOMEPAGE", "BIRTHDAY", "LANGUAGE", "ABOUT",
+        "ISBLOCKED", "ISAUTHORIZED", "BUDDYSTATUS"
+    }));
+    /** propertyCacheListener lock. */
+    private static final Object propertyCacheListenerMutex = new Object();
+    /** USER listener filling the property caches, null if the cache is disabled. */
+    private static ConnectorListener propertyCacheListener;
+    /** The flag to check if the property cache is enabled. */
+    private static volatile boolean propertyCacheEnabled;
+    /** The time to live of the cached properties which are not notified, in nanoseconds. */
+    private static volatile long propertyCacheTimeToLive = TimeUnit.SECONDS.toNanos(30);
+    /** The properties saved to a warm start file. */
+    static final String[] WARM_START_PROPERTIES = {
+        "FULLNAME", "DISPLAYNAME", "ONLINESTATUS", "BUDDYSTATUS", "MOOD_TEXT", "ISAUTHORIZED", "ISBLOCKED"
+    };
     
     /** Identifies the status property. */
     public static final String STATUS_PROPERTY = "status";
@@ -140,12 +187,7 @@ public class User extends SkypeObject {
      * @return User object with ID == id.
      */
     public static User getInstance(final String id) {
-        synchronized(users) {
-            if (!users.containsKey(id)) {
-                users.put(id, new User(id));
-            }
-            return users.get(id);
-        }
+        return users.getInstance(id, FACTORY);
     }
     
     /**
@@ -156,14 +198,8 @@ public class User extends SkypeObject {
      * @return User object with ID == id.
      */
     public static User getInstance(final String id, final UserListener userListener) {
-        synchronized (users) {
-            if (!users.containsKey(id)) {
-                users.put(id, new User(id, userListener));
-            } else {
-                addUserListener(userListener);
-            }
-            return users.get(id);
-        }
+        addUserListener(userListener);
+        return users.getInstance(id, FACTORY);
     }    
     
     /**
@@ -172,23 +208,7 @@ public class User extends SkypeObject {
      * @return Friend object with ID == id.
      */
     static Friend getFriendInstance(String id) {
-        synchronized(users) {
-            if (!users.containsKey(id)) {
-                Friend friend = new Friend(id);
-                users.put(id, friend);
-                return friend;
-            } else {
-                User user = users.get(id);
-                if (user instanceof Friend) {
-                    return (Friend)user;
-                } else {
-                    Friend friend = new Friend(id);
-                    friend.copyFrom(user);
-                    users.put(id, friend);
-                    return friend;
-                }
-            }
-        }
+        return (Friend)users.upgrade(id, FRIEND_UPGRADE);
     }
 
     /**
@@ -246,6 +266,9 @@ public class User extends SkypeObject {
     
     /** Exception handler to USER object. */
     private SkypeExceptionHandler exceptionHandler;
+
+    /** The cached property values, used only if the property cache is enabled. */
+    private final PropertyCache propertyCache = new PropertyCache();
     
     /**
      * Constructor.
@@ -307,6 +330,150 @@ public class User extends SkypeObject {
         return id;
     }
 
+    /**
+     * Copy the contents of another object to this, including the cached properties.
+     * @param base the Object to copy from.
+     */
+    @Override
+    void copyFrom(Object base) {
+        super.copyFrom(base);
+        if (base instanceof User) {
+            propertyCache.copyFrom(((User)base).propertyCache);
+        }
+    }
+
+    /**
+     * Enables or disables the property cache of all the users.
+     * <p>
+     * When enabled, the property getters return the values notified by the
+     * Skype client instead of sending a GET command each time. The properties
+     * the Skype client does not notify the changes of are cached for the time
+     * to live only. The cache is cleared when the connection to the Skype
+     * client is lost.
+     * </p>
+     * @param on if true the property cache is enabled.
+     * @throws SkypeException when connection to Skype client has gone bad.
+     * @see #setPropertyCacheTimeToLive(long, TimeUnit)
+     */
+    public static void setPropertyCacheEnabled(boolean on) throws SkypeException {
+        synchronized (propertyCacheListenerMutex) {
+            if (on && propertyCacheListener == null) {
+                ConnectorListener connectorListener = new AbstractConnectorListener() {
+                    @Override
+                    public void messageReceived(ConnectorMessageEvent event) {
+                        ConnectorNotification notification = event.getNotification();
+                        if (notification.isObjectType("USER") && notification.getPropertyValue() != null) {
+                            User user = users.get(notification.getObjectId());
+                            if (user != null) {
+                                String propertyName = notification.getPropertyName();
+                                user.propertyCache.put(propertyName, notification.getPropertyValue(), getTimeToLive(propertyName));
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void statusChanged(ConnectorStatusEvent event) {
+                        if (event.getStatus() != Connector.Status.ATTACHED) {
+                            clearPropertyCaches();
+                        }
+                    }
+                };
+                try {
+                    Connector.getInstance().addConnectorListener(connectorListener, new String[] {"USER"});
+                    propertyCacheListener = connectorListener;
+                } catch(ConnectorException e) {
+                    Utils.convertToSkypeException(e);
+                }
+            } else if (!on && propertyCacheListener != null) {
+                Connector.getInstance().removeConnectorListener(propertyCacheListener);
+                propertyCacheListener = null;
+            }
+            propertyCacheEnabled = on;
+            if (!on) {
+                clearPropertyCaches();
+            }
+        }
+    }
+
+    /**
+     * Sets the time to live of the cached properties the Skype client does not
+     * notify the changes of. The default is 30 seconds.
+     * @param time the time to live.
+     * @param unit the unit of the time.
+     * @see #setPropertyCacheEnabled(boolean)
+     */
+    public static void setPropertyCacheTimeToLive(long time, TimeUnit unit) {
+        propertyCacheTimeToLive = unit.toNanos(time);
+    }
+
+    private static long getTimeToLive(String propertyName) {
+        if (NOTIFIED_PROPERTIES.contains(propertyName)) {
+            return PropertyCache.NEVER_EXPIRES;
+        }
+        return propertyCacheTimeToLive;
+    }
+
+    @Override
+    String getHydrationType() {
+        return "USER";
+    }
+
+    @Override
+    String getHydrationId() {
+        return getId();
+    }
+
+    @Override
+    boolean isPropertyMissing(String name) {
+        return propertyCacheEnabled && propertyCache.get(name) == null;
+    }
+
+    @Override
+    void propertyHydrated(String name, String value) {
+        propertyCache.putIfAbsent(name, value, getTimeToLive(name));
+    }
+
+    /**
+     * Starts serving the properties of the specified users from the values
+     * of a warm start file. They are kept until the warm start ends.
+     * The values are ignored if the cache is disabled, because nothing would
+     * refresh them.
+     * @param values the property values by name, by user.
+     * @see #endWarmStart(Map)
+     */
+    static void startWarmStart(Map<User, Map<String, String>> values) {
+        if (!propertyCacheEnabled) {
+            return;
+        }
+        for (Map.Entry<User, Map<String, String>> entry : values.entrySet()) {
+            for (Map.Entry<String, String> property : entry.getValue().entrySet()) {
+                entry.getKey().propertyCache.put(property.getKey(), property.getValue(), PropertyCache.NEVER_EXPIRES);
+            }
+        }
+    }
+
+    /**
+     * Ends the warm start: the values of the warm start file are dropped and,
+     * if the cache is enabled, replaced by the values read from the Skype client.
+     * @param values the property values read from the Skype client by name, by user.
+     */
+    static void endWarmStart(Map<User, Map<String, String>> values) {
+        clearPropertyCaches();
+        if (propertyCacheEnabled) {
+            for (Map.Entry<User, Map<String, String>> entry : values.entrySet()) {
+                for (Map.Entry<String, String> property : entry.getValue().entrySet()) {
+                    entry.getKey().propertyCache.putIfAbsent(property.getKey(), property.getValue(), getTimeToLive(property.getKey()));
+                }
+            }
+        }
+    }
+
+    private static void clearPropertyCaches() {
+        for (User user : users.values()) {
+            user.propertyCache.clear();
+        }
+    }
+
     /**
      * Add a listener for the monitor field. The listener will be triggered every
      * time the properties of this USER object is changed.
@@ -1087,7 +1254,15 @@ public class User extends SkypeObject {
      * @throws SkypeException when connection to Skype client has gone bad.
      */
     private String getProperty(String name) throws SkypeException {
-        return Utils.getProperty("USER", getId(), name);
+        if (!propertyCacheEnabled) {
+            return Utils.getProperty("USER", getId(), name);
+        }
+        String value = propertyCache.get(name);
+        if (value == null) {
+            value = Utils.getProperty("USER", getId(), name);
+            propertyCache.putIfAbsent(name, value, getTimeToLive(name));
+        }
+        return value;
     }
 
     private void setProperty(String name, boolean newValue) throws SkypeException {
@@ -1096,6 +1271,7 @@ public class User extends SkypeObject {
     
     private void setProperty(String name, String newValue) throws SkypeException {
         Utils.setProperty("USER", getId(), name, newValue);
+        propertyCache.remove(name);
     }
 
     /**
@@ -1141,7 +1317,7 @@ public class User extends SkypeObject {
      * @throws SkypeException  when connection to Skype client has gone bad.
      */
     public final void setDisplayName(String newValue) throws SkypeException {
-        Utils.setProperty("USER", getId(), "DISPLAYNAME", newValue);
+        setProperty("DISPLAYNAME", newValue);
     }
 
     /**
@@ -1153,11 +1329,39 @@ public class User extends SkypeObject {
         String[] ids = getHistory("CHATMESSAGES");
         ChatMessage[] messages = new ChatMessage[ids.length];
         for (int i = 0; i < ids.length; i++) {
-            messages[i] = ChatMessage.getInstance(ids[i]);
+            messages[ids.length - 1 - i] = ChatMessage.getInstance(ids[i]);
+        }
+        return messages;
+    }
+
+    /**
+     * Get a cursor over the chat history with this User, in the order of
+     * {@link #getAllChatMessages()}. The messages are created and their
+     * properties read page by page.
+     * @return the cursor.
+     * @throws SkypeException when connection to Skype client has gone bad.
+     */
+    public final ChatMessageCursor getChatMessageCursor() throws SkypeException {
+        return getChatMessageCursor(ChatMessageCursor.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Get a cursor over the chat history with this User, in the order of
+     * {@link #getAllChatMessages()}.
+     * @param pageSize the number of messages created and read at once.
+     * @return the cursor.
+     * @throws SkypeException when connection to Skype client has gone bad.
+     */
+    public final ChatMessageCursor getChatMessageCursor(int pageSize) throws SkypeException {
+        try {
+            String responseHeader = "CHATMESSAGES ";
+            String response = Connector.getInstance().execute("SEARCH CHATMESSAGES " + getId(), responseHeader);
+            Utils.checkError(response);
+            return new ChatMessageCursor(response.substring(responseHeader.length()), true, pageSize);
+        } catch (ConnectorException e) {
+            Utils.convertToSkypeException(e);
+            return null;
         }
-        List<ChatMessage> messageList = Arrays.asList(messages);
-        Collections.reverse(messageList);
-        return messageList.toArray(new ChatMessage[0]);
     }
 
     /**
@@ -1224,13 +1428,11 @@ public class User extends SkypeObject {
                 ConnectorListener connectorListener = new AbstractConnectorListener() {
                     @Override
                     public void messageReceived(ConnectorMessageEvent event) {
-                        String message = event.getMessage();
-                        if (message.startsWith("USER ")) {
-                            String data = message.substring("USER ".length());
-                            String skypeId = data.substring(0, data.indexOf(' '));
-                            data = data.substring(data.indexOf(' ') + 1);
-                            String propertyName = data.substring(0, data.indexOf(' '));
-                            String propertyValue = data.substring(data.indexOf(' ') + 1);
+                        ConnectorNotification notification = event.getNotification();
+                        if (notification.isObjectType("USER") && notification.getPropertyValue() != null) {
+                            String skypeId = notification.getObjectId();
+                            String propertyName = notification.getPropertyName();
+                            String propertyValue = notification.getPropertyValue();
                             if (propertyName.equals("ONLINESTATUS")) {
                                 User.getInstance(skypeId).firePropertyChanged(STATUS_PROPERTY, null, Status.valueOf(propertyValue));
                             } else if (propertyName.equals("MOOD_TEXT")) {
@@ -1268,7 +1470,7 @@ public class User extends SkypeObject {
                     }
                 };
                 try {
-                    Connector.getInstance().addConnectorListener(connectorListener);
+                    Connector.getInstance().addConnectorListener(connectorListener, new String[] {"USER"});
                     propertyChangeListener = connectorListener;
                 } catch(ConnectorException e) {
                     Utils.convertToSkypeException(e);
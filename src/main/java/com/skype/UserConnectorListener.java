@@ -20,6 +20,7 @@ package com.skype;
 
 import com.skype.connector.AbstractConnectorListener;
 import com.skype.connector.ConnectorMessageEvent;
+import com.skype.connector.ConnectorNotification;
 
 /**
  * Monitor for USER events.
@@ -35,15 +36,11 @@ public class UserConnectorListener extends AbstractConnectorListener {
     
     @Override
     public void messageReceived(ConnectorMessageEvent event) {
-        String message = event.getMessage();
-        if (message.startsWith("USER ")) {
-            String data = message.substring("USER ".length());
-            String id = data.substring(0, data.indexOf(' '));
-            String propertyNameAndValue = data.substring(data.indexOf(' ') + 1);
-            String propertyName = propertyNameAndValue.substring(0,
-                    propertyNameAndValue.indexOf(' '));
-            String propertyValue = propertyNameAndValue
-                    .substring(propertyNameAndValue.indexOf(' ') + 1);
+        ConnectorNotification notification = event.getNotification();
+        if (notification.isObjectType("USER") && notification.getPropertyValue() != null) {
+            String id = notification.getObjectId();
+            String propertyName = notification.getPropertyName();
+            String propertyValue = notification.getPropertyValue();
             if (userListener != null) {
                 User user = User.getInstance(id, userListener);
                 if (propertyName.equals("ONLINESTATUS")){
@@ -24,6 +24,8 @@ package com.skype;
 import java.io.File;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.UUID;
 
@@ -120,6 +122,69 @@ final class Utils {
         }
     }
 
+    /**
+     * Get several properties of a Skype object at once.
+     * All the GET commands are sent back-to-back with distinct command IDs
+     * before any reply is awaited, so it costs about one round trip.
+     * @param type the Skype object type.
+     * @param id the Skype object id.
+     * @param names the property names.
+     * @return the property values by name, in the order of the names.
+     * @throws SkypeException when connection to Skype client has gone bad or a reply contains ERROR.
+     */
+    static Map<String, String> getProperties(String type, String id, String... names) throws SkypeException {
+        String[] commands = new String[names.length];
+        String[] responseHeaders = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            commands[i] = "GET " + type + " " + id + " " + names[i];
+            responseHeaders[i] = type + " " + id + " " + names[i] + " ";
+        }
+        try {
+            String[] responses = Connector.getInstance().executeWithId(commands, responseHeaders);
+            Map<String, String> properties = new LinkedHashMap<String, String>();
+            for (int i = 0; i < names.length; i++) {
+                checkError(responses[i]);
+                properties.put(names[i], responses[i].substring(responseHeaders[i].length()));
+            }
+            return properties;
+        } catch (ConnectorException e) {
+            convertToSkypeException(e);
+            return null;
+        }
+    }
+
+    /**
+     * Get properties of several Skype objects of a type at once.
+     * All the GET commands are sent back-to-back with distinct command IDs
+     * before any reply is awaited.
+     * @param type the Skype object type.
+     * @param ids the Skype object ids.
+     * @param names the property names, one for each id.
+     * @return the property values in the order of the ids, null for the replies containing ERROR.
+     * @throws SkypeException when connection to Skype client has gone bad.
+     */
+    static String[] getPropertiesOfObjects(String type, String[] ids, String[] names) throws SkypeException {
+        String[] commands = new String[ids.length];
+        String[] responseHeaders = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            commands[i] = "GET " + type + " " + ids[i] + " " + names[i];
+            responseHeaders[i] = type + " " + ids[i] + " " + names[i] + " ";
+        }
+        try {
+            String[] responses = Connector.getInstance().executeWithId(commands, responseHeaders);
+            String[] values = new String[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                if (!responses[i].startsWith("ERROR ")) {
+                    values[i] = responses[i].substring(responseHeaders[i].length());
+                }
+            }
+            return values;
+        } catch (ConnectorException e) {
+            convertToSkypeException(e);
+            return null;
+        }
+    }
+
     /**
      * Get a Skype object property based on a type and a name.
      * @param type the Skype object type.
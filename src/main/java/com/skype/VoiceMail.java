@@ -25,15 +25,14 @@ package com.skype;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import com.skype.connector.AbstractConnectorListener;
 import com.skype.connector.Connector;
 import com.skype.connector.ConnectorException;
 import com.skype.connector.ConnectorListener;
 import com.skype.connector.ConnectorMessageEvent;
+import com.skype.connector.ConnectorNotification;
 
 /**
  * Class to represent the Skype VoiceMail object.
@@ -43,7 +42,16 @@ public final class VoiceMail extends SkypeObject {
 	/**
      * Collection of VoiceMail objects.
      */
-    private static final Map<String, VoiceMail> voiceMails = new HashMap<String, VoiceMail>();
+    static final SkypeObjectRegistry<VoiceMail> voiceMails = new SkypeObjectRegistry<VoiceMail>();
+
+    /**
+     * Factory of VoiceMail objects.
+     */
+    private static final SkypeObjectRegistry.Factory<VoiceMail> FACTORY = new SkypeObjectRegistry.Factory<VoiceMail>() {
+        public VoiceMail create(String id) {
+            return new VoiceMail(id);
+        }
+    };
 
     /**
      * Mutex of voiceMailStatusChangedListener.
@@ -61,12 +69,7 @@ public final class VoiceMail extends SkypeObject {
      * @return VoiceMail object with ID == id.
      */
     static VoiceMail getInstance(final String id) {
-        synchronized(voiceMails) {
-            if (!voiceMails.containsKey(id)) {
-                voiceMails.put(id, new VoiceMail(id));
-            }
-            return voiceMails.get(id);
-        }
+        return voiceMails.getInstance(id, FACTORY);
     }
 
     /**
@@ -194,23 +197,18 @@ public final class VoiceMail extends SkypeObject {
             if (voiceMailStatusChangedListener == null) {
                 voiceMailStatusChangedListener = new AbstractConnectorListener() {
                     public void messageReceived(ConnectorMessageEvent event) {
-                        String message = event.getMessage();
-                        if (message.startsWith("VOICEMAIL ")) {
-                            String data = message.substring("VOICEMAIL ".length());
-                            String id = data.substring(0, data.indexOf(' '));
-                            String propertyNameAndValue = data.substring(data.indexOf(' ') + 1);
-                            String propertyName = propertyNameAndValue.substring(0, propertyNameAndValue.indexOf(' '));
-                            if("STATUS".equals(propertyName)) {
-                                VoiceMail voiceMail = VoiceMail.getInstance(id);
-                                String propertyValue = propertyNameAndValue.substring(propertyNameAndValue.indexOf(' ') + 1);
-                                VoiceMail.Status status = VoiceMail.Status.valueOf(propertyValue);
+                        ConnectorNotification notification = event.getNotification();
+                        if (notification.isObjectType("VOICEMAIL")) {
+                            if(notification.isPropertyName("STATUS") && notification.getPropertyValue() != null) {
+                                VoiceMail voiceMail = VoiceMail.getInstance(notification.getObjectId());
+                                VoiceMail.Status status = VoiceMail.Status.valueOf(notification.getPropertyValue());
                                 voiceMail.fireStatusChanged(status);
                             }
                         }
                     }
                 };
                 try {
-                    Connector.getInstance().addConnectorListener(voiceMailStatusChangedListener);
+                    Connector.getInstance().addConnectorListener(voiceMailStatusChangedListener, new String[] {"VOICEMAIL"});
                 } catch (ConnectorException e) {
                     Utils.convertToSkypeException(e);
                 }
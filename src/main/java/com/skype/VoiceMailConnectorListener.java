@@ -2,19 +2,15 @@ package com.skype;
 
 import com.skype.connector.AbstractConnectorListener;
 import com.skype.connector.ConnectorMessageEvent;
+import com.skype.connector.ConnectorNotification;
 
 final class VoiceMailConnectorListener extends AbstractConnectorListener {
 	public void messageReceived(ConnectorMessageEvent event) {
-	    String message = event.getMessage();
-	    if (message.startsWith("VOICEMAIL ")) {
-	        String data = message.substring("VOICEMAIL ".length());
-	        String id = data.substring(0, data.indexOf(' '));
-	        String propertyNameAndValue = data.substring(data.indexOf(' ') + 1);
-	        String propertyName = propertyNameAndValue.substring(0, propertyNameAndValue.indexOf(' '));
-	        if ("TYPE".equals(propertyName)) {
-	            String propertyValue = propertyNameAndValue.substring(propertyNameAndValue.indexOf(' ') + 1);
-	            VoiceMail.Type type = VoiceMail.Type.valueOf(propertyValue);
-	            VoiceMail voiceMail = VoiceMail.getInstance(id);
+	    ConnectorNotification notification = event.getNotification();
+	    if (notification.isObjectType("VOICEMAIL")) {
+	        if (notification.isPropertyName("TYPE") && notification.getPropertyValue() != null) {
+	            VoiceMail.Type type = VoiceMail.Type.valueOf(notification.getPropertyValue());
+	            VoiceMail voiceMail = VoiceMail.getInstance(notification.getObjectId());
 	            VoiceMailListener[] listeners = Skype.voiceMailListeners.toArray(new VoiceMailListener[0]);
 	            switch (type) {
 	                case OUTGOING:
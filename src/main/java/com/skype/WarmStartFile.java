@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ * 
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ * 
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API> 
+ * in your web site or documents.
+ * 
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.skype.connector.Connector;
+import com.skype.connector.ConnectorException;
+
+/**
+ * Compact binary copy of the friends with their main properties, the groups
+ * and the profile.
+ * <p>
+ * It is saved when the application shuts down and memory-mapped when it
+ * starts again. The contact list, the friends and the profile then answer
+ * from the saved values at once, while they are reconciled with the Skype
+ * client in the background.
+ * </p>
+ * @see Skype#setWarmStartFile(File)
+ */
+final class WarmStartFile {
+    /** The first bytes of the file, "SKWS". */
+    private static final int MAGIC = 0x534B5753;
+    /** The version of the format. */
+    private static final int VERSION = 1;
+    /** The encoding of the strings. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** The main properties of the friends by friend ID. */
+    private final Map<String, Map<String, String>> friends = new LinkedHashMap<String, Map<String, String>>();
+    /** The member IDs of all the groups by group ID. */
+    private final Map<String, String[]> groupMembers = new LinkedHashMap<String, String[]>();
+    /** The display names of the custom groups by group ID. */
+    private final Map<String, String> groupDisplayNames = new LinkedHashMap<String, String>();
+    /** The profile properties by name. */
+    private final Map<String, String> profile = new LinkedHashMap<String, String>();
+
+    /**
+     * Gets the main properties of the friends.
+     * @return the property values by name, by friend ID.
+     */
+    Map<String, Map<String, String>> getFriends() {
+        return friends;
+    }
+
+    /**
+     * Gets the members of the groups.
+     * @return the member IDs by group ID.
+     */
+    Map<String, String[]> getGroupMembers() {
+        return groupMembers;
+    }
+
+    /**
+     * Gets the display names of the custom groups.
+     * @return the display names by group ID.
+     */
+    Map<String, String> getGroupDisplayNames() {
+        return groupDisplayNames;
+    }
+
+    /**
+     * Gets the profile properties.
+     * @return the property values by name.
+     */
+    Map<String, String> getProfile() {
+        return profile;
+    }
+
+    /**
+     * Reads the content to save from the Skype client, with all the commands
+     * sent back-to-back.
+     * @return the content.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    static WarmStartFile capture() throws SkypeException {
+        WarmStartFile captured = new WarmStartFile();
+        ContactList contactList = Skype.getContactList();
+        contactList.getIndex().exportTo(captured);
+        for (Map.Entry<User, Map<String, String>> entry : readUserProperties(contactList.getAllFriends()).entrySet()) {
+            captured.friends.put(entry.getKey().getId(), entry.getValue());
+        }
+        String[] names = Profile.WARM_START_PROPERTIES;
+        String[] commands = new String[names.length];
+        String[] responseHeaders = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            commands[i] = "GET PROFILE " + names[i];
+            responseHeaders[i] = "PROFILE " + names[i] + " ";
+        }
+        try {
+            String[] responses = Connector.getInstance().executeWithId(commands, responseHeaders);
+            for (int i = 0; i < names.length; i++) {
+                if (!responses[i].startsWith("ERROR ")) {
+                    captured.profile.put(names[i], responses[i].substring(responseHeaders[i].length()));
+                }
+            }
+        } catch (ConnectorException e) {
+            Utils.convertToSkypeException(e);
+        }
+        return captured;
+    }
+
+    /**
+     * Reads the main properties of the specified users.
+     * @param users the users.
+     * @return the property values by name, by user.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    private static Map<User, Map<String, String>> readUserProperties(User[] users) throws SkypeException {
+        String[] names = User.WARM_START_PROPERTIES;
+        String[] ids = new String[users.length * names.length];
+        String[] properties = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = users[i / names.length].getId();
+            properties[i] = names[i % names.length];
+        }
+        String[] values = ids.length == 0 ? new String[0] : Utils.getPropertiesOfObjects("USER", ids, properties);
+        Map<User, Map<String, String>> result = new LinkedHashMap<User, Map<String, String>>();
+        for (int i = 0; i < users.length; i++) {
+            Map<String, String> userValues = new LinkedHashMap<String, String>();
+            for (int j = 0; j < names.length; j++) {
+                String value = values[i * names.length + j];
+                if (value != null) {
+                    userValues.put(names[j], value);
+                }
+            }
+            result.put(users[i], userValues);
+        }
+        return result;
+    }
+
+    /**
+     * Serves the lookups of the contact list and the properties of the
+     * friends and the profile from this content until reconciled.
+     * @throws SkypeException when the connection has gone bad.
+     * @see #reconcile()
+     */
+    void apply() throws SkypeException {
+        Skype.getContactList().getIndex().preload(this);
+        Map<User, Map<String, String>> values = new LinkedHashMap<User, Map<String, String>>();
+        for (Map.Entry<String, Map<String, String>> entry : friends.entrySet()) {
+            values.put(User.getFriendInstance(entry.getKey()), entry.getValue());
+        }
+        User.startWarmStart(values);
+        Skype.getProfile().startWarmStart(profile);
+    }
+
+    /**
+     * Replaces the values served since {@link #apply()} with the ones of the
+     * Skype client. The saved values are dropped even if it fails.
+     * @throws SkypeException when the connection has gone bad.
+     */
+    static void reconcile() throws SkypeException {
+        Map<User, Map<String, String>> values = new LinkedHashMap<User, Map<String, String>>();
+        try {
+            ContactList contactList = Skype.getContactList();
+            contactList.getIndex().refresh();
+            values = readUserProperties(contactList.getAllFriends());
+        } finally {
+            User.endWarmStart(values);
+            Skype.getProfile().endWarmStart();
+        }
+    }
+
+    /**
+     * Writes this content to a file. The file is replaced only when the
+     * content is completely written.
+     * @param file the file.
+     * @throws IOException when the file cannot be written.
+     */
+    void write(File file) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(friends.size());
+            for (Map.Entry<String, Map<String, String>> entry : friends.entrySet()) {
+                writeString(out, entry.getKey());
+                writeProperties(out, entry.getValue());
+            }
+            out.writeInt(groupMembers.size());
+            for (Map.Entry<String, String[]> entry : groupMembers.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, groupDisplayNames.get(entry.getKey()));
+                out.writeInt(entry.getValue().length);
+                for (String id : entry.getValue()) {
+                    writeString(out, id);
+                }
+            }
+            writeProperties(out, profile);
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("The file '" + file + "' cannot be replaced.");
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("The file '" + temporary + "' cannot be renamed to '" + file + "'.");
+        }
+    }
+
+    private static void writeProperties(DataOutputStream out, Map<String, String> properties) throws IOException {
+        out.writeInt(properties.size());
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Writes a string as its length in bytes followed by its UTF-8 bytes.
+     * A null string is written as the length -1.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a file written by {@link #write(File)}. The file is mapped in
+     * memory instead of being read through a stream.
+     * @param file the file.
+     * @return the content.
+     * @throws IOException when the file cannot be read or is not a warm start file.
+     */
+    static WarmStartFile read(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("The file '" + file + "' is not a warm start file of this version.");
+            }
+            WarmStartFile loaded = new WarmStartFile();
+            int friendCount = readCount(buffer);
+            for (int i = 0; i < friendCount; i++) {
+                String id = readString(buffer);
+                loaded.friends.put(id, readProperties(buffer));
+            }
+            int groupCount = readCount(buffer);
+            for (int i = 0; i < groupCount; i++) {
+                String id = readString(buffer);
+                String displayName = readString(buffer);
+                if (displayName != null) {
+                    loaded.groupDisplayNames.put(id, displayName);
+                }
+                String[] members = new String[readCount(buffer)];
+                for (int j = 0; j < members.length; j++) {
+                    members[j] = readString(buffer);
+                }
+                loaded.groupMembers.put(id, members);
+            }
+            loaded.profile.putAll(readProperties(buffer));
+            return loaded;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The file '" + file + "' is truncated.");
+        } finally {
+            input.close();
+        }
+    }
+
+    private static Map<String, String> readProperties(ByteBuffer buffer) {
+        int count = readCount(buffer);
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        for (int i = 0; i < count; i++) {
+            String name = readString(buffer);
+            properties.put(name, readString(buffer));
+        }
+        return properties;
+    }
+
+    /**
+     * Reads a number of entries, each of them taking at least four bytes.
+     */
+    private static int readCount(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / 4) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
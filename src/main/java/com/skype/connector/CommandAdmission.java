@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ *
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ *
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API>
+ * in your web site or documents.
+ *
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype.connector;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Limits the number of commands waiting for a response at the same time.
+ * <p>
+ * When the limit is reached, a new command is either blocked until another
+ * one ends, rejected with a {@link ConnectorException} or queued in a bounded
+ * queue and started when another one ends, depending on the {@link Policy}.
+ * </p>
+ * <p>
+ * The queued commands are started by the starter executor, never by the
+ * thread ending a command, which is usually the thread receiving the
+ * responses and must not wait for a send.
+ * </p>
+ */
+final class CommandAdmission {
+    /**
+     * Enumeration of the behaviors when the in-flight limit is reached.
+     */
+    enum Policy {
+        /** Block the executing thread until a command ends. */
+        BLOCK,
+        /** Fail immediately with a ConnectorException. */
+        REJECT,
+        /** Queue the command, or fail if the queue is full. */
+        QUEUE;
+    }
+
+    /** The maximum number of in-flight commands, 0 or less for no limit. */
+    private final int maxInFlight;
+    /** The behavior when the limit is reached. */
+    private final Policy policy;
+    /** The capacity of the queue used by the QUEUE policy. */
+    private final int queueCapacity;
+    /** The executor starting the queued commands. */
+    private final Executor starter;
+
+    /** The mutex object for the inFlight and queue fields. */
+    private final Object mutex = new Object();
+    /** The number of admitted commands not ended yet. */
+    private int inFlight;
+    /** The commands waiting for admission. */
+    private final Queue<Runnable> queue = new LinkedList<Runnable>();
+    /** The admitted commands waiting for the starter. */
+    private final Queue<Runnable> admitted = new LinkedList<Runnable>();
+    /** The flag set while the starter runs the admitted commands. */
+    private boolean starting;
+
+    /** The task starting the admitted commands in a loop. */
+    private final Runnable startAdmitted = new Runnable() {
+        public void run() {
+            while (true) {
+                Runnable next;
+                synchronized (mutex) {
+                    next = admitted.poll();
+                    if (next == null) {
+                        starting = false;
+                        return;
+                    }
+                }
+                try {
+                    next.run();
+                } catch (Throwable e) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        }
+    };
+
+    /**
+     * Constructor.
+     * @param newMaxInFlight the maximum number of in-flight commands, 0 or less for no limit.
+     * @param newPolicy the behavior when the limit is reached.
+     * @param newQueueCapacity the capacity of the queue used by the QUEUE policy.
+     * @param newStarter the executor starting the queued commands.
+     */
+    CommandAdmission(int newMaxInFlight, Policy newPolicy, int newQueueCapacity, Executor newStarter) {
+        ConnectorUtils.checkNotNull("policy", newPolicy);
+        ConnectorUtils.checkNotNull("starter", newStarter);
+        this.maxInFlight = newMaxInFlight;
+        this.policy = newPolicy;
+        this.queueCapacity = newQueueCapacity;
+        this.starter = newStarter;
+    }
+
+    /**
+     * Admits a command. The start task is run on the current thread if the
+     * command is admitted now, or later by the starter executor if it is
+     * queued. Each started command must call {@link #release()} once when it
+     * ends, even if it skips its start.
+     * @param command the command, used in the error messages.
+     * @param start the task starting the command.
+     * @throws ConnectorException if the command was rejected or the thread was interrupted while blocked.
+     */
+    void admit(String command, Runnable start) throws ConnectorException {
+        synchronized (mutex) {
+            if (maxInFlight > 0 && maxInFlight <= inFlight) {
+                switch (policy) {
+                    case BLOCK:
+                        try {
+                            while (maxInFlight <= inFlight) {
+                                mutex.wait();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new ConnectorException("The '" + command + "' command was interrupted while waiting for admission.", e);
+                        }
+                        break;
+                    case REJECT:
+                        throw new ConnectorException("The '" + command + "' command was rejected because " + inFlight + " commands are in flight.");
+                    case QUEUE:
+                        if (queueCapacity <= queue.size()) {
+                            throw new ConnectorException("The '" + command + "' command was rejected because the command queue is full.");
+                        }
+                        queue.add(start);
+                        return;
+                }
+            }
+            inFlight++;
+        }
+        start.run();
+    }
+
+    /**
+     * Ends an admitted command and hands the next queued one, if any, to the
+     * starter executor. A start task releasing at once, like a command
+     * cancelled while queued, is followed by the next one in the same loop.
+     */
+    void release() {
+        synchronized (mutex) {
+            Runnable next = queue.poll();
+            if (next == null) {
+                inFlight--;
+                mutex.notify();
+                return;
+            }
+            admitted.add(next);
+            if (starting) {
+                return;
+            }
+            starting = true;
+        }
+        starter.execute(startAdmitted);
+    }
+
+    /**
+     * Gets the number of admitted commands not ended yet.
+     * @return the number of in-flight commands.
+     */
+    int getInFlightCount() {
+        synchronized (mutex) {
+            return inFlight;
+        }
+    }
+
+    /**
+     * Gets the number of commands waiting in the queue.
+     * @return the queue depth.
+     */
+    int getQueuedCount() {
+        synchronized (mutex) {
+            return queue.size();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ *
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ *
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API>
+ * in your web site or documents.
+ *
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype.connector;
+
+/**
+ * Callback interface for the end of an asynchronous command.
+ * The methods are called on the callback dispatcher thread, one callback at a
+ * time, not on the thread receiving messages from the Skype client. A callback
+ * may execute more commands asynchronously, but it should not block: it would
+ * delay all the other callbacks.
+ * @see CommandFuture#addCallback(CommandCallback)
+ */
+public interface CommandCallback {
+    /**
+     * Called when the response of the command is received.
+     * @param response the response.
+     */
+    void commandCompleted(String response);
+
+    /**
+     * Called when the command failed, timed out or was cancelled.
+     * @param cause the cause of the failure.
+     */
+    void commandFailed(ConnectorException cause);
+}
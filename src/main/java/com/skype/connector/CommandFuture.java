@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ *
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ *
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API>
+ * in your web site or documents.
+ *
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype.connector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending response of a command executed asynchronously.
+ * No thread waits for the response: the future is completed by the connector
+ * when the response arrives or the command times out. Use
+ * {@link #addCallback(CommandCallback)} to be notified, or the blocking
+ * {@link Future} methods. The callbacks run on the callback dispatcher
+ * thread, so they never hold back the routing of the responses.
+ * @see Connector#executeAsync(String, String)
+ * @see Connector#executeWithIdAsync(String, String)
+ */
+public final class CommandFuture implements Future<String> {
+    /** The thread running the callbacks added by {@link #addCallback(CommandCallback)}. */
+    private static final Executor CALLBACK_DISPATCHER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "CommandCallbackDispatcher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Callback passing the calls to another one on the callback dispatcher thread.
+     */
+    private static final class DispatchedCallback implements CommandCallback {
+        /** The dispatched callback. */
+        private final CommandCallback callback;
+
+        private DispatchedCallback(CommandCallback newCallback) {
+            this.callback = newCallback;
+        }
+
+        public void commandCompleted(final String response) {
+            CALLBACK_DISPATCHER.execute(new Runnable() {
+                public void run() {
+                    callback.commandCompleted(response);
+                }
+            });
+        }
+
+        public void commandFailed(final ConnectorException cause) {
+            CALLBACK_DISPATCHER.execute(new Runnable() {
+                public void run() {
+                    callback.commandFailed(cause);
+                }
+            });
+        }
+    }
+
+    /** The executed command. */
+    private final String command;
+    /** The command ID header removed from the response or null. */
+    private final String commandIdHeader;
+
+    /** The mutex object for the state fields. */
+    private final Object mutex = new Object();
+    /** The flag to check if this future is done. */
+    private boolean done;
+    /** The flag to check if this future was cancelled. */
+    private boolean cancelled;
+    /** The response if completed. */
+    private String response;
+    /** The failure if failed or cancelled. */
+    private ConnectorException failure;
+    /** The callbacks to call when done, null after completion. */
+    private List<CommandCallback> callbacks = new ArrayList<CommandCallback>();
+
+    /**
+     * Constructor.
+     * @param newCommand the executed command.
+     * @param newCommandIdHeader the command ID header to remove from the response or null.
+     */
+    CommandFuture(String newCommand, String newCommandIdHeader) {
+        this.command = newCommand;
+        this.commandIdHeader = newCommandIdHeader;
+    }
+
+    /**
+     * Gets the executed command.
+     * @return the command.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Adds a callback called when this future is done, even if it is already
+     * done. The callbacks run one at a time on the callback dispatcher thread,
+     * in the order the futures are done, so a slow callback delays the other
+     * callbacks but not the responses.
+     * @param callback the callback to add.
+     */
+    public void addCallback(CommandCallback callback) {
+        ConnectorUtils.checkNotNull("callback", callback);
+        addInlineCallback(new DispatchedCallback(callback));
+    }
+
+    /**
+     * Adds a callback called on the thread completing this future, usually the
+     * thread receiving the responses. If it is already done, the callback is
+     * called immediately on the current thread. The callback must be short and
+     * never block.
+     * @param callback the callback to add.
+     */
+    void addInlineCallback(CommandCallback callback) {
+        ConnectorUtils.checkNotNull("callback", callback);
+        synchronized (mutex) {
+            if (!done) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        notifyCallback(callback);
+    }
+
+    /**
+     * Completes this future with the specified response.
+     * @param newResponse the received response.
+     * @return true if this call completed the future.
+     */
+    boolean complete(String newResponse) {
+        if (commandIdHeader != null && newResponse.startsWith(commandIdHeader)) {
+            newResponse = newResponse.substring(commandIdHeader.length());
+        }
+        List<CommandCallback> toNotify;
+        synchronized (mutex) {
+            if (done) {
+                return false;
+            }
+            response = newResponse;
+            toNotify = finish();
+        }
+        notifyCallbacks(toNotify);
+        return true;
+    }
+
+    /**
+     * Fails this future with the specified cause.
+     * @param cause the cause of the failure.
+     * @return true if this call completed the future.
+     */
+    boolean fail(ConnectorException cause) {
+        List<CommandCallback> toNotify;
+        synchronized (mutex) {
+            if (done) {
+                return false;
+            }
+            failure = cause;
+            toNotify = finish();
+        }
+        notifyCallbacks(toNotify);
+        return true;
+    }
+
+    /**
+     * Cancels this future. The command is not sent again and its response is ignored.
+     * @param mayInterruptIfRunning ignored because no thread runs the command.
+     * @return true if this call cancelled the future.
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        List<CommandCallback> toNotify;
+        synchronized (mutex) {
+            if (done) {
+                return false;
+            }
+            cancelled = true;
+            failure = new ConnectorException("The '" + command + "' command was cancelled.", new CancellationException());
+            toNotify = finish();
+        }
+        notifyCallbacks(toNotify);
+        return true;
+    }
+
+    private List<CommandCallback> finish() {
+        done = true;
+        mutex.notifyAll();
+        List<CommandCallback> toNotify = callbacks;
+        callbacks = null;
+        return toNotify;
+    }
+
+    private void notifyCallbacks(List<CommandCallback> toNotify) {
+        for (CommandCallback callback : toNotify) {
+            notifyCallback(callback);
+        }
+    }
+
+    private void notifyCallback(CommandCallback callback) {
+        if (failure == null) {
+            callback.commandCompleted(response);
+        } else {
+            callback.commandFailed(failure);
+        }
+    }
+
+    public boolean isCancelled() {
+        synchronized (mutex) {
+            return cancelled;
+        }
+    }
+
+    public boolean isDone() {
+        synchronized (mutex) {
+            return done;
+        }
+    }
+
+    public String get() throws InterruptedException, ExecutionException {
+        synchronized (mutex) {
+            while (!done) {
+                mutex.wait();
+            }
+            return getResult();
+        }
+    }
+
+    public String get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (mutex) {
+            while (!done) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException("The '" + command + "' command was not answered in time.");
+                }
+                TimeUnit.NANOSECONDS.timedWait(mutex, remaining);
+            }
+            return getResult();
+        }
+    }
+
+    private String getResult() throws ExecutionException {
+        if (cancelled) {
+            throw (CancellationException)failure.getCause();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return response;
+    }
+}
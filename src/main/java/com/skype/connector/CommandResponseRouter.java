@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ *
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ *
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API>
+ * in your web site or documents.
+ *
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype.connector;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Routes the responses received from the Skype client to the commands waiting
+ * for them.
+ * <p>
+ * Commands sent with a command ID are looked up by their <tt>#N</tt> header
+ * and commands without one by their exact response header, so a response
+ * reaches its waiter without being offered to every pending command. Only
+ * commands waiting with an arbitrary {@link NotificationChecker} are checked
+ * one by one.
+ * </p>
+ */
+final class CommandResponseRouter {
+    /**
+     * Handler called when a response arrives for a route.
+     */
+    interface ResponseHandler {
+        /**
+         * Called on the thread dispatching the received message.
+         * @param response the received response.
+         */
+        void responseReceived(String response);
+    }
+
+    /**
+     * A registered waiter for a command response.
+     */
+    final class Route {
+        /** The command ID header (like <tt>#12</tt>) or null. */
+        private final String commandId;
+        /** The accepted response headers or null. */
+        private final String[] responseHeaders;
+        /** The notification checker or null. */
+        private final NotificationChecker checker;
+        /** The handler to call. */
+        private final ResponseHandler handler;
+
+        private Route(String commandId, String[] responseHeaders, NotificationChecker checker, ResponseHandler handler) {
+            this.commandId = commandId;
+            this.responseHeaders = responseHeaders;
+            this.checker = checker;
+            this.handler = handler;
+        }
+
+        /**
+         * Removes this route from the router. Removing a route twice does nothing.
+         */
+        void remove() {
+            removeRoute(this);
+        }
+
+        private boolean isTarget(String message) {
+            if (checker != null) {
+                return checker.isTarget(message);
+            }
+            for (String responseHeader : responseHeaders) {
+                if (message.startsWith(responseHeader)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void deliver(String message) {
+            handler.responseReceived(message);
+        }
+    }
+
+    /** Empty route array. */
+    private static final Route[] NO_ROUTES = new Route[0];
+
+    /** Routes of commands sent with a command ID, keyed by the ID header. */
+    private final Map<String, Route> routesById = new ConcurrentHashMap<String, Route>();
+    /** Routes of commands without an ID, keyed by each accepted response header. */
+    private final Map<String, Route[]> routesByHeader = new ConcurrentHashMap<String, Route[]>();
+    /** Routes which can only be found by asking their notification checker. */
+    private final List<Route> checkedRoutes = new CopyOnWriteArrayList<Route>();
+
+    /** The mutex object for the routesByHeader field. */
+    private final Object routesByHeaderMutex = new Object();
+    /** The maximum number of spaces in a registered response header. */
+    private volatile int maxHeaderSpaces;
+
+    /**
+     * Adds a route for a command accepting the specified response headers.
+     * If all the headers start with the same command ID, the route is keyed by
+     * the ID; otherwise it is keyed by each header.
+     * @param responseHeaders the accepted response headers.
+     * @param handler the handler to call when a response arrives.
+     * @return the added route.
+     */
+    Route addRoute(String[] responseHeaders, ResponseHandler handler) {
+        ConnectorUtils.checkNotNull("responseHeaders", responseHeaders);
+        ConnectorUtils.checkNotNull("handler", handler);
+        String commandId = getCommonCommandId(responseHeaders);
+        Route route = new Route(commandId, responseHeaders.clone(), null, handler);
+        if (commandId != null) {
+            routesById.put(commandId, route);
+        } else {
+            synchronized (routesByHeaderMutex) {
+                for (String responseHeader : route.responseHeaders) {
+                    Route[] routes = routesByHeader.get(responseHeader);
+                    if (routes == null) {
+                        routes = NO_ROUTES;
+                    }
+                    Route[] newRoutes = new Route[routes.length + 1];
+                    System.arraycopy(routes, 0, newRoutes, 0, routes.length);
+                    newRoutes[routes.length] = route;
+                    routesByHeader.put(responseHeader, newRoutes);
+                    maxHeaderSpaces = Math.max(maxHeaderSpaces, countSpaces(responseHeader));
+                }
+            }
+        }
+        return route;
+    }
+
+    /**
+     * Adds a route for a command whose responses are detected by a checker.
+     * @param checker the checker to detect the response.
+     * @param handler the handler to call when a response arrives.
+     * @return the added route.
+     */
+    Route addRoute(NotificationChecker checker, ResponseHandler handler) {
+        ConnectorUtils.checkNotNull("checker", checker);
+        ConnectorUtils.checkNotNull("handler", handler);
+        Route route = new Route(null, null, checker, handler);
+        checkedRoutes.add(route);
+        return route;
+    }
+
+    /**
+     * Removes the specified route.
+     * @param route the route to remove.
+     */
+    private void removeRoute(Route route) {
+        if (route.checker != null) {
+            checkedRoutes.remove(route);
+        } else if (route.commandId != null) {
+            routesById.remove(route.commandId);
+        } else {
+            synchronized (routesByHeaderMutex) {
+                for (String responseHeader : route.responseHeaders) {
+                    Route[] routes = routesByHeader.get(responseHeader);
+                    if (routes == null) {
+                        continue;
+                    }
+                    int index = indexOf(routes, route);
+                    if (index < 0) {
+                        continue;
+                    }
+                    if (routes.length == 1) {
+                        routesByHeader.remove(responseHeader);
+                    } else {
+                        Route[] newRoutes = new Route[routes.length - 1];
+                        System.arraycopy(routes, 0, newRoutes, 0, index);
+                        System.arraycopy(routes, index + 1, newRoutes, index, routes.length - index - 1);
+                        routesByHeader.put(responseHeader, newRoutes);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers the specified received message to the routes waiting for it.
+     * @param message the received message.
+     */
+    void dispatch(String message) {
+        if (message.startsWith("PONG")) {
+            // a PONG answers every pending command, as the connector used to do
+            dispatchToAll(message);
+            return;
+        }
+        if (message.startsWith("#")) {
+            int space = message.indexOf(' ');
+            Route route = routesById.get(space < 0 ? message : message.substring(0, space));
+            if (route != null && route.isTarget(message)) {
+                route.deliver(message);
+            }
+        }
+        if (!routesByHeader.isEmpty()) {
+            dispatchByHeader(message);
+        }
+        for (Route route : checkedRoutes) {
+            if (route.isTarget(message)) {
+                route.deliver(message);
+            }
+        }
+    }
+
+    /**
+     * Looks up the routes whose response header is a prefix of the message
+     * ending on a word boundary.
+     * @param message the received message.
+     */
+    private void dispatchByHeader(String message) {
+        deliver(routesByHeader.get(""), message);
+        int limit = maxHeaderSpaces;
+        int spaces = 0;
+        for (int i = message.indexOf(' '); 0 <= i && spaces <= limit; i = message.indexOf(' ', i + 1)) {
+            deliver(routesByHeader.get(message.substring(0, i)), message);
+            deliver(routesByHeader.get(message.substring(0, i + 1)), message);
+            spaces++;
+        }
+        deliver(routesByHeader.get(message), message);
+    }
+
+    private void deliver(Route[] routes, String message) {
+        if (routes == null) {
+            return;
+        }
+        for (Route route : routes) {
+            route.deliver(message);
+        }
+    }
+
+    private void dispatchToAll(String message) {
+        for (Route route : routesById.values()) {
+            route.deliver(message);
+        }
+        for (Route[] routes : routesByHeader.values()) {
+            deliver(routes, message);
+        }
+        for (Route route : checkedRoutes) {
+            route.deliver(message);
+        }
+    }
+
+    /**
+     * Returns the command ID shared by all the response headers.
+     * @param responseHeaders the response headers.
+     * @return the command ID (like <tt>#12</tt>) or null if there is none.
+     */
+    private static String getCommonCommandId(String[] responseHeaders) {
+        String commandId = null;
+        for (String responseHeader : responseHeaders) {
+            int space = responseHeader.indexOf(' ');
+            if (!responseHeader.startsWith("#") || space < 0) {
+                return null;
+            }
+            String id = responseHeader.substring(0, space);
+            if (commandId == null) {
+                commandId = id;
+            } else if (!commandId.equals(id)) {
+                return null;
+            }
+        }
+        return commandId;
+    }
+
+    private static int countSpaces(String value) {
+        int count = 0;
+        for (int i = value.indexOf(' '); 0 <= i; i = value.indexOf(' ', i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int indexOf(Route[] routes, Route route) {
+        for (int i = 0; i < routes.length; i++) {
+            if (routes[i] == route) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -50,6 +50,37 @@ public abstract class Connector {
 		PENDING_AUTHORIZATION, ATTACHED, REFUSED, NOT_AVAILABLE, API_AVAILABLE, NOT_RUNNING;
 	}
 
+	/**
+	 * The property name of the number of threads notifying the asynchronous
+	 * listeners. The events of one object (like one call or one chat) are
+	 * always delivered in order by the same thread. The default is 16.
+	 */
+	public static final String ASYNC_SENDER_THREADS_PROPERTY = "connector.asyncSenderThreads";
+	/**
+	 * The property name of the number of preallocated event slots of each
+	 * listener thread, rounded up to a power of two. When they are all used,
+	 * the events wait in an unbounded overflow queue instead, because the
+	 * threads firing the events must never block. The default is 4096.
+	 */
+	public static final String SENDER_QUEUE_CAPACITY_PROPERTY = "connector.senderQueueCapacity";
+	/**
+	 * The property name of the maximum number of commands waiting for a
+	 * response at the same time. The default is no limit.
+	 */
+	public static final String MAX_IN_FLIGHT_COMMANDS_PROPERTY = "connector.maxInFlightCommands";
+	/**
+	 * The property name of the behavior when the maximum number of in-flight
+	 * commands is reached: <tt>block</tt> (the default) waits, <tt>reject</tt>
+	 * fails with a {@link ConnectorException} and <tt>queue</tt> queues the
+	 * command up to the command queue capacity.
+	 */
+	public static final String IN_FLIGHT_POLICY_PROPERTY = "connector.inFlightPolicy";
+	/**
+	 * The property name of the capacity of the command queue used by the
+	 * <tt>queue</tt> in-flight policy. The default is 1000.
+	 */
+	public static final String COMMAND_QUEUE_CAPACITY_PROPERTY = "connector.commandQueueCapacity";
+
 	/** Singleton instance of this class. */
 	private static Connector _instance;
 
@@ -152,21 +183,85 @@ public abstract class Connector {
 	 */
 	private boolean _readMissedMessages;
 
-	/** Asynchronous message sender */
-	private ExecutorService _asyncSender;
+	/**
+	 * Asynchronous message senders, the events of one object always go to the
+	 * same one
+	 */
+	private EventRing[] _asyncSenders;
 	/** Synchronous message sender */
-	private ExecutorService _syncSender;
+	private EventRing _syncSender;
+
+	/** Delivers the events to the asynchronous listeners. */
+	private final EventRing.Handler _asyncHandler = new EventRing.Handler() {
+		public void messageEvent(ConnectorMessageEvent event,
+				boolean isReceived) {
+			fireMessageEvent(getListeners(_asyncListeners, event.getMessage(),
+					isReceived), event, isReceived);
+		}
+
+		public void statusChanged(Status status) {
+			fireStatusChanged(_asyncListeners.getAllListeners(), status);
+		}
+	};
+	/** Delivers the events to the synchronous listeners. */
+	private final EventRing.Handler _syncHandler = new EventRing.Handler() {
+		public void messageEvent(ConnectorMessageEvent event,
+				boolean isReceived) {
+			fireMessageEvent(getListeners(_syncListeners, event.getMessage(),
+					isReceived), event, isReceived);
+		}
+
+		public void statusChanged(Status status) {
+			fireStatusChanged(_syncListeners.getAllListeners(), status);
+		}
+	};
 
 	/** Collection of asynchronous event listeners for the connector. */
-	private final List<ConnectorListener> _asyncListeners = new CopyOnWriteArrayList<ConnectorListener>();
+	private final ConnectorListenerIndex _asyncListeners = new ConnectorListenerIndex();
 	/** Collection of synchronous event listeners for the connector. */
-	private final List<ConnectorListener> _syncListeners = new CopyOnWriteArrayList<ConnectorListener>();
+	private final ConnectorListenerIndex _syncListeners = new ConnectorListenerIndex();
+
+	/** The bulkheads of the listeners added with one, keyed by listener. */
+	private final Map<ConnectorListener, ConnectorListenerBulkhead> _bulkheads = new ConcurrentHashMap<ConnectorListener, ConnectorListenerBulkhead>();
+
+	/** Reads the missed chat messages. */
+	private final MissedMessageSynchronizer _missedMessages = new MissedMessageSynchronizer(this);
 
 	/** Command counter, can be used to identify message and reply pairs. */
 	private final AtomicInteger _commandCount = new AtomicInteger();
 
-	/** Command executor */
-	private ExecutorService _commandExecutor;
+	/**
+	 * Timer of the command reply timeouts, shared by all the pending commands
+	 * so that no thread waits for a response.
+	 */
+	private static final ScheduledExecutorService _commandTimer = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "CommandTimeoutTimer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/** Starts the commands queued by the in-flight limit. */
+	private static final ExecutorService _commandStarter = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "CommandStarter");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/** Limits the number of commands waiting for a response. */
+	private volatile CommandAdmission _commandAdmission = new CommandAdmission(
+			0, CommandAdmission.Policy.BLOCK, 0, _commandStarter);
+
+	/** The read-only commands on the wire, keyed by command without ID. */
+	private final ConcurrentMap<String, CommandFuture> _inFlightReads = new ConcurrentHashMap<String, CommandFuture>();
+
+	/** Routes the received responses to the commands waiting for them. */
+	private final CommandResponseRouter _responseRouter = new CommandResponseRouter();
 
 	/** The properties of this connector **/
 	private final Map<String, String> properties = new ConcurrentHashMap<String, String>();
@@ -223,6 +318,22 @@ public abstract class Connector {
 		}
 	}
 
+	/**
+	 * Writes a line to the debug output stream if debug printing is enabled.
+	 * 
+	 * @param line
+	 *            the line to write
+	 * @see #setDebug(boolean)
+	 */
+	final void debugPrintln(final String line) {
+		synchronized (_debugListenerMutex) {
+			if (_debugListener == null) {
+				return;
+			}
+		}
+		getDebugOut().println("!! " + line);
+	}
+
 	/**
 	 * Sets the debug output stream.
 	 * 
@@ -313,34 +424,8 @@ public abstract class Connector {
 	 *            the new status
 	 */
 	private void fireStatusChanged(final Status newStatus) {
-		_syncSender.execute(new Runnable() {
-			public void run() {
-				// use listener array instead of list because of reverse
-				// iteration
-				fireStatusChanged(toConnectorListenerArray(_syncListeners),
-						newStatus);
-			}
-		});
-		_asyncSender.execute(new Runnable() {
-			public void run() {
-				// use listener array instead of list because of reverse
-				// iteration
-				fireStatusChanged(toConnectorListenerArray(_asyncListeners),
-						newStatus);
-			}
-		});
-	}
-
-	/**
-	 * Converts the specified listener list to an listener array.
-	 * 
-	 * @param listeners
-	 *            the listener list
-	 * @return an listener array
-	 */
-	private ConnectorListener[] toConnectorListenerArray(
-			final List<ConnectorListener> listeners) {
-		return listeners.toArray(new ConnectorListener[0]);
+		_syncSender.publish(newStatus);
+		_asyncSenders[0].publish(newStatus);
 	}
 
 	/**
@@ -452,39 +537,31 @@ public abstract class Connector {
 	protected final void initialize() throws ConnectorException {
 		synchronized (_isInitializedMutex) {
 			if (!_isInitialized) {
-				_asyncSender = Executors
-						.newCachedThreadPool(new ThreadFactory() {
-							private final AtomicInteger threadNumber = new AtomicInteger();
-
-							public Thread newThread(Runnable r) {
-								Thread thread = new Thread(r,
-										"AsyncSkypeMessageSender-"
-												+ threadNumber
-														.getAndIncrement());
-								thread.setDaemon(true);
-								return thread;
-							}
-						});
-				_syncSender = Executors
-						.newSingleThreadExecutor(new ThreadFactory() {
-							public Thread newThread(Runnable r) {
-								Thread thread = new Thread(r,
-										"SyncSkypeMessageSender");
-								thread.setDaemon(true);
-								return thread;
-							}
-						});
-				// newCachedThreadPool(
-				_commandExecutor = Executors.newCachedThreadPool(
-						new ThreadFactory() {
-							private final AtomicInteger threadNumber = new AtomicInteger();
-
-							public Thread newThread(Runnable r) {
-								Thread thread = new Thread(r,"CommandExecutor-"+ threadNumber.getAndIncrement());
-								thread.setDaemon(true);
-								return thread;
-							}
-						});
+				CommandAdmission commandAdmission = new CommandAdmission(
+						getIntProperty(MAX_IN_FLIGHT_COMMANDS_PROPERTY, 0),
+						getInFlightPolicy(), getIntProperty(
+								COMMAND_QUEUE_CAPACITY_PROPERTY, 1000),
+						_commandStarter);
+				int asyncSenderThreads = getIntProperty(
+						ASYNC_SENDER_THREADS_PROPERTY, 16);
+				int senderQueueCapacity = getIntProperty(
+						SENDER_QUEUE_CAPACITY_PROPERTY, 4096);
+				if (asyncSenderThreads < 1) {
+					throw new ConnectorException("The '"
+							+ ASYNC_SENDER_THREADS_PROPERTY
+							+ "' property must be positive.");
+				}
+				_asyncSenders = new EventRing[asyncSenderThreads];
+				for (int i = 0; i < asyncSenderThreads; i++) {
+					_asyncSenders[i] = new EventRing(senderQueueCapacity,
+							_asyncHandler, new SenderThreadFactory(
+									"AsyncSkypeMessageSender-" + i));
+				}
+				// one thread keeps the synchronous listeners in message order
+				_syncSender = new EventRing(senderQueueCapacity, _syncHandler,
+						new SenderThreadFactory("SyncSkypeMessageSender"));
+
+				_commandAdmission = commandAdmission;
 
 				initializeImpl();
 
@@ -493,6 +570,111 @@ public abstract class Connector {
 		}
 	}
 
+	/**
+	 * Gets the specified property as an integer.
+	 * 
+	 * @param name
+	 *            the property name
+	 * @param defaultValue
+	 *            the value used if the property is not set
+	 * @return the property value
+	 * @throws ConnectorException
+	 *             if the property value is not an integer
+	 */
+	private int getIntProperty(final String name, final int defaultValue)
+			throws ConnectorException {
+		String value = getStringProperty(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new ConnectorException("The '" + name
+					+ "' property must be an integer: " + value, e);
+		}
+	}
+
+	/**
+	 * Gets the in-flight policy from the properties.
+	 * 
+	 * @return the in-flight policy
+	 * @throws ConnectorException
+	 *             if the property value is not a known policy
+	 */
+	private CommandAdmission.Policy getInFlightPolicy()
+			throws ConnectorException {
+		String value = getStringProperty(IN_FLIGHT_POLICY_PROPERTY);
+		if (value == null) {
+			return CommandAdmission.Policy.BLOCK;
+		}
+		try {
+			return CommandAdmission.Policy.valueOf(value.trim().toUpperCase(
+					Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			throw new ConnectorException("The '" + IN_FLIGHT_POLICY_PROPERTY
+					+ "' property must be block, reject or queue: " + value, e);
+		}
+	}
+
+	/**
+	 * Gets the number of commands waiting for a response.
+	 * 
+	 * @return the number of in-flight commands
+	 * @see #MAX_IN_FLIGHT_COMMANDS_PROPERTY
+	 */
+	public final int getInFlightCommandCount() {
+		return _commandAdmission.getInFlightCount();
+	}
+
+	/**
+	 * Gets the number of commands queued because too many commands were in
+	 * flight.
+	 * 
+	 * @return the command queue depth
+	 * @see #IN_FLIGHT_POLICY_PROPERTY
+	 */
+	public final int getQueuedCommandCount() {
+		return _commandAdmission.getQueuedCount();
+	}
+
+	/**
+	 * Gets the number of events waiting to be sent to the listeners.
+	 * 
+	 * @return the event queue depth
+	 * @see #SENDER_QUEUE_CAPACITY_PROPERTY
+	 */
+	public final int getQueuedEventCount() {
+		int count = 0;
+		synchronized (_isInitializedMutex) {
+			if (_isInitialized) {
+				count += _syncSender.size();
+				for (EventRing asyncSender : _asyncSenders) {
+					count += asyncSender.size();
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Factory of the daemon threads delivering the events to the listeners.
+	 */
+	private static final class SenderThreadFactory implements ThreadFactory {
+		/** The thread name. */
+		private final String name;
+
+		private SenderThreadFactory(final String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, name);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
 	/**
 	 * Initializes the platform specific resources.
 	 * 
@@ -527,34 +709,56 @@ public abstract class Connector {
 	}
 
 	/**
-	 * Sends the command to read MISSEDMESSAGES
+	 * Sends the command to read MISSEDMESSAGES and waits for the end of the
+	 * scan. The RECEIVED event is fired for the messages newer than the ones
+	 * already fired, and all the missed messages are marked as SEEN.
 	 * 
 	 * @throws ConnectorException
-	 *             if sending the protocol version failed
+	 *             if reading the missed messages failed
+	 * @see #requestMissedMessages()
 	 */
 	public void getMissedMessages() throws ConnectorException {
-	  String command = "SEARCH MISSEDMESSAGES";
-	  String responseHeader = "CHATMESSAGES ";
-	  String response = execute(command, responseHeader);
-	  if (response.contains("ERROR")) {
-		return;
-	  }
-	  String data = response.substring(responseHeader.length());
-	  if ("".equals(data)) {
-		return;
-	  }
-	  String[] ids = data.split(", ");
-
-	  /* message ids are reversed here.
-	   * actually after SEARCH messages appear in #fireMessageReceived
-	   * but in NON-deterministic order, that's why we are forced to
-	   * call it manually & use mutex inside to avoid duplication
-	   * */
-	  for (int i = ids.length - 1; i >= 0; --i) {
-		String id = ids[i];
-		fireMessageReceived("CHATMESSAGE " + id + " STATUS RECEIVED");
-		String seen_response = execute("SET CHATMESSAGE " + id + " SEEN", "");
-	  }
+		/*
+		 * after SEARCH the messages appear in #fireMessageReceived but in
+		 * NON-deterministic order, that's why they are fired here in ID order
+		 * & the chat message listener avoids the duplication
+		 */
+		_missedMessages.scan();
+	}
+
+	/**
+	 * Requests a read of the missed messages without waiting. The requests
+	 * arriving within the debounce delay are coalesced into one scan, and
+	 * only one scan runs at a time.
+	 * 
+	 * @see #getMissedMessages()
+	 * @see #setMissedMessagesDebounceDelay(int)
+	 */
+	public final void requestMissedMessages() {
+		_missedMessages.request();
+	}
+
+	/**
+	 * Sets the delay between the first request of the missed messages and the
+	 * scan. The default is 200 milliseconds.
+	 * 
+	 * @param delay
+	 *            the delay in milliseconds
+	 * @throws IllegalArgumentException
+	 *             if the delay is negative
+	 * @see #requestMissedMessages()
+	 */
+	public final void setMissedMessagesDebounceDelay(final int delay) {
+		_missedMessages.setDebounceDelay(delay);
+	}
+
+	/**
+	 * Gets the synchronizer of the missed messages.
+	 * 
+	 * @return the synchronizer
+	 */
+	final MissedMessageSynchronizer getMissedMessageSynchronizer() {
+		return _missedMessages;
 	}
 
 
@@ -582,13 +786,21 @@ public abstract class Connector {
 			}
 			disposeImpl();
 			setStatus(Status.NOT_RUNNING);
-			_commandExecutor.shutdown();
 
-			_syncSender.shutdown();
-			_asyncSender.shutdown();
+			_syncSender.stop();
+			for (EventRing asyncSender : _asyncSenders) {
+				asyncSender.stop();
+			}
+			// let the listeners get the NOT_RUNNING status before removing them
+			awaitSendersStopped(1000);
 
 			_syncListeners.clear();
 			_asyncListeners.clear();
+			for (ConnectorListenerBulkhead bulkhead : _bulkheads.values()) {
+				bulkhead.close();
+			}
+			_bulkheads.clear();
+			_missedMessages.stop();
 
 			synchronized (_debugListenerMutex) {
 				if (_debugListener != null) {
@@ -600,6 +812,28 @@ public abstract class Connector {
 		}
 	}
 
+	/**
+	 * Waits for the stopped senders to deliver their events.
+	 * 
+	 * @param timeoutMillis
+	 *            the maximum time to wait for all the senders in milliseconds
+	 */
+	private void awaitSendersStopped(final long timeoutMillis) {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		try {
+			_syncSender.awaitStopped(timeoutMillis);
+			for (EventRing asyncSender : _asyncSenders) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return;
+				}
+				asyncSender.awaitStopped(remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	/**
 	 * Disconnects from the Skype client and clean up the resources of the
 	 * platfrom.
@@ -652,6 +886,7 @@ public abstract class Connector {
 		};
 		processor.init(wait, listener);
 		addConnectorListener(listener, false);
+		invalidateReads(command, null);
 		synchronized (wait) {
 			try {
 				fireMessageSent(command);
@@ -715,6 +950,51 @@ public abstract class Connector {
 		return response.substring(header.length());
 	}
 
+	/**
+	 * Executes the specified commands using command IDs and gets the responses.
+	 * All the commands are sent back-to-back before waiting for any response,
+	 * so getting N responses costs about one round trip instead of N.
+	 * 
+	 * @param commands
+	 *            the commands to execute
+	 * @param responseHeaders
+	 *            the response headers to get the accurate responses, one per
+	 *            command
+	 * @return the responses after execution, in the order of the commands
+	 * @throws NullPointerException
+	 *             if the specified commands or responseHeaders are null
+	 * @throws IllegalArgumentException
+	 *             if the numbers of commands and responseHeaders differ
+	 * @throws ConnectorException
+	 *             if executing one of the commands failed
+	 */
+	public final String[] executeWithId(final String[] commands,
+			final String[] responseHeaders) throws ConnectorException {
+		ConnectorUtils.checkNotNull("commands", commands);
+		ConnectorUtils.checkNotNull("responseHeaders", responseHeaders);
+		if (commands.length != responseHeaders.length) {
+			throw new IllegalArgumentException(
+					"The commands and responseHeaders must have the same length.");
+		}
+		final CommandFuture[] futures = new CommandFuture[commands.length];
+		try {
+			for (int i = 0; i < commands.length; i++) {
+				futures[i] = executeWithIdAsync(commands[i], responseHeaders[i]);
+			}
+			final String[] responses = new String[commands.length];
+			for (int i = 0; i < commands.length; i++) {
+				responses[i] = getResponse(futures[i]);
+			}
+			return responses;
+		} finally {
+			for (CommandFuture future : futures) {
+				if (future != null) {
+					future.cancel(true);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Executes the specified command and gets the future using a command ID.
 	 * 
@@ -746,38 +1026,8 @@ public abstract class Connector {
 				return message.startsWith(header + "ERROR ");
 			}
 		};
-		final Future<String> future = execute(header + command, wrappedChecker,
-				true, false);
-		return new Future<String>() {
-			public boolean isDone() {
-				return future.isDone();
-			}
-
-			public boolean isCancelled() {
-				return future.isCancelled();
-			}
-
-			public String get(long timeout, TimeUnit unit)
-					throws InterruptedException, ExecutionException,
-					TimeoutException {
-				return removeId(future.get(timeout, unit));
-			}
-
-			public String get() throws InterruptedException, ExecutionException {
-				return removeId(future.get());
-			}
-
-			private String removeId(String message) {
-				if (message.startsWith(header)) {
-					return message.substring(header.length());
-				}
-				return message;
-			}
-
-			public boolean cancel(boolean mayInterruptIfRunning) {
-				return future.cancel(mayInterruptIfRunning);
-			}
-		};
+		return executeAsync(header + command, null, wrappedChecker, true,
+				false, header);
 	}
 
 	/**
@@ -883,20 +1133,27 @@ public abstract class Connector {
 	private String execute(final String command,
 			final String[] responseHeaders, final boolean checkAttached,
 			boolean withoutTimeout) throws ConnectorException {
-		final NotificationChecker checker = new NotificationChecker() {
-			public boolean isTarget(String message) {
-				for (String responseHeader : responseHeaders) {
-					if (message.startsWith(responseHeader)) {
-						return true;
-					}
-				}
-				return false;
-			}
-		};
+		return getResponse(executeAsync(command, responseHeaders, null,
+				checkAttached, withoutTimeout, null));
+	}
+
+	/**
+	 * Waits for the response of the specified future.
+	 * 
+	 * @param future
+	 *            the future of the command
+	 * @return the response
+	 * @throws ConnectorException
+	 *             if executing the command failed or the current thread was
+	 *             interrupted
+	 */
+	private String getResponse(final CommandFuture future)
+			throws ConnectorException {
+		final String command = future.getCommand();
 		try {
-			return execute(command, checker, checkAttached, withoutTimeout)
-					.get();
+			return future.get();
 		} catch (InterruptedException e) {
+			future.cancel(true);
 			Thread.currentThread().interrupt();
 			throw new ConnectorException("The '" + command
 					+ "' command was interrupted.", e);
@@ -915,78 +1172,323 @@ public abstract class Connector {
 	}
 
 	/**
-	 * Executes the specified command and gets the future using a command ID.
+	 * Executes the specified command asynchronously. The returned future is
+	 * completed when the response arrives; no thread waits for it. It is better
+	 * to use {@link #executeWithIdAsync(String, String)} because it completes
+	 * with the accurate response.
+	 * 
+	 * @param command
+	 *            the command to execute
+	 * @param responseHeader
+	 *            the response header to get the accurate response
+	 * @return the future of the response
+	 * @throws NullPointerException
+	 *             if the specified command or responseHeader is null
+	 * @throws ConnectorException
+	 *             if this connector is not attached
+	 * @see #execute(String, String)
+	 */
+	public final CommandFuture executeAsync(final String command,
+			final String responseHeader) throws ConnectorException {
+		ConnectorUtils.checkNotNull("command", command);
+		ConnectorUtils.checkNotNull("responseHeader", responseHeader);
+		return executeAsync(command, new String[] { responseHeader, "ERROR " },
+				null, true, false, null);
+	}
+
+	/**
+	 * Executes the specified command asynchronously using a command ID. The
+	 * returned future is completed with the response, without the command ID,
+	 * when it arrives; no thread waits for it.
+	 * 
+	 * @param command
+	 *            the command to execute
+	 * @param responseHeader
+	 *            the response header to get the accurate response
+	 * @return the future of the response
+	 * @throws NullPointerException
+	 *             if the specified command or responseHeader is null
+	 * @throws ConnectorException
+	 *             if this connector is not attached
+	 * @see #executeWithId(String, String)
+	 */
+	public final CommandFuture executeWithIdAsync(final String command,
+			final String responseHeader) throws ConnectorException {
+		ConnectorUtils.checkNotNull("command", command);
+		ConnectorUtils.checkNotNull("responseHeader", responseHeader);
+		final String header = "#" + _commandCount.getAndIncrement() + " ";
+		return executeAsync(header + command, new String[] {
+				header + responseHeader, header + "ERROR " }, null, true,
+				false, header);
+	}
+
+	/**
+	 * Executes the specified command asynchronously. The response is detected
+	 * by the response headers or, if they are null, by the response checker.
 	 * 
 	 * @param command
 	 *            the command to execute
+	 * @param responseHeaders
+	 *            the response headers to get the accurate response or null
 	 * @param responseChecker
-	 *            the notification checker to detect the end
+	 *            the notification checker to detect the end or null
 	 * @param checkAttached
 	 *            if true check if this connector is attached
-	 * @return the future to wait for the end of the execution
+	 * @param withoutTimeout
+	 *            if true it will not be time out
+	 * @param commandIdHeader
+	 *            the command ID header to remove from the response or null
+	 * @return the future of the response
 	 * @throws NullPointerException
-	 *             if the specified command or responseChecker is null
+	 *             if the specified command or both responseHeaders and
+	 *             responseChecker are null
 	 * @throws ConnectorException
-	 *             if executing the command failed
+	 *             if this connector is not attached
 	 */
-	private Future<String> execute(final String command,
+	private CommandFuture executeAsync(final String command,
+			final String[] responseHeaders,
 			final NotificationChecker responseChecker,
-			final boolean checkAttached, boolean withoutTimeout)
-			throws ConnectorException {
+			final boolean checkAttached, final boolean withoutTimeout,
+			final String commandIdHeader) throws ConnectorException {
 		ConnectorUtils.checkNotNull("command", command);
-		ConnectorUtils.checkNotNull("responseChecker", responseChecker);
+		if (responseHeaders == null) {
+			ConnectorUtils.checkNotNull("responseChecker", responseChecker);
+		}
 
 		if (checkAttached) {
 			assureAttached();
 		}
 
-		return _commandExecutor.submit(new Callable<String>() {
-			public String call() throws Exception {
-				final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
-
-				ConnectorListener listener = new AbstractConnectorListener() {
-					public void messageReceived(ConnectorMessageEvent event) {
-						String message = event.getMessage();
-						
-						if (responseChecker.isTarget(message)
-								|| message.startsWith("PONG")) {
-							responses.add(message);
-						}
-					}
-				};
-				addConnectorListener(listener, false);
+		invalidateReads(command, commandIdHeader);
+		final CommandFuture future = new CommandFuture(command,
+				commandIdHeader);
+		final String readKey = getReadKey(command, responseHeaders,
+				withoutTimeout, commandIdHeader);
+		if (readKey != null) {
+			CommandFuture inFlight = _inFlightReads.putIfAbsent(readKey,
+					future);
+			if (inFlight != null) {
+				// the same read is already on the wire, share its response
+				return follow(inFlight);
+			}
+			future.addInlineCallback(new CommandCallback() {
+				public void commandCompleted(String response) {
+					_inFlightReads.remove(readKey, future);
+				}
 
-				fireMessageSent(command);
-				sendCommand(command);
-				try {
-					boolean pinged = false;
-					while (true) {
-						// to cancel getting responses, you must call
-						// Future#cancel(true)
-						String response = responses.poll(getCommandTimeout(),
-								TimeUnit.MILLISECONDS);
-						if (response == null) {
-							if (pinged) {
-								setStatus(Status.NOT_RUNNING);
-								throw new NotAttachedException(
-										Status.NOT_RUNNING);
-							} else {
-								// retry the message again
-								fireMessageSent(command);
-								sendCommand(command);
-								
-								pinged = true;
-								continue;
-							}
-						}
-						
-						return response;
-					}
-				} finally {
-					removeConnectorListener(listener);
+				public void commandFailed(ConnectorException cause) {
+					_inFlightReads.remove(readKey, future);
+				}
+			});
+		}
+		final CommandAdmission admission = _commandAdmission;
+		try {
+			admission.admit(command, new Runnable() {
+				public void run() {
+					new PendingCommand(future, withoutTimeout, admission)
+							.start(responseHeaders, responseChecker);
 				}
+			});
+		} catch (ConnectorException e) {
+			future.fail(e);
+			throw e;
+		}
+		return readKey != null ? follow(future) : future;
+	}
+
+	/**
+	 * Gets the key used to coalesce identical read-only commands in flight.
+	 * 
+	 * @param command
+	 *            the command including the command ID header
+	 * @param responseHeaders
+	 *            the response headers or null
+	 * @param withoutTimeout
+	 *            if true it will not be time out
+	 * @param commandIdHeader
+	 *            the command ID header or null
+	 * @return the key or null if the command must not be coalesced
+	 */
+	private static String getReadKey(final String command,
+			final String[] responseHeaders, final boolean withoutTimeout,
+			final String commandIdHeader) {
+		if (responseHeaders == null || withoutTimeout) {
+			return null;
+		}
+		if (commandIdHeader == null) {
+			return command.startsWith("GET ") ? command : null;
+		}
+		String body = command.substring(commandIdHeader.length());
+		// commands with ID only accept their own errors, keep them apart
+		return body.startsWith("GET ") ? "#" + body : null;
+	}
+
+	/**
+	 * Stops sharing the in-flight reads of the object type changed by the
+	 * specified command, so a read executed after a write is sent again
+	 * instead of getting the response of a read sent before the write. The
+	 * whole type is dropped because a write like <tt>SET USERSTATUS</tt> does
+	 * not name its object like the matching read.
+	 * 
+	 * @param command
+	 *            the command including the command ID header
+	 * @param commandIdHeader
+	 *            the command ID header or null
+	 */
+	private void invalidateReads(final String command,
+			final String commandIdHeader) {
+		if (_inFlightReads.isEmpty()) {
+			return;
+		}
+		String body = commandIdHeader == null ? command : command
+				.substring(commandIdHeader.length());
+		if (!body.startsWith("SET ") && !body.startsWith("ALTER ")) {
+			return;
+		}
+		String type = getObjectType(body);
+		for (String key : _inFlightReads.keySet()) {
+			String read = key.startsWith("#") ? key.substring(1) : key;
+			if (type.equals(getObjectType(read))) {
+				_inFlightReads.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Gets the object type of a command, the word after the command name.
+	 * 
+	 * @param command
+	 *            the command without the command ID header
+	 * @return the object type
+	 */
+	private static String getObjectType(final String command) {
+		int start = command.indexOf(' ') + 1;
+		int end = command.indexOf(' ', start);
+		return end < 0 ? command.substring(start) : command.substring(start,
+				end);
+	}
+
+	/**
+	 * Creates a future completed with the result of the specified one.
+	 * Cancelling it does not cancel the shared command.
+	 * 
+	 * @param shared
+	 *            the future of the command on the wire
+	 * @return the new future
+	 */
+	private static CommandFuture follow(final CommandFuture shared) {
+		final CommandFuture follower = new CommandFuture(shared.getCommand(),
+				null);
+		shared.addInlineCallback(new CommandCallback() {
+			public void commandCompleted(String response) {
+				follower.complete(response);
+			}
+
+			public void commandFailed(ConnectorException cause) {
+				follower.fail(cause);
 			}
 		});
+		return follower;
+	}
+
+	/**
+	 * A command waiting for its response. It is completed by the response
+	 * router on the receiving thread and timed out by the command timer.
+	 */
+	private final class PendingCommand implements
+			CommandResponseRouter.ResponseHandler, CommandCallback, Runnable {
+		/** The future to complete. */
+		private final CommandFuture future;
+		/** If true the command will not be time out. */
+		private final boolean withoutTimeout;
+		/** The admission to release when the command ends. */
+		private final CommandAdmission admission;
+		/** The route of the response. */
+		private volatile CommandResponseRouter.Route route;
+		/** The scheduled timeout or null. */
+		private volatile ScheduledFuture<?> timeout;
+		/** The flag to check if the command was already sent again. */
+		private boolean retried;
+
+		private PendingCommand(CommandFuture future, boolean withoutTimeout,
+				CommandAdmission admission) {
+			this.future = future;
+			this.withoutTimeout = withoutTimeout;
+			this.admission = admission;
+		}
+
+		private void start(String[] responseHeaders,
+				NotificationChecker responseChecker) {
+			if (future.isDone()) {
+				// cancelled while queued
+				admission.release();
+				return;
+			}
+			if (responseHeaders != null) {
+				route = _responseRouter.addRoute(responseHeaders, this);
+			} else {
+				route = _responseRouter.addRoute(responseChecker, this);
+			}
+			future.addInlineCallback(this);
+			send();
+		}
+
+		private void send() {
+			try {
+				fireMessageSent(future.getCommand());
+				sendCommand(future.getCommand());
+			} catch (RuntimeException e) {
+				future.fail(new ConnectorException("The '"
+						+ future.getCommand() + "' command execution failed.",
+						e));
+				return;
+			}
+			if (!withoutTimeout && !future.isDone()) {
+				timeout = _commandTimer.schedule(this, getCommandTimeout(),
+						TimeUnit.MILLISECONDS);
+			}
+		}
+
+		public void responseReceived(String response) {
+			future.complete(response);
+		}
+
+		/**
+		 * Called by the command timer when no response arrived in time.
+		 */
+		public void run() {
+			if (future.isDone()) {
+				return;
+			}
+			if (!retried) {
+				// retry the message again
+				retried = true;
+				send();
+				return;
+			}
+			try {
+				setStatus(Status.NOT_RUNNING);
+			} finally {
+				future.fail(new NotAttachedException(Status.NOT_RUNNING));
+			}
+		}
+
+		public void commandCompleted(String response) {
+			cleanUp();
+		}
+
+		public void commandFailed(ConnectorException cause) {
+			cleanUp();
+		}
+
+		private void cleanUp() {
+			route.remove();
+			ScheduledFuture<?> scheduled = timeout;
+			if (scheduled != null) {
+				scheduled.cancel(false);
+			}
+			admission.release();
+		}
 	}
 
 	/**
@@ -1077,15 +1579,140 @@ public abstract class Connector {
 	public final void addConnectorListener(final ConnectorListener listener,
 			final boolean checkAttached, final boolean isSynchronous)
 			throws ConnectorException {
+		addConnectorListener(listener, null, checkAttached, isSynchronous);
+	}
+
+	/**
+	 * Adds the specified listener to this connector for the specified
+	 * notification topics only.
+	 * 
+	 * @param listener
+	 *            the listener to be added
+	 * @param topics
+	 *            the heads of the notifications to receive, like
+	 *            <tt>USER</tt>, <tt>CHATMESSAGE</tt> or
+	 *            <tt>APPLICATION name</tt>
+	 * @throws NullPointerException
+	 *             if the specified listener is null
+	 * @throws ConnectorException
+	 *             if trying to connect failed
+	 * @see #addConnectorListener(ConnectorListener, String[], boolean,
+	 *      boolean)
+	 */
+	public final void addConnectorListener(final ConnectorListener listener,
+			final String[] topics) throws ConnectorException {
+		ConnectorUtils.checkNotNull("topics", topics);
+		addConnectorListener(listener, topics, true, false);
+	}
+
+	/**
+	 * Adds the specified listener to this connector. A listener with topics
+	 * only receives the messages starting with one of the topics followed by
+	 * a space, without being offered the others; it gets the status changes
+	 * but not the sent messages.
+	 * 
+	 * @param listener
+	 *            the listener to be added
+	 * @param topics
+	 *            the heads of the notifications to receive, like
+	 *            <tt>USER</tt>, <tt>CHATMESSAGE</tt> or
+	 *            <tt>APPLICATION name</tt>, or null for all the messages
+	 * @param checkAttached
+	 *            if true checks if this connector is attached
+	 * @param isSynchronous
+	 *            if true the listener will be handled synchronously
+	 * @throws NullPointerException
+	 *             if the specified listener is null
+	 * @throws ConnectorException
+	 *             if trying to connect failed
+	 * @see #removeConnectorListener(ConnectorListener)
+	 */
+	public final void addConnectorListener(final ConnectorListener listener,
+			final String[] topics, final boolean checkAttached,
+			final boolean isSynchronous) throws ConnectorException {
 		ConnectorUtils.checkNotNull("listener", listener);
 		if (isSynchronous) {
-			_syncListeners.add(listener);
+			_syncListeners.add(listener, topics);
 		} else {
-			_asyncListeners.add(listener);
+			_asyncListeners.add(listener, topics);
+		}
+		if (checkAttached) {
+			assureAttached();
+		}
+		readMissedMessagesFor(listener);
+	}
+
+	/**
+	 * Adds the specified listener to this connector with its own thread and
+	 * bounded event queue, so that a slow listener does not delay the others.
+	 * The listener is handled asynchronously.
+	 * 
+	 * @param listener
+	 *            the listener to be added
+	 * @param topics
+	 *            the heads of the notifications to receive, or null for all
+	 *            the messages
+	 * @param checkAttached
+	 *            if true checks if this connector is attached
+	 * @param queueCapacity
+	 *            the maximum number of events waiting for the listener
+	 * @param policy
+	 *            the behavior when the queue is full
+	 * @return the bulkhead running the listener, giving its counters
+	 * @throws NullPointerException
+	 *             if the specified listener or policy is null
+	 * @throws ConnectorException
+	 *             if trying to connect failed
+	 * @see #removeConnectorListener(ConnectorListener)
+	 * @see #getConnectorListenerBulkhead(ConnectorListener)
+	 */
+	public final ConnectorListenerBulkhead addConnectorListener(
+			final ConnectorListener listener, final String[] topics,
+			final boolean checkAttached, final int queueCapacity,
+			final ConnectorListenerBulkhead.OverflowPolicy policy)
+			throws ConnectorException {
+		ConnectorUtils.checkNotNull("listener", listener);
+		ConnectorListenerBulkhead bulkhead = new ConnectorListenerBulkhead(
+				listener, queueCapacity, policy);
+		ConnectorListenerBulkhead previous = _bulkheads.put(listener, bulkhead);
+		if (previous != null) {
+			_asyncListeners.remove(previous);
+			previous.close();
 		}
+		_asyncListeners.add(bulkhead, topics);
 		if (checkAttached) {
 			assureAttached();
 		}
+		readMissedMessagesFor(listener);
+		return bulkhead;
+	}
+
+	/**
+	 * Gets the bulkhead running the specified listener.
+	 * 
+	 * @param listener
+	 *            the listener
+	 * @return the bulkhead or null if the listener was not added with one
+	 * @see #addConnectorListener(ConnectorListener, String[], boolean, int,
+	 *      ConnectorListenerBulkhead.OverflowPolicy)
+	 */
+	public final ConnectorListenerBulkhead getConnectorListenerBulkhead(
+			final ConnectorListener listener) {
+		ConnectorUtils.checkNotNull("listener", listener);
+		return _bulkheads.get(listener);
+	}
+
+	/**
+	 * Reads the missed messages the first time the chat message listener of
+	 * the Skype API is added.
+	 * 
+	 * @param listener
+	 *            the added listener
+	 * @throws ConnectorException
+	 *             if reading the missed messages failed
+	 */
+	private void readMissedMessagesFor(final ConnectorListener listener)
+			throws ConnectorException {
 		/* consume startup messages */
 		if (!_readMissedMessages && listener.getClass().getName().contains("ChatMessageConnectorListener")) {
 			getMissedMessages();
@@ -1106,6 +1733,11 @@ public abstract class Connector {
 		ConnectorUtils.checkNotNull("listener", listener);
 		_syncListeners.remove(listener);
 		_asyncListeners.remove(listener);
+		ConnectorListenerBulkhead bulkhead = _bulkheads.remove(listener);
+		if (bulkhead != null) {
+			_asyncListeners.remove(bulkhead);
+			bulkhead.close();
+		}
 	}
 
 	/**
@@ -1128,18 +1760,59 @@ public abstract class Connector {
 	 */
 	private void fireMessageEvent(final String message, final boolean isReceived) {
 		ConnectorUtils.checkNotNull("message", message);
-		_syncSender.execute(new Runnable() {
-			public void run() {
-				fireMessageEvent(toConnectorListenerArray(_syncListeners),
-						message, isReceived);
-			}
-		});
-		_asyncSender.execute(new Runnable() {
-			public void run() {
-				fireMessageEvent(toConnectorListenerArray(_asyncListeners),
-						message, isReceived);
-			}
-		});
+		if (isReceived) {
+			_responseRouter.dispatch(message);
+		}
+		// one event for all the listeners so the message is parsed once
+		final ConnectorMessageEvent event = new ConnectorMessageEvent(this,
+				message);
+		_syncSender.publish(event, isReceived);
+		_asyncSenders[getStripe(event, _asyncSenders.length)].publish(event,
+				isReceived);
+	}
+
+	/**
+	 * Gets the asynchronous sender of the specified event. The events of the
+	 * same object always get the same sender.
+	 * 
+	 * @param event
+	 *            the event
+	 * @param stripes
+	 *            the number of asynchronous senders
+	 * @return the index of the sender
+	 */
+	private static int getStripe(final ConnectorMessageEvent event,
+			final int stripes) {
+		ConnectorNotification notification = event.getNotification();
+		String objectId = notification.getObjectId();
+		int key = notification.getObjectType().hashCode();
+		if (objectId != null) {
+			key = key * 31 + objectId.hashCode();
+		}
+		// spread the hash bits like HashMap does
+		key ^= (key >>> 20) ^ (key >>> 12);
+		key ^= (key >>> 7) ^ (key >>> 4);
+		return (key & 0x7fffffff) % stripes;
+	}
+
+	/**
+	 * Gets the listeners interested in the specified message.
+	 * 
+	 * @param listeners
+	 *            the listener index
+	 * @param message
+	 *            the message
+	 * @param isReceived
+	 *            the message is a received type or not
+	 * @return the listeners in registration order
+	 */
+	private static ConnectorListener[] getListeners(
+			final ConnectorListenerIndex listeners, final String message,
+			final boolean isReceived) {
+		if (isReceived) {
+			return listeners.getListeners(message);
+		}
+		return listeners.getUnfilteredListeners();
 	}
 
 	/**
@@ -1147,14 +1820,13 @@ public abstract class Connector {
 	 * 
 	 * @param listenerList
 	 *            the event listener list
-	 * @param message
-	 *            the message that triggered the event
+	 * @param event
+	 *            the event to fire
 	 * @param isReceived
 	 *            the message is a received type or not
 	 */
 	private void fireMessageEvent(final ConnectorListener[] listeners,
-			final String message, final boolean isReceived) {
-		ConnectorMessageEvent event = new ConnectorMessageEvent(this, message);
+			final ConnectorMessageEvent event, final boolean isReceived) {
 		for (int i = listeners.length - 1; 0 <= i; i--) {
 			if (isReceived) {
 				listeners[i].messageReceived(event);
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ *
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ *
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API>
+ * in your web site or documents.
+ *
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype.connector;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listener running another listener on its own thread with its own bounded
+ * queue, so a slow listener cannot hold back the delivery to the others.
+ * <p>
+ * When the queue is full, the event is handled by the {@link OverflowPolicy}.
+ * The counters tell how the listener keeps up: queue depth, delivered, dropped
+ * and slow events, and time spent in the listener.
+ * </p>
+ * @see Connector#addConnectorListener(ConnectorListener, String[], boolean, int, ConnectorListenerBulkhead.OverflowPolicy)
+ */
+public final class ConnectorListenerBulkhead implements ConnectorListener {
+    /**
+     * Enumeration of the behaviors when the queue of a bulkhead is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait for room, slowing down the connector thread delivering the event. */
+        BLOCK,
+        /** Drop the oldest queued event to make room. */
+        DROP_OLDEST,
+        /** Drop the new event. */
+        DROP_NEWEST;
+    }
+
+    /**
+     * A queued event.
+     */
+    private static final class Entry {
+        /** The message event or null. */
+        private final ConnectorMessageEvent messageEvent;
+        /** The message is a received type or not. */
+        private final boolean isReceived;
+        /** The status event or null. */
+        private final ConnectorStatusEvent statusEvent;
+
+        private Entry(ConnectorMessageEvent messageEvent, boolean isReceived, ConnectorStatusEvent statusEvent) {
+            this.messageEvent = messageEvent;
+            this.isReceived = isReceived;
+            this.statusEvent = statusEvent;
+        }
+    }
+
+    /** The isolated listener. */
+    private final ConnectorListener listener;
+    /** The behavior when the queue is full. */
+    private final OverflowPolicy policy;
+    /** The queued events. */
+    private final BlockingQueue<Entry> queue;
+    /** The worker thread. */
+    private final Thread worker;
+
+    /** The number of events delivered to the listener. */
+    private final AtomicLong deliveredCount = new AtomicLong();
+    /** The number of dropped events. */
+    private final AtomicLong droppedCount = new AtomicLong();
+    /** The number of events the listener took longer than the slow threshold for. */
+    private final AtomicLong slowCount = new AtomicLong();
+    /** The total time spent in the listener in nanoseconds. */
+    private final AtomicLong busyNanos = new AtomicLong();
+    /** The longest time spent for one event in nanoseconds. */
+    private volatile long maxNanos;
+    /** The time above which an event counts as slow, in nanoseconds. */
+    private volatile long slowThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+    /** The flag to check if this bulkhead is closed. */
+    private volatile boolean closed;
+
+    /**
+     * Constructor. The worker thread is started immediately.
+     * @param newListener the listener to isolate.
+     * @param queueCapacity the maximum number of queued events.
+     * @param newPolicy the behavior when the queue is full.
+     */
+    public ConnectorListenerBulkhead(ConnectorListener newListener, int queueCapacity, OverflowPolicy newPolicy) {
+        ConnectorUtils.checkNotNull("listener", newListener);
+        ConnectorUtils.checkNotNull("policy", newPolicy);
+        this.listener = newListener;
+        this.policy = newPolicy;
+        this.queue = new ArrayBlockingQueue<Entry>(queueCapacity);
+        this.worker = new Thread("ConnectorListenerBulkhead-" + newListener.getClass().getName()) {
+            @Override
+            public void run() {
+                work();
+            }
+        };
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Gets the isolated listener.
+     * @return the listener.
+     */
+    public ConnectorListener getListener() {
+        return listener;
+    }
+
+    public void messageReceived(ConnectorMessageEvent event) {
+        enqueue(new Entry(event, true, null));
+    }
+
+    public void messageSent(ConnectorMessageEvent event) {
+        enqueue(new Entry(event, false, null));
+    }
+
+    public void statusChanged(ConnectorStatusEvent event) {
+        enqueue(new Entry(null, false, event));
+    }
+
+    private void enqueue(Entry entry) {
+        if (closed) {
+            return;
+        }
+        switch (policy) {
+            case BLOCK:
+                try {
+                    queue.put(entry);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCount.incrementAndGet();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(entry)) {
+                    if (queue.poll() != null) {
+                        droppedCount.incrementAndGet();
+                    }
+                }
+                break;
+            case DROP_NEWEST:
+                if (!queue.offer(entry)) {
+                    droppedCount.incrementAndGet();
+                }
+                break;
+        }
+    }
+
+    private void work() {
+        while (!closed) {
+            Entry entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                if (entry.statusEvent != null) {
+                    listener.statusChanged(entry.statusEvent);
+                } else if (entry.isReceived) {
+                    listener.messageReceived(entry.messageEvent);
+                } else {
+                    listener.messageSent(entry.messageEvent);
+                }
+            } catch (Throwable e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+            long elapsed = System.nanoTime() - start;
+            deliveredCount.incrementAndGet();
+            busyNanos.addAndGet(elapsed);
+            if (maxNanos < elapsed) {
+                maxNanos = elapsed;
+            }
+            if (slowThresholdNanos < elapsed) {
+                slowCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Stops the worker thread. The queued events are discarded.
+     */
+    public void close() {
+        closed = true;
+        worker.interrupt();
+        queue.clear();
+    }
+
+    /**
+     * Sets the time above which an event counts as slow. The default is one second.
+     * @param threshold the time.
+     * @param unit the unit of the time.
+     */
+    public void setSlowEventThreshold(long threshold, TimeUnit unit) {
+        slowThresholdNanos = unit.toNanos(threshold);
+    }
+
+    /**
+     * Gets the number of events waiting for the listener.
+     * @return the queue depth.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of events delivered to the listener.
+     * @return the delivered event count.
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * Gets the number of events dropped because the queue was full.
+     * @return the dropped event count.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Gets the number of events the listener took longer than the slow threshold for.
+     * @return the slow event count.
+     * @see #setSlowEventThreshold(long, TimeUnit)
+     */
+    public long getSlowCount() {
+        return slowCount.get();
+    }
+
+    /**
+     * Gets the total time spent in the listener.
+     * @param unit the unit of the result.
+     * @return the time spent.
+     */
+    public long getBusyTime(TimeUnit unit) {
+        return unit.convert(busyNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the longest time spent in the listener for one event.
+     * @param unit the unit of the result.
+     * @return the longest time.
+     */
+    public long getMaxTime(TimeUnit unit) {
+        return unit.convert(maxNanos, TimeUnit.NANOSECONDS);
+    }
+}
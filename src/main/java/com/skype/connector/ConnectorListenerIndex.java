@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ *
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ *
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API>
+ * in your web site or documents.
+ *
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype.connector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The listeners of a connector indexed by the notification topics they
+ * subscribed to.
+ * <p>
+ * A topic is the head of a notification, such as <tt>USER</tt>,
+ * <tt>CHATMESSAGE</tt> or <tt>APPLICATION name</tt>. A received message is
+ * only given to the listeners subscribed to one of its word-bounded prefixes
+ * and to the listeners without topics, which get every message.
+ * </p>
+ */
+final class ConnectorListenerIndex {
+    /**
+     * A listener registration.
+     */
+    private static final class Subscription {
+        /** The listener. */
+        private final ConnectorListener listener;
+        /** The subscribed topics or null for all messages. */
+        private final String[] topics;
+        /** The registration order. */
+        private final long order;
+
+        private Subscription(ConnectorListener listener, String[] topics, long order) {
+            this.listener = listener;
+            this.topics = topics;
+            this.order = order;
+        }
+    }
+
+    /** Sorts subscriptions in registration order. */
+    private static final Comparator<Subscription> REGISTRATION_ORDER = new Comparator<Subscription>() {
+        public int compare(Subscription s1, Subscription s2) {
+            return s1.order < s2.order ? -1 : (s1.order == s2.order ? 0 : 1);
+        }
+    };
+
+    /** Empty subscription array. */
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+
+    /** All the subscriptions in registration order. */
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+    /** The subscriptions without topics in registration order. */
+    private final List<Subscription> unfiltered = new CopyOnWriteArrayList<Subscription>();
+    /** The subscriptions with topics, keyed by each topic. */
+    private final Map<String, Subscription[]> byTopic = new ConcurrentHashMap<String, Subscription[]>();
+
+    /** The mutex object for the modifications. */
+    private final Object mutex = new Object();
+    /** The next registration order. */
+    private long nextOrder;
+    /** The maximum number of spaces in a subscribed topic. */
+    private volatile int maxTopicSpaces;
+
+    /**
+     * Adds a listener.
+     * @param listener the listener.
+     * @param topics the subscribed topics or null for all messages.
+     */
+    void add(ConnectorListener listener, String[] topics) {
+        ConnectorUtils.checkNotNull("listener", listener);
+        synchronized (mutex) {
+            Subscription subscription = new Subscription(listener, topics == null ? null : topics.clone(), nextOrder++);
+            subscriptions.add(subscription);
+            if (topics == null) {
+                unfiltered.add(subscription);
+                return;
+            }
+            for (String topic : subscription.topics) {
+                ConnectorUtils.checkNotNull("topic", topic);
+                topic = topic.trim();
+                Subscription[] current = byTopic.get(topic);
+                if (current == null) {
+                    current = NO_SUBSCRIPTIONS;
+                }
+                Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = subscription;
+                byTopic.put(topic, updated);
+                maxTopicSpaces = Math.max(maxTopicSpaces, countSpaces(topic));
+            }
+        }
+    }
+
+    /**
+     * Removes all the registrations of a listener.
+     * @param listener the listener.
+     */
+    void remove(ConnectorListener listener) {
+        synchronized (mutex) {
+            for (Subscription subscription : subscriptions) {
+                if (subscription.listener != listener) {
+                    continue;
+                }
+                subscriptions.remove(subscription);
+                if (subscription.topics == null) {
+                    unfiltered.remove(subscription);
+                    continue;
+                }
+                for (String topic : subscription.topics) {
+                    topic = topic.trim();
+                    Subscription[] current = byTopic.get(topic);
+                    if (current == null) {
+                        continue;
+                    }
+                    List<Subscription> updated = new ArrayList<Subscription>(Arrays.asList(current));
+                    updated.remove(subscription);
+                    if (updated.isEmpty()) {
+                        byTopic.remove(topic);
+                    } else {
+                        byTopic.put(topic, updated.toArray(NO_SUBSCRIPTIONS));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the listeners.
+     */
+    void clear() {
+        synchronized (mutex) {
+            subscriptions.clear();
+            unfiltered.clear();
+            byTopic.clear();
+            maxTopicSpaces = 0;
+        }
+    }
+
+    /**
+     * Gets all the listeners, used for status changes.
+     * @return the listeners in registration order.
+     */
+    ConnectorListener[] getAllListeners() {
+        return toListeners(subscriptions.toArray(NO_SUBSCRIPTIONS));
+    }
+
+    /**
+     * Gets the listeners without topics, used for sent messages.
+     * @return the listeners in registration order.
+     */
+    ConnectorListener[] getUnfilteredListeners() {
+        return toListeners(unfiltered.toArray(NO_SUBSCRIPTIONS));
+    }
+
+    /**
+     * Gets the listeners interested in a received message.
+     * @param message the received message.
+     * @return the listeners in registration order.
+     */
+    ConnectorListener[] getListeners(String message) {
+        Subscription[] all = unfiltered.toArray(NO_SUBSCRIPTIONS);
+        if (byTopic.isEmpty()) {
+            return toListeners(all);
+        }
+        List<Subscription> matched = null;
+        int limit = maxTopicSpaces;
+        int spaces = 0;
+        for (int i = message.indexOf(' '); spaces <= limit; i = message.indexOf(' ', i + 1)) {
+            Subscription[] found = byTopic.get(i < 0 ? message : message.substring(0, i));
+            if (found != null) {
+                if (matched == null) {
+                    matched = new ArrayList<Subscription>(Arrays.asList(all));
+                }
+                for (Subscription subscription : found) {
+                    if (!matched.contains(subscription)) {
+                        matched.add(subscription);
+                    }
+                }
+            }
+            if (i < 0) {
+                break;
+            }
+            spaces++;
+        }
+        if (matched == null) {
+            return toListeners(all);
+        }
+        Subscription[] result = matched.toArray(NO_SUBSCRIPTIONS);
+        Arrays.sort(result, REGISTRATION_ORDER);
+        return toListeners(result);
+    }
+
+    private static ConnectorListener[] toListeners(Subscription[] subscriptions) {
+        ConnectorListener[] listeners = new ConnectorListener[subscriptions.length];
+        for (int i = 0; i < subscriptions.length; i++) {
+            listeners[i] = subscriptions[i].listener;
+        }
+        return listeners;
+    }
+
+    private static int countSpaces(String value) {
+        int count = 0;
+        for (int i = value.indexOf(' '); 0 <= i; i = value.indexOf(' ', i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
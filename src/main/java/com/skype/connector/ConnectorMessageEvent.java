@@ -35,6 +35,11 @@ public final class ConnectorMessageEvent extends ConnectorEvent {
 	 */
 	private final String message;
 
+	/**
+	 * The parsed view of the message, created on first use.
+	 */
+	private transient volatile ConnectorNotification notification;
+
 	/**
 	 * Constructor with source (connector) and the message.
 	 * @param source Connector which threw the event.
@@ -53,4 +58,18 @@ public final class ConnectorMessageEvent extends ConnectorEvent {
     public String getMessage() {
         return message;
     }
+
+    /**
+     * Get the parsed view of the message. The same view is shared by all the
+     * listeners receiving this event, so the message is parsed only once.
+     * @return Parsed message.
+     */
+    public ConnectorNotification getNotification() {
+        ConnectorNotification value = notification;
+        if (value == null) {
+            value = new ConnectorNotification(message);
+            notification = value;
+        }
+        return value;
+    }
 }
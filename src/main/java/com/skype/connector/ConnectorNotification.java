@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ *
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ *
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API>
+ * in your web site or documents.
+ *
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype.connector;
+
+/**
+ * Parsed view of a notification of the form
+ * <tt>TYPE ID PROPERTY VALUE</tt>, like
+ * <tt>USER echo123 ONLINESTATUS ONLINE</tt>.
+ * <p>
+ * The message is scanned once, on first use, for the offsets of its parts.
+ * The {@code is*} methods compare in place without creating strings and each
+ * part is extracted at most once, so one view can be shared by all the
+ * listeners of a message. Missing parts are returned as null.
+ * </p>
+ * @see ConnectorMessageEvent#getNotification()
+ */
+public final class ConnectorNotification {
+    /** The parsed message. */
+    private final String message;
+
+    /** The end of the object type, the end of the ID and the end of the property name, or -1 if missing. */
+    private volatile int[] offsets;
+
+    /** The extracted object type. */
+    private volatile String objectType;
+    /** The extracted object ID. */
+    private volatile String objectId;
+    /** The extracted property name. */
+    private volatile String propertyName;
+    /** The extracted property value. */
+    private volatile String propertyValue;
+
+    /**
+     * Constructor.
+     * @param newMessage the message to parse.
+     */
+    public ConnectorNotification(String newMessage) {
+        ConnectorUtils.checkNotNull("message", newMessage);
+        this.message = newMessage;
+    }
+
+    /**
+     * Gets the parsed message.
+     * @return the message.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Checks the object type without creating a string.
+     * @param type the expected object type, like <tt>USER</tt>.
+     * @return true if the message has the specified object type.
+     */
+    public boolean isObjectType(String type) {
+        int end = getOffsets()[0];
+        return end == type.length() && message.startsWith(type);
+    }
+
+    /**
+     * Checks the object ID without creating a string.
+     * @param id the expected object ID.
+     * @return true if the message has the specified object ID.
+     */
+    public boolean isObjectId(String id) {
+        int[] o = getOffsets();
+        return o[1] >= 0 && o[1] - o[0] - 1 == id.length() && message.regionMatches(o[0] + 1, id, 0, id.length());
+    }
+
+    /**
+     * Checks the property name without creating a string.
+     * @param name the expected property name, like <tt>STATUS</tt>.
+     * @return true if the message has the specified property name.
+     */
+    public boolean isPropertyName(String name) {
+        int[] o = getOffsets();
+        return o[2] >= 0 && o[2] - o[1] - 1 == name.length() && message.regionMatches(o[1] + 1, name, 0, name.length());
+    }
+
+    /**
+     * Gets the object type, the first word of the message.
+     * @return the object type.
+     */
+    public String getObjectType() {
+        String value = objectType;
+        if (value == null) {
+            value = message.substring(0, getOffsets()[0]);
+            objectType = value;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the object ID, the second word of the message.
+     * @return the object ID or null if missing.
+     */
+    public String getObjectId() {
+        String value = objectId;
+        if (value == null) {
+            int[] o = getOffsets();
+            if (o[1] < 0) {
+                return null;
+            }
+            value = message.substring(o[0] + 1, o[1]);
+            objectId = value;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the property name, the third word of the message.
+     * @return the property name or null if missing.
+     */
+    public String getPropertyName() {
+        String value = propertyName;
+        if (value == null) {
+            int[] o = getOffsets();
+            if (o[2] < 0) {
+                return null;
+            }
+            value = message.substring(o[1] + 1, o[2]);
+            propertyName = value;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the property value, the rest of the message after the property name.
+     * @return the property value or null if missing.
+     */
+    public String getPropertyValue() {
+        String value = propertyValue;
+        if (value == null) {
+            int[] o = getOffsets();
+            if (o[2] < 0 || o[2] == message.length()) {
+                return null;
+            }
+            value = message.substring(o[2] + 1);
+            propertyValue = value;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the part offsets, scanning the message on first use.
+     * @return the offsets.
+     */
+    private int[] getOffsets() {
+        int[] o = offsets;
+        if (o == null) {
+            o = new int[] {message.length(), -1, -1};
+            int typeEnd = message.indexOf(' ');
+            if (0 <= typeEnd) {
+                o[0] = typeEnd;
+                o[1] = endOfWord(typeEnd + 1);
+                int idEnd = message.indexOf(' ', typeEnd + 1);
+                if (0 <= idEnd) {
+                    o[2] = endOfWord(idEnd + 1);
+                }
+            }
+            offsets = o;
+        }
+        return o;
+    }
+
+    private int endOfWord(int start) {
+        int end = message.indexOf(' ', start);
+        return end < 0 ? message.length() : end;
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
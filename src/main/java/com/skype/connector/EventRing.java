@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ *
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ *
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API>
+ * in your web site or documents.
+ *
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype.connector;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+import com.skype.connector.Connector.Status;
+
+/**
+ * Preallocated ring buffer delivering connector events to listeners on one
+ * consumer thread.
+ * <p>
+ * Publishing an event only fills a reused slot, without allocating a task or
+ * taking a queue lock shared with the consumer. The consumer thread drains
+ * every published slot in one batch before it checks for more.
+ * </p>
+ * <p>
+ * A publisher never waits: the events are published by the thread receiving
+ * the messages from Skype and by the command timeout timer, and a listener may
+ * wait for a response only these threads can route. When the ring is full,
+ * the events spill into an unbounded overflow queue, and the following events
+ * go there too until the consumer has drained it, so the order is kept.
+ * </p>
+ */
+final class EventRing {
+    /**
+     * Handler of the delivered events, called on the consumer thread.
+     */
+    interface Handler {
+        /**
+         * Called for a sent or received message.
+         * @param event the message event.
+         * @param isReceived the message is a received type or not.
+         */
+        void messageEvent(ConnectorMessageEvent event, boolean isReceived);
+
+        /**
+         * Called for a status change.
+         * @param status the new status.
+         */
+        void statusChanged(Status status);
+    }
+
+    /**
+     * A reusable ring entry.
+     */
+    private static final class Slot {
+        /** The message event or null for a status change. */
+        private ConnectorMessageEvent event;
+        /** The message is a received type or not. */
+        private boolean isReceived;
+        /** The new status or null for a message. */
+        private Status status;
+
+        private Slot() {
+        }
+
+        private Slot(ConnectorMessageEvent newEvent, boolean newIsReceived, Status newStatus) {
+            event = newEvent;
+            isReceived = newIsReceived;
+            status = newStatus;
+        }
+    }
+
+    /** The slots, the capacity is a power of two. */
+    private final Slot[] slots;
+    /** The mask to get a slot index from a sequence. */
+    private final int mask;
+    /** The handler of the events. */
+    private final Handler handler;
+    /** The consumer thread. */
+    private final Thread consumer;
+
+    /** The mutex object for the publishers. */
+    private final Object publishMutex = new Object();
+    /** The events published while the ring was full, guarded by publishMutex. */
+    private Queue<Slot> overflow = new ArrayDeque<Slot>();
+    /** The number of events in the overflow queue. */
+    private volatile int overflowSize;
+    /** The sequence after the last published slot. */
+    private volatile long published;
+    /** The sequence after the last consumed slot. */
+    private volatile long consumed;
+    /** The flag set while the consumer is parked. */
+    private volatile boolean consumerWaiting;
+    /** The flag to check if the ring is stopped. */
+    private volatile boolean stopped;
+
+    /**
+     * Constructor. The consumer thread is started immediately.
+     * @param capacity the minimum number of slots, rounded up to a power of two.
+     * @param newHandler the handler of the events.
+     * @param threadFactory the factory of the consumer thread.
+     */
+    EventRing(int capacity, Handler newHandler, ThreadFactory threadFactory) {
+        ConnectorUtils.checkNotNull("handler", newHandler);
+        if (capacity < 1 || 1 << 30 < capacity) {
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^30.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        mask = size - 1;
+        handler = newHandler;
+        consumer = threadFactory.newThread(new Runnable() {
+            public void run() {
+                consume();
+            }
+        });
+        consumer.start();
+    }
+
+    /**
+     * Publishes a message event.
+     * @param event the message event.
+     * @param isReceived the message is a received type or not.
+     * @throws RejectedExecutionException if the ring is stopped.
+     */
+    void publish(ConnectorMessageEvent event, boolean isReceived) {
+        publish(event, isReceived, null);
+    }
+
+    /**
+     * Publishes a status change.
+     * @param status the new status.
+     * @throws RejectedExecutionException if the ring is stopped.
+     */
+    void publish(Status status) {
+        publish(null, false, status);
+    }
+
+    private void publish(ConnectorMessageEvent event, boolean isReceived, Status status) {
+        synchronized (publishMutex) {
+            if (stopped) {
+                throw new RejectedExecutionException("The event ring is stopped.");
+            }
+            long sequence = published;
+            if (overflowSize == 0 && sequence - consumed < slots.length) {
+                Slot slot = slots[(int)sequence & mask];
+                slot.event = event;
+                slot.isReceived = isReceived;
+                slot.status = status;
+                published = sequence + 1;
+            } else {
+                overflow.add(new Slot(event, isReceived, status));
+                overflowSize++;
+            }
+        }
+        if (consumerWaiting) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Gets the number of events waiting for the consumer.
+     * @return the queue depth.
+     */
+    int size() {
+        return (int)(published - consumed) + overflowSize;
+    }
+
+    /**
+     * Stops accepting events. The published events are still delivered.
+     */
+    void stop() {
+        synchronized (publishMutex) {
+            stopped = true;
+        }
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Waits for the consumer to deliver the events published before
+     * {@link #stop()}. Returns at once on the consumer thread itself.
+     * @param timeoutMillis the maximum time to wait in milliseconds.
+     * @throws InterruptedException if the current thread was interrupted.
+     */
+    void awaitStopped(long timeoutMillis) throws InterruptedException {
+        if (Thread.currentThread() != consumer) {
+            consumer.join(timeoutMillis);
+        }
+    }
+
+    private void consume() {
+        long next = consumed;
+        while (true) {
+            long available = published;
+            if (available == next) {
+                Queue<Slot> spilled = takeOverflow();
+                if (spilled != null) {
+                    for (Slot slot : spilled) {
+                        deliver(slot.event, slot.isReceived, slot.status);
+                    }
+                    continue;
+                }
+                if (stopped) {
+                    return;
+                }
+                consumerWaiting = true;
+                if (published == next && overflowSize == 0 && !stopped) {
+                    LockSupport.park(this);
+                }
+                consumerWaiting = false;
+                continue;
+            }
+            // deliver the whole batch, then release the slots at once
+            for (; next < available; next++) {
+                Slot slot = slots[(int)next & mask];
+                ConnectorMessageEvent event = slot.event;
+                boolean isReceived = slot.isReceived;
+                Status status = slot.status;
+                slot.event = null;
+                slot.status = null;
+                deliver(event, isReceived, status);
+            }
+            consumed = next;
+        }
+    }
+
+    /**
+     * Takes the whole overflow queue once the ring is drained. The events
+     * published later go to the ring again, after the taken ones.
+     * @return the spilled events or null if there are none.
+     */
+    private Queue<Slot> takeOverflow() {
+        synchronized (publishMutex) {
+            if (overflowSize == 0 || published != consumed) {
+                return null;
+            }
+            Queue<Slot> spilled = overflow;
+            overflow = new ArrayDeque<Slot>();
+            overflowSize = 0;
+            return spilled;
+        }
+    }
+
+    private void deliver(ConnectorMessageEvent event, boolean isReceived, Status status) {
+        try {
+            if (status != null) {
+                handler.statusChanged(status);
+            } else {
+                handler.messageEvent(event, isReceived);
+            }
+        } catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2006-2007 Koji Hisano <hisano@gmail.com> - UBION Inc. Developer
+ * Copyright (c) 2006-2007 UBION Inc. <http://www.ubion.co.jp/>
+ *
+ * Copyright (c) 2006-2007 Skype Technologies S.A. <http://www.skype.com/>
+ *
+ * Skype4Java is licensed under either the Apache License, Version 2.0 or
+ * the Eclipse Public License v1.0.
+ * You may use it freely in commercial and non-commercial products.
+ * You may obtain a copy of the licenses at
+ *
+ *   the Apache License - http://www.apache.org/licenses/LICENSE-2.0
+ *   the Eclipse Public License - http://www.eclipse.org/legal/epl-v10.html
+ *
+ * If it is possible to cooperate with the publicity of Skype4Java, please add
+ * links to the Skype4Java web site <https://developer.skype.com/wiki/Java_API>
+ * in your web site or documents.
+ *
+ * Contributors:
+ * Koji Hisano - initial API and implementation
+ ******************************************************************************/
+package com.skype.connector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads the missed chat messages of a connector.
+ * <p>
+ * The requests arriving within the debounce delay are coalesced into one
+ * scan, and only one scan runs at a time. A scan fires the RECEIVED event
+ * only for the messages above the highest message ID already fired, and
+ * sends the SEEN acknowledgements back-to-back before waiting for the replies.
+ * </p>
+ * @see Connector#requestMissedMessages()
+ * @see Connector#getMissedMessages()
+ */
+final class MissedMessageSynchronizer {
+    /** The connector to read the missed messages of. */
+    private final Connector connector;
+
+    /** The mutex object for scanning, so that only one scan runs at a time. */
+    private final Object scanMutex = new Object();
+    /** The highest message ID fired, guarded by scanMutex. */
+    private long highWaterMark = -1;
+
+    /** The flag to check if a scan is scheduled and not started yet. */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    /** The delay between the first request and the scan, in milliseconds. */
+    private volatile long debounceDelay = 200;
+    /** The thread running the requested scans, null until the first request. */
+    private ScheduledExecutorService scheduler;
+
+    /** The number of scans done. */
+    private final AtomicLong scanCount = new AtomicLong();
+    /** The number of requests coalesced into an already scheduled scan. */
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param newConnector the connector to read the missed messages of.
+     */
+    MissedMessageSynchronizer(Connector newConnector) {
+        this.connector = newConnector;
+    }
+
+    /**
+     * Sets the delay between the first request and the scan.
+     * @param delay the delay in milliseconds.
+     */
+    void setDebounceDelay(long delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("The debounce delay must not be negative.");
+        }
+        debounceDelay = delay;
+    }
+
+    /**
+     * Gets the delay between the first request and the scan.
+     * @return the delay in milliseconds.
+     */
+    long getDebounceDelay() {
+        return debounceDelay;
+    }
+
+    /**
+     * Requests a scan after the debounce delay, unless one is already
+     * scheduled. Returns immediately.
+     */
+    void request() {
+        if (!scheduled.compareAndSet(false, true)) {
+            coalescedCount.incrementAndGet();
+            return;
+        }
+        getScheduler().schedule(new Runnable() {
+            public void run() {
+                scheduled.set(false);
+                try {
+                    connector.getMissedMessages();
+                } catch (ConnectorException e) {
+                    // the next request scans again
+                    connector.debugPrintln("The missed messages cannot be read: " + e);
+                }
+            }
+        }, debounceDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "MissedMessageSynchronizer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Stops the thread running the requested scans. The scheduled scan is
+     * cancelled, a new request starts the thread again.
+     */
+    synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        scheduled.set(false);
+    }
+
+    /**
+     * Reads the missed messages now, waiting for a running scan to end first.
+     * @throws ConnectorException when the connection has gone bad.
+     */
+    void scan() throws ConnectorException {
+        synchronized (scanMutex) {
+            scanCount.incrementAndGet();
+            String responseHeader = "CHATMESSAGES ";
+            String response = connector.execute("SEARCH MISSEDMESSAGES", responseHeader);
+            if (response.startsWith("ERROR")) {
+                return;
+            }
+            String data = response.substring(responseHeader.length());
+            if ("".equals(data)) {
+                return;
+            }
+            String[] ids = data.split(", ");
+
+            List<Long> newIds = new ArrayList<Long>();
+            for (String id : ids) {
+                try {
+                    long value = Long.parseLong(id);
+                    if (highWaterMark < value) {
+                        newIds.add(value);
+                    }
+                } catch (NumberFormatException e) {
+                    // not a message ID
+                }
+            }
+            // the messages are fired in the order they were received
+            Collections.sort(newIds);
+            for (Long id : newIds) {
+                connector.fireMessageReceived("CHATMESSAGE " + id + " STATUS RECEIVED");
+                highWaterMark = id;
+            }
+
+            // all the listed messages are acknowledged, even those already fired
+            // whose acknowledgement was lost
+            CommandFuture[] acknowledgements = new CommandFuture[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                acknowledgements[i] = connector.executeWithIdAsync("SET CHATMESSAGE " + ids[i] + " SEEN", "CHATMESSAGE " + ids[i] + " ");
+            }
+            for (CommandFuture acknowledgement : acknowledgements) {
+                try {
+                    acknowledgement.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ConnectorException) {
+                        throw (ConnectorException)e.getCause();
+                    }
+                    throw new ConnectorException("The missed messages cannot be acknowledged.", e.getCause());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of scans done.
+     * @return the scan count.
+     */
+    long getScanCount() {
+        return scanCount.get();
+    }
+
+    /**
+     * Gets the number of requests coalesced into an already scheduled scan.
+     * @return the coalesced request count.
+     */
+    long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+}
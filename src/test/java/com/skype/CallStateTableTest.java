@@ -0,0 +1,100 @@
+package com.skype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CallStateTableTest {
+	private FakeConnector connector;
+
+	@Before
+	public void setUp() throws Exception {
+		connector = FakeConnector.install();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Skype.stopCallStateTable();
+		FakeConnector.uninstall();
+	}
+
+	@Test
+	public void onStart_ShouldAddActiveCalls() throws Exception {
+		connector.setResponse("SEARCH ACTIVECALLS", "CALLS 101, 102");
+		connector.setProperty("CALL", "101", "STATUS", "INPROGRESS");
+		connector.setProperty("CALL", "102", "STATUS", "ONHOLD");
+
+		CallStateTable table = Skype.getCallStateTable();
+
+		assertEquals(2, table.getCallCount());
+		assertEquals("101", table.getCalls(Call.Status.INPROGRESS)[0].getId());
+		assertEquals("102", table.getCalls(Call.Status.ONHOLD)[0].getId());
+	}
+
+	@Test
+	public void onNotifications_ShouldAnswerLocally() throws Exception {
+		connector.setResponse("SEARCH ACTIVECALLS", "CALLS ");
+		CallStateTable table = Skype.getCallStateTable();
+
+		connector.notify("CALL 201 STATUS RINGING");
+		connector.notify("CALL 201 PARTNER_HANDLE echo123");
+		connector.notify("CALL 201 STATUS INPROGRESS");
+		connector.notify("CALL 201 DURATION 42");
+		connector.notify("CALL 202 STATUS INPROGRESS");
+		connector.notify("CALL 202 STATUS FINISHED");
+		long deadline = System.currentTimeMillis() + 1000;
+		while ((table.getProperty("201", "DURATION") == null || table.getCallCount() != 1) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		connector.sentCommands.clear();
+
+		Call call = table.getCalls(Call.Status.INPROGRESS)[0];
+		assertEquals("201", call.getId());
+		assertEquals(Call.Status.INPROGRESS, call.getStatus());
+		assertEquals("echo123", call.getPartnerId());
+		assertEquals(42, call.getDuration());
+		assertEquals(1, table.getCallCount());
+		assertEquals(0, connector.sentCommands.size());
+	}
+
+	@Test
+	public void onCallFinishedWhileSeeding_ShouldNotKeepTheCall() throws Exception {
+		connector.setResponse("SEARCH ACTIVECALLS", "CALLS 301");
+		connector.setProperty("CALL", "301", "STATUS", "INPROGRESS");
+		connector.setNotificationBefore("GET CALL 301 STATUS", "CALL 301 STATUS FINISHED");
+
+		CallStateTable table = Skype.getCallStateTable();
+		long deadline = System.currentTimeMillis() + 1000;
+		while (table.getCallCount() != 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+
+		assertEquals(0, table.getCallCount());
+	}
+
+	@Test
+	public void onDetach_ShouldStopTheTableAndSeedANewOneOnNextGet() throws Exception {
+		connector.setResponse("SEARCH ACTIVECALLS", "CALLS 401");
+		connector.setProperty("CALL", "401", "STATUS", "INPROGRESS");
+		CallStateTable table = Skype.getCallStateTable();
+		assertEquals(1, table.getCallCount());
+
+		connector.dispose();
+		long deadline = System.currentTimeMillis() + 1000;
+		while (Skype.callStateTable != null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertNull(Skype.callStateTable);
+		assertEquals(0, table.getCallCount());
+
+		connector.connect();
+		connector.setProperty("CALL", "401", "STATUS", "ONHOLD");
+		CallStateTable reseeded = Skype.getCallStateTable();
+		assertNotSame(table, reseeded);
+		assertEquals("401", reseeded.getCalls(Call.Status.ONHOLD)[0].getId());
+	}
+}
@@ -0,0 +1,119 @@
+package com.skype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChatListenerMananagerTest {
+	private PropertyHydratorTest.SlowConnector connector;
+	private final ChatListenerMananager subject = new ChatListenerMananager();
+	private final List<String> events = new CopyOnWriteArrayList<String>();
+
+	@Before
+	public void setUp() throws Exception {
+		connector = PropertyHydratorTest.SlowConnector.install(3);
+		subject.addGlobalChatListener(new GlobalChatListener() {
+			public void newChatStarted(Chat chat, User[] users) {
+			}
+
+			public void userLeft(Chat chat, User user) {
+				events.add(chat.getId() + " left " + user.getId());
+			}
+
+			public void userAdded(Chat chat, User user) {
+				events.add(chat.getId() + " added " + user.getId());
+			}
+		});
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FakeConnector.uninstall();
+	}
+
+	@Test
+	public void onBurstOfJoinsAndLeaves_ShouldReadConcurrentlyAndFireInChatOrder() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			int id = 3001 + i * 3;
+			setMessage(id, "#a/$b;" + i, "ADDEDMEMBERS");
+			connector.setProperty("CHATMESSAGE", "" + id, "USERS", "bob carol");
+			setMessage(id + 1, "#a/$b;" + i, "SAID");
+			setMessage(id + 2, "#a/$b;" + i, "LEFT");
+			connector.setProperty("CHATMESSAGE", "" + (id + 2), "LEAVEREASON", "UNSUBSCRIBE");
+			connector.setProperty("CHATMESSAGE", "" + (id + 2), "FROM_HANDLE", "bob");
+		}
+
+		for (int id = 3001; id < 3031; id++) {
+			subject.chatMessageReceived(ChatMessage.getInstance("" + id));
+		}
+		long deadline = System.currentTimeMillis() + 2000;
+		while (events.size() < 30 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+
+		assertEquals(30, events.size());
+		for (int i = 0; i < 10; i++) {
+			String chat = "#a/$b;" + i;
+			int added = events.indexOf(chat + " added bob");
+			assertTrue(added >= 0);
+			assertTrue(added < events.indexOf(chat + " added carol"));
+			assertTrue(events.indexOf(chat + " added carol") < events.indexOf(chat + " left bob"));
+		}
+		assertTrue(connector.maxInFlight.get() > 1);
+	}
+
+	@Test
+	public void onChatListener_ShouldReceiveOnlyEventsOfItsChat() throws Exception {
+		final List<String> chatEvents = new CopyOnWriteArrayList<String>();
+		ChatListener listener = new ChatListener() {
+			public void userAdded(User user) {
+				chatEvents.add("added " + user.getId());
+			}
+
+			public void userLeft(User user) {
+				chatEvents.add("left " + user.getId());
+			}
+		};
+		subject.addChatListener(Chat.getInstance("#a/$b;1"), listener);
+		setMessage(4001, "#a/$b;1", "LEFT");
+		connector.setProperty("CHATMESSAGE", "4001", "LEAVEREASON", "UNSUBSCRIBE");
+		connector.setProperty("CHATMESSAGE", "4001", "FROM_HANDLE", "bob");
+		setMessage(4002, "#a/$b;2", "LEFT");
+		connector.setProperty("CHATMESSAGE", "4002", "LEAVEREASON", "UNSUBSCRIBE");
+		connector.setProperty("CHATMESSAGE", "4002", "FROM_HANDLE", "carol");
+
+		subject.chatMessageReceived(ChatMessage.getInstance("4001"));
+		subject.chatMessageReceived(ChatMessage.getInstance("4002"));
+		long deadline = System.currentTimeMillis() + 2000;
+		while (events.size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+
+		assertEquals(2, events.size());
+		assertEquals("[left bob]", chatEvents.toString());
+
+		subject.removeChatListener(Chat.getInstance("#a/$b;1"), listener);
+		setMessage(4003, "#a/$b;1", "LEFT");
+		connector.setProperty("CHATMESSAGE", "4003", "LEAVEREASON", "UNSUBSCRIBE");
+		connector.setProperty("CHATMESSAGE", "4003", "FROM_HANDLE", "dave");
+		subject.chatMessageReceived(ChatMessage.getInstance("4003"));
+		deadline = System.currentTimeMillis() + 2000;
+		while (events.size() < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+
+		assertEquals(3, events.size());
+		assertEquals("[left bob]", chatEvents.toString());
+	}
+
+	private void setMessage(int id, String chatName, String type) {
+		connector.setProperty("CHATMESSAGE", "" + id, "CHATNAME", chatName);
+		connector.setProperty("CHATMESSAGE", "" + id, "TYPE", type);
+	}
+}
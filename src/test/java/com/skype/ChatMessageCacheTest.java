@@ -0,0 +1,131 @@
+package com.skype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChatMessageCacheTest {
+	private FakeConnector connector;
+
+	@Before
+	public void setUp() throws Exception {
+		connector = FakeConnector.install();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ChatMessage.setNotified(false);
+		FakeConnector.uninstall();
+	}
+
+	@Test
+	public void onImmutableProperty_ShouldSendGetOnlyOnce() throws Exception {
+		connector.setProperty("CHATMESSAGE", "1001", "FROM_HANDLE", "echo123");
+		ChatMessage message = ChatMessage.getInstance("1001");
+
+		assertEquals("echo123", message.getSenderId());
+		assertEquals("echo123", message.getSenderId());
+
+		assertEquals(1, connector.countSentCommands("GET CHATMESSAGE 1001 FROM_HANDLE"));
+	}
+
+	@Test
+	public void onContentWithoutNotifications_ShouldSendGetForEveryCall() throws Exception {
+		connector.setProperty("CHATMESSAGE", "1002", "BODY", "hello");
+		ChatMessage message = ChatMessage.getInstance("1002");
+
+		message.getContent();
+		message.getContent();
+
+		assertEquals(2, connector.countSentCommands("GET CHATMESSAGE 1002 BODY"));
+	}
+
+	@Test
+	public void onLastEditListenerRemoved_ShouldStopCachingContent() throws Exception {
+		ChatMessageEditListener listener = new ChatMessageEditListener() {
+			public void chatMessageEdited(ChatMessage editedMessage, Date when, User who) {
+			}
+		};
+		connector.setProperty("CHATMESSAGE", "1006", "BODY", "hello");
+		ChatMessage message = ChatMessage.getInstance("1006");
+		Skype.addChatMessageEditListener(listener);
+		message.getContent();
+		message.getContent();
+		assertEquals(1, connector.countSentCommands("GET CHATMESSAGE 1006 BODY"));
+
+		Skype.removeChatMessageEditListener(listener);
+		message.getContent();
+
+		assertEquals(2, connector.countSentCommands("GET CHATMESSAGE 1006 BODY"));
+	}
+
+	@Test
+	public void onContentNotifications_ShouldUpdateAndInvalidateCachedContent() throws Exception {
+		ChatMessage.setNotified(true);
+		ChatMessageEditConnectorListener listener = new ChatMessageEditConnectorListener();
+		connector.setProperty("CHATMESSAGE", "1003", "BODY", "hello");
+		ChatMessage message = ChatMessage.getInstance("1003");
+		assertEquals("hello", message.getContent());
+
+		listener.processMessage("CHATMESSAGE 1003 BODY hello again");
+		assertEquals("hello again", message.getContent());
+		assertEquals(1, connector.countSentCommands("GET CHATMESSAGE 1003 BODY"));
+
+		listener.processMessage("CHATMESSAGE 1003 EDITED_TIMESTAMP 1340851521");
+		connector.setProperty("CHATMESSAGE", "1003", "BODY", "edited");
+		assertEquals("edited", message.getContent());
+		assertEquals(2, connector.countSentCommands("GET CHATMESSAGE 1003 BODY"));
+	}
+
+	@Test
+	public void onHydrate_ShouldFetchMissingPropertiesOfAllMessagesAtOnce() throws Exception {
+		ChatMessage first = ChatMessage.getInstance("1004");
+		ChatMessage second = ChatMessage.getInstance("1005");
+		for (String id : new String[] {"1004", "1005"}) {
+			connector.setProperty("CHATMESSAGE", id, "TIMESTAMP", "1340851521");
+			connector.setProperty("CHATMESSAGE", id, "FROM_HANDLE", "echo123");
+			connector.setProperty("CHATMESSAGE", id, "FROM_DISPNAME", "Echo");
+			connector.setProperty("CHATMESSAGE", id, "TYPE", "SAID");
+			connector.setProperty("CHATMESSAGE", id, "CHATNAME", "#echo123/$foo;1");
+			connector.setProperty("CHATMESSAGE", id, "USERS", "");
+			connector.setProperty("CHATMESSAGE", id, "LEAVEREASON", "UNSUBSCRIBE");
+		}
+		assertEquals("echo123", first.getSenderId());
+		connector.sentCommands.clear();
+
+		ChatMessage.hydrate(first, second);
+		assertEquals(13, connector.sentCommands.size());
+
+		assertEquals(ChatMessage.Type.SAID, first.getType());
+		assertEquals("Echo", second.getSenderDisplayName());
+		assertEquals("#echo123/$foo;1", second.getChat().getId());
+		assertEquals(13, connector.sentCommands.size());
+	}
+
+	@Test
+	public void onHydrateManyMessages_ShouldKeepToTheHydrationWindow() throws Exception {
+		PropertyHydratorTest.SlowConnector slow = PropertyHydratorTest.SlowConnector.install(1);
+		ChatMessage[] messages = new ChatMessage[30];
+		for (int i = 0; i < messages.length; i++) {
+			String id = "" + (1100 + i);
+			slow.setProperty("CHATMESSAGE", id, "FROM_HANDLE", "echo123");
+			messages[i] = ChatMessage.getInstance(id);
+		}
+		Skype.setHydrationWindow(4);
+		try {
+			ChatMessage.hydrate(messages);
+		} finally {
+			Skype.setHydrationWindow(32);
+		}
+
+		assertTrue(slow.maxInFlight.get() <= 4);
+		slow.sentCommands.clear();
+		assertEquals("echo123", messages[29].getSenderId());
+		assertEquals(0, slow.sentCommands.size());
+	}
+}
@@ -0,0 +1,87 @@
+package com.skype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChatMessageCursorTest {
+	private FakeConnector connector;
+
+	@Before
+	public void setUp() throws Exception {
+		connector = FakeConnector.install();
+		for (int i = 2001; i <= 2005; i++) {
+			connector.setProperty("CHATMESSAGE", "" + i, "FROM_HANDLE", "sender" + i);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FakeConnector.uninstall();
+	}
+
+	@Test
+	public void onChatCursor_ShouldReturnMessagesInClientOrderPageByPage() throws Exception {
+		connector.setProperty("CHAT", "#alice/$bob;1", "CHATMESSAGES", "2001, 2002, 2003, 2004, 2005");
+
+		ChatMessageCursor cursor = Chat.getInstance("#alice/$bob;1").getChatMessageCursor(2);
+
+		assertEquals("[2001, 2002, 2003, 2004, 2005]", readIds(cursor).toString());
+		try {
+			cursor.next();
+			fail("the cursor should be exhausted");
+		} catch (NoSuchElementException e) {
+		}
+	}
+
+	@Test
+	public void onUserCursor_ShouldReturnMessagesFromTheLast() throws Exception {
+		connector.setResponse("SEARCH CHATMESSAGES alice", "CHATMESSAGES 2001, 2002, 2003");
+
+		ChatMessageCursor cursor = User.getInstance("alice").getChatMessageCursor(2);
+
+		assertEquals("[2003, 2002, 2001]", readIds(cursor).toString());
+	}
+
+	@Test
+	public void onEmptyHistory_ShouldHaveNoMessage() throws Exception {
+		connector.setResponse("SEARCH CHATMESSAGES nobody", "CHATMESSAGES ");
+
+		assertFalse(User.getInstance("nobody").getChatMessageCursor().hasNext());
+	}
+
+	@Test
+	public void onNextPage_ShouldReturnMessagesWithPropertiesRead() throws Exception {
+		connector.setProperty("CHAT", "#carol/$dave;1", "CHATMESSAGES", "2001, 2002, 2003, 2004");
+		ChatMessageCursor cursor = Chat.getInstance("#carol/$dave;1").getChatMessageCursor(2);
+
+		ChatMessage[] first = cursor.nextPage();
+		ChatMessage[] second = cursor.nextPage();
+		assertFalse(cursor.hasNext());
+		connector.sentCommands.clear();
+
+		assertEquals(2, first.length);
+		assertEquals(2, second.length);
+		assertEquals("sender2001", first[0].getSenderId());
+		assertEquals("sender2004", second[1].getSenderId());
+		assertEquals(0, connector.countSentCommands("GET CHATMESSAGE"));
+	}
+
+	private static List<String> readIds(ChatMessageCursor cursor) throws SkypeException {
+		List<String> ids = new ArrayList<String>();
+		while (cursor.hasNext()) {
+			ids.add(cursor.next().getId());
+		}
+		assertTrue(ids.size() > 0);
+		return ids;
+	}
+}
@@ -3,6 +3,8 @@ package com.skype;
 import static org.junit.Assert.assertEquals;
 
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
@@ -37,4 +39,106 @@ public class ChatMessageEditConnectorListenerTest {
 		assertEquals(user.getId(), actualWho.get().getId());
 		assertEquals("1045193", actualEdited.get().getId());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void onBodyOfCompleteEdit_ShouldCountCompletedAndForgetTheEdit() {
+		ChatMessageEditConnectorListener subject = new ChatMessageEditConnectorListener();
+		subject.processMessage("CHATMESSAGE 1045194 EDITED_TIMESTAMP 1340851521");
+		subject.processMessage("CHATMESSAGE 1045194 EDITED_BY manhoso");
+		assertEquals(1, subject.getPendingEditCount());
+
+		subject.processMessage("CHATMESSAGE 1045194 BODY fixed");
+		subject.processMessage("CHATMESSAGE 1045194 BODY fixed again");
+
+		assertEquals(1, subject.getCompletedEditCount());
+		assertEquals(0, subject.getPendingEditCount());
+	}
+
+	@Test
+	public void onEditWithoutBody_ShouldExpireAndNotFire() throws Exception {
+		ChatMessageEditConnectorListener subject = new ChatMessageEditConnectorListener();
+		final AtomicInteger fired = new AtomicInteger();
+		subject.addListener(new ChatMessageEditListener() {
+			@Override
+			public void chatMessageEdited(ChatMessage editedMessage, Date when, User who) {
+				fired.incrementAndGet();
+			}
+		});
+		subject.setEditExpiry(10, TimeUnit.MILLISECONDS);
+		subject.processMessage("CHATMESSAGE 1045195 EDITED_TIMESTAMP 1340851521");
+		subject.processMessage("CHATMESSAGE 1045196 EDITED_TIMESTAMP 1340851521");
+		Thread.sleep(30);
+
+		subject.processMessage("CHATMESSAGE 1045197 STATUS READ");
+		assertEquals(0, subject.getPendingEditCount());
+		assertEquals(2, subject.getExpiredEditCount());
+
+		subject.processMessage("CHATMESSAGE 1045195 BODY too late");
+		assertEquals(0, fired.get());
+		assertEquals(0, subject.getCompletedEditCount());
+	}
+
+	@Test
+	public void onConcurrentEdits_ShouldFireEachEditOnce() throws Exception {
+		final ChatMessageEditConnectorListener subject = new ChatMessageEditConnectorListener();
+		final AtomicInteger fired = new AtomicInteger();
+		subject.addListener(new ChatMessageEditListener() {
+			@Override
+			public void chatMessageEdited(ChatMessage editedMessage, Date when, User who) {
+				if (when != null && who != null)
+					fired.incrementAndGet();
+			}
+		});
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int first = 1046000 + t * 250;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int id = first; id < first + 250; id++) {
+						subject.processMessage("CHATMESSAGE " + id + " EDITED_TIMESTAMP 1340851521");
+						subject.processMessage("CHATMESSAGE " + id + " EDITED_BY manhoso");
+						subject.processMessage("CHATMESSAGE " + id + " BODY edited");
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(1000, fired.get());
+		assertEquals(1000, subject.getCompletedEditCount());
+		assertEquals(0, subject.getPendingEditCount());
+	}
+
+	@Test
+	public void onEditsNotifiedThroughSkype_ShouldBeCountedByPublicTracker() throws Exception {
+		FakeConnector connector = FakeConnector.install();
+		ChatMessageEditListener listener = new ChatMessageEditListener() {
+			@Override
+			public void chatMessageEdited(ChatMessage editedMessage, Date when, User who) {
+			}
+		};
+		try {
+			Skype.addChatMessageEditListener(listener);
+			ChatMessageEditConnectorListener tracker = Skype.getChatMessageEditTracker();
+			tracker.setEditExpiry(5, TimeUnit.MINUTES);
+			long completed = tracker.getCompletedEditCount();
+
+			connector.notify("CHATMESSAGE 1047001 EDITED_TIMESTAMP 1340851521");
+			connector.notify("CHATMESSAGE 1047001 EDITED_BY manhoso");
+			connector.notify("CHATMESSAGE 1047001 BODY edited");
+			long deadline = System.currentTimeMillis() + 1000;
+			while (tracker.getCompletedEditCount() == completed && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+
+			assertEquals(completed + 1, tracker.getCompletedEditCount());
+			assertEquals(0, tracker.getPendingEditCount());
+		} finally {
+			Skype.removeChatMessageEditListener(listener);
+			FakeConnector.uninstall();
+		}
+	}
+}
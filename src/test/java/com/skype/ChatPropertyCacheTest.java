@@ -0,0 +1,83 @@
+package com.skype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChatPropertyCacheTest {
+	private FakeConnector connector;
+
+	@Before
+	public void setUp() throws Exception {
+		connector = FakeConnector.install();
+		Chat.setPropertyCacheEnabled(true);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Chat.setPropertyCacheEnabled(false);
+		FakeConnector.uninstall();
+	}
+
+	private Chat createChat(String id) {
+		connector.setProperty("CHAT", id, "MEMBERS", "echo123 foo");
+		connector.setProperty("CHAT", id, "ACTIVEMEMBERS", "echo123");
+		connector.setProperty("CHAT", id, "POSTERS", "");
+		connector.setProperty("CHAT", id, "TOPIC", "Lunch");
+		connector.setProperty("CHAT", id, "STATUS", "MULTI_SUBSCRIBED");
+		connector.setProperty("CHAT", id, "FRIENDLYNAME", "Lunch | echo123");
+		return Chat.getInstance(id);
+	}
+
+	@Test
+	public void onCacheEnabled_ShouldReadAllPropertiesInOneBatch() throws Exception {
+		Chat chat = createChat("#echo123/$cache;1");
+		connector.sentCommands.clear();
+
+		assertEquals(2, chat.getAllMembers().length);
+		assertTrue(chat.isMember(User.getInstance("foo")));
+		assertEquals(1, chat.getAllActiveMembers().length);
+		assertEquals(0, chat.getAllPosters().length);
+		assertEquals("Lunch", chat.getTopic());
+		assertEquals(Chat.Status.MULTI_SUBSCRIBED, chat.getStatus());
+		assertEquals("Lunch | echo123", chat.getWindowTitle());
+
+		assertEquals(6, connector.sentCommands.size());
+	}
+
+	@Test
+	public void onMembersNotification_ShouldUpdateMembersLocally() throws Exception {
+		final Chat chat = createChat("#echo123/$notified;1");
+		assertFalse(chat.isMember(User.getInstance("bar")));
+		connector.sentCommands.clear();
+
+		connector.notify("CHAT #echo123/$notified;1 MEMBERS echo123 foo bar");
+		connector.notify("CHAT #echo123/$notified;1 TOPIC Dinner");
+
+		long deadline = System.currentTimeMillis() + 1000;
+		while (!"Dinner".equals(chat.getTopic()) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(chat.isMember(User.getInstance("bar")));
+		assertEquals(3, chat.getAllMembers().length);
+		assertEquals(0, connector.sentCommands.size());
+	}
+
+	@Test
+	public void onMemberAddedAndLeft_ShouldUpdateMembersLocally() throws Exception {
+		Chat chat = createChat("#echo123/$events;1");
+		chat.getAllMembers();
+		connector.sentCommands.clear();
+
+		chat.memberAdded(User.getInstance("bar"));
+		chat.memberLeft(User.getInstance("foo"));
+
+		assertTrue(chat.isMember(User.getInstance("bar")));
+		assertFalse(chat.isMember(User.getInstance("foo")));
+		assertEquals(0, connector.sentCommands.size());
+	}
+}
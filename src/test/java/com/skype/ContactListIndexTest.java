@@ -0,0 +1,123 @@
+package com.skype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContactListIndexTest {
+	private FakeConnector connector;
+	private final ContactListIndex subject = new ContactListIndex();
+
+	@Before
+	public void setUp() throws Exception {
+		connector = FakeConnector.install();
+		connector.setResponse("SEARCH FRIENDS", "USERS alice, bob");
+		connector.setResponse("SEARCH GROUPS CUSTOM", "GROUPS 10");
+		connector.setResponse("SEARCH GROUPS HARDWIRED", "GROUPS 1");
+		connector.setProperty("GROUP", "10", "DISPLAYNAME", "Work");
+		connector.setProperty("GROUP", "10", "USERS", "alice");
+		connector.setProperty("GROUP", "1", "USERS", "alice, bob");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FakeConnector.uninstall();
+	}
+
+	@Test
+	public void onLookups_ShouldBuildIndexOnceWithPipelinedCommands() throws Exception {
+		connector.sentCommands.clear();
+
+		assertNotNull(subject.getFriend("alice"));
+		assertNull(subject.getFriend("carol"));
+		assertEquals("10", subject.getGroup("Work").getId());
+		assertEquals(2, subject.getAllFriends().length);
+		assertEquals("[alice, bob]", subject.getMemberIds(Group.getInstance("1")).toString());
+
+		assertEquals(6, connector.sentCommands.size());
+	}
+
+	@Test
+	public void onNotifications_ShouldUpdateIndexWithoutCommands() throws Exception {
+		subject.getFriend("alice");
+		connector.sentCommands.clear();
+
+		connector.notify("USER carol BUDDYSTATUS 3");
+		connector.notify("USER bob BUDDYSTATUS 1");
+		connector.notify("GROUP 10 USERS alice, carol");
+		connector.notify("GROUP 10 DISPLAYNAME Office");
+		connector.notify("DELETED GROUP 1");
+
+		long deadline = System.currentTimeMillis() + 1000;
+		while (!isUpdated() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertNotNull(subject.getFriend("carol"));
+		assertNull(subject.getFriend("bob"));
+		assertEquals("[alice, carol]", subject.getMemberIds(Group.getInstance("10")).toString());
+		assertNull(subject.getGroup("Work"));
+		assertEquals("10", subject.getGroup("Office").getId());
+		assertEquals(0, connector.sentCommands.size());
+	}
+
+	@Test
+	public void onUnknownGroup_ShouldBuildIndexAgain() throws Exception {
+		subject.getFriend("alice");
+		connector.setResponse("SEARCH GROUPS CUSTOM", "GROUPS 10, 11");
+		connector.setProperty("GROUP", "11", "DISPLAYNAME", "Family");
+		connector.setProperty("GROUP", "11", "USERS", "");
+
+		connector.notify("GROUP 11 TYPE CUSTOM_GROUP");
+
+		long deadline = System.currentTimeMillis() + 1000;
+		while (subject.getGroup("Family") == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals("11", subject.getGroup("Family").getId());
+	}
+
+	@Test
+	public void onGroupUsersNotification_ShouldUpdateGroupsOfUsers() throws Exception {
+		assertEquals(2, subject.getGroups(User.getInstance("alice")).length);
+		assertEquals(1, subject.getGroups(User.getInstance("bob")).length);
+
+		connector.notify("GROUP 1 USERS alice");
+
+		long deadline = System.currentTimeMillis() + 1000;
+		while (subject.getGroups(User.getInstance("bob")).length != 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(0, subject.getGroups(User.getInstance("bob")).length);
+		assertEquals(2, subject.getGroups(User.getInstance("alice")).length);
+		assertEquals(0, subject.getGroups(User.getInstance("carol")).length);
+	}
+
+	@Test
+	public void onNumberOfUsersMismatch_ShouldReadMembersAgain() throws Exception {
+		Group group = Group.getInstance("10");
+		assertEquals("[alice]", subject.getMemberIds(group).toString());
+		connector.setProperty("GROUP", "10", "USERS", "alice, bob");
+		connector.sentCommands.clear();
+
+		connector.notify("GROUP 10 NROFUSERS 1");
+		connector.notify("GROUP 10 NROFUSERS 2");
+
+		long deadline = System.currentTimeMillis() + 1000;
+		while (!subject.getMemberIds(group).contains("bob") && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals("[alice, bob]", subject.getMemberIds(group).toString());
+		assertEquals(1, connector.countSentCommands("GET GROUP 10 USERS"));
+		assertEquals(2, subject.getGroups(User.getInstance("bob")).length);
+	}
+
+	private boolean isUpdated() throws SkypeException {
+		return subject.getFriend("carol") != null && subject.getFriend("bob") == null
+				&& subject.getGroup("Office") != null && subject.getMemberIds(Group.getInstance("1")) == null
+				&& subject.getMemberIds(Group.getInstance("10")).contains("carol");
+	}
+}
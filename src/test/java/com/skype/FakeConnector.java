@@ -0,0 +1,102 @@
+package com.skype;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.skype.connector.Connector;
+import com.skype.connector.ConnectorException;
+
+/**
+ * Connector answering GET commands from a property table, installed as the
+ * connector instance for the tests of the Skype objects.
+ */
+class FakeConnector extends Connector {
+	/** The property values keyed by "TYPE id NAME". */
+	final Map<String, String> properties = new ConcurrentHashMap<String, String>();
+	/** The responses of the other commands keyed by command. */
+	final Map<String, String> responses = new ConcurrentHashMap<String, String>();
+	/** The notifications fired before the response of a command, keyed by command. */
+	final Map<String, String> notificationsBefore = new ConcurrentHashMap<String, String>();
+	final List<String> sentCommands = new CopyOnWriteArrayList<String>();
+
+	static FakeConnector install() throws ConnectorException {
+		FakeConnector connector = new FakeConnector();
+		setInstance(connector);
+		connector.connect();
+		return connector;
+	}
+
+	static void uninstall() throws ConnectorException {
+		setInstance(null);
+	}
+
+	void setProperty(String type, String id, String name, String value) {
+		properties.put(type + " " + id + " " + name, value);
+	}
+
+	void setResponse(String command, String response) {
+		responses.put(command, response);
+	}
+
+	void setNotificationBefore(String command, String notification) {
+		notificationsBefore.put(command, notification);
+	}
+
+	int countSentCommands(String prefix) {
+		int count = 0;
+		for (String command : sentCommands) {
+			if (command.replaceFirst("^#\\d+ ", "").startsWith(prefix)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	void notify(String message) {
+		fireMessageReceived(message);
+	}
+
+	@Override
+	protected void initializeImpl() throws ConnectorException {
+	}
+
+	@Override
+	protected Status connect(int timeout) throws ConnectorException {
+		setStatus(Status.ATTACHED);
+		return Status.ATTACHED;
+	}
+
+	@Override
+	protected void disposeImpl() throws ConnectorException {
+	}
+
+	@Override
+	protected void sendCommand(String command) {
+		sentCommands.add(command);
+		String id = "";
+		if (command.startsWith("#")) {
+			id = command.substring(0, command.indexOf(' ') + 1);
+			command = command.substring(id.length());
+		}
+		if (notificationsBefore.containsKey(command)) {
+			fireMessageReceived(notificationsBefore.get(command));
+		}
+		if (responses.containsKey(command)) {
+			fireMessageReceived(id + responses.get(command));
+		} else if (command.startsWith("GET ")) {
+			String key = command.substring("GET ".length());
+			String value = properties.get(key);
+			if (value == null) {
+				fireMessageReceived(id + "ERROR 7 GET: invalid WHAT");
+			} else {
+				fireMessageReceived(id + key + " " + value);
+			}
+		} else if (command.startsWith("SET ")) {
+			fireMessageReceived(id + command.substring("SET ".length()));
+		} else {
+			fireMessageReceived(id + command);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.skype;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to read 5 properties of 20 users from a simulated client
+ * answering after a fixed latency, with the naive getter loop and with
+ * {@link Skype#hydrate(Object[], String...)} before the loop.
+ * Run it with <tt>java com.skype.PropertyHydratorBenchmark [latencyMillis]</tt>.
+ */
+public class PropertyHydratorBenchmark {
+	private static final int USERS = 20;
+
+	public static void main(String[] args) throws Exception {
+		long latencyMillis = args.length == 0 ? 5 : Long.parseLong(args[0]);
+		PropertyHydratorTest.SlowConnector connector = PropertyHydratorTest.SlowConnector.install(latencyMillis);
+		User.setPropertyCacheEnabled(true);
+		try {
+			for (int round = 0; round < 3; round++) {
+				User[] naive = PropertyHydratorTest.createUsers(connector, "naive" + round + "_", USERS);
+				User[] hydrated = PropertyHydratorTest.createUsers(connector, "bulk" + round + "_", USERS);
+
+				long start = System.nanoTime();
+				PropertyHydratorTest.readAll(naive);
+				long naiveMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+				start = System.nanoTime();
+				Skype.hydrate(hydrated, PropertyHydratorTest.PROPERTIES);
+				PropertyHydratorTest.readAll(hydrated);
+				long hydrateMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+				System.out.println("round " + (round + 1) + ": " + USERS + " users x " + PropertyHydratorTest.PROPERTIES.length
+						+ " properties, " + latencyMillis + " ms latency: naive loop " + naiveMillis + " ms, hydrate " + hydrateMillis + " ms");
+			}
+		} finally {
+			User.setPropertyCacheEnabled(false);
+			connector.dispose();
+			FakeConnector.uninstall();
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package com.skype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.skype.connector.ConnectorException;
+
+public class PropertyHydratorTest {
+	/**
+	 * Simulated client answering each command after a fixed latency.
+	 */
+	static class SlowConnector extends FakeConnector {
+		private final ScheduledExecutorService timer = Executors.newScheduledThreadPool(4);
+		private final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		private final long latencyMillis;
+
+		SlowConnector(long latencyMillis) {
+			this.latencyMillis = latencyMillis;
+		}
+
+		static SlowConnector install(long latencyMillis) throws ConnectorException {
+			SlowConnector connector = new SlowConnector(latencyMillis);
+			setInstance(connector);
+			connector.connect();
+			return connector;
+		}
+
+		@Override
+		protected void sendCommand(final String command) {
+			int count = inFlight.incrementAndGet();
+			while (true) {
+				int max = maxInFlight.get();
+				if (count <= max || maxInFlight.compareAndSet(max, count)) {
+					break;
+				}
+			}
+			timer.schedule(new Runnable() {
+				public void run() {
+					inFlight.decrementAndGet();
+					SlowConnector.super.sendCommand(command);
+				}
+			}, latencyMillis, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		protected void disposeImpl() throws ConnectorException {
+			timer.shutdownNow();
+		}
+	}
+
+	static final String[] PROPERTIES = {"FULLNAME", "DISPLAYNAME", "MOOD_TEXT", "CITY", "COUNTRY"};
+
+	@Before
+	public void setUp() throws Exception {
+		FakeConnector.install();
+		User.setPropertyCacheEnabled(true);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		User.setPropertyCacheEnabled(false);
+		FakeConnector.uninstall();
+	}
+
+	@Test
+	public void onHydrate_ShouldCacheMissingPropertiesWithinWindow() throws Exception {
+		SlowConnector connector = install(2);
+		User[] users = createUsers(connector, "hydrated", 20);
+		connector.properties.remove("USER hydrated0 CITY");
+		users[1].getFullName();
+		connector.sentCommands.clear();
+
+		int sent = new PropertyHydrator(8).hydrate(users, PROPERTIES);
+
+		assertEquals(20 * PROPERTIES.length - 1, sent);
+		assertTrue(connector.maxInFlight.get() <= 8);
+		connector.sentCommands.clear();
+		for (int i = 0; i < users.length; i++) {
+			assertEquals("Name " + i, users[i].getFullName());
+			assertEquals("Mood " + i, users[i].getMoodMessage());
+		}
+		assertEquals(0, connector.sentCommands.size());
+	}
+
+	@Test
+	public void onHydrateWithCacheDisabled_ShouldSendNothing() throws Exception {
+		FakeConnector connector = FakeConnector.install();
+		User.setPropertyCacheEnabled(false);
+		User[] users = createUsers(connector, "uncached", 3);
+		connector.sentCommands.clear();
+
+		Skype.hydrate(users, PROPERTIES);
+
+		assertEquals(0, connector.sentCommands.size());
+	}
+
+	@Test
+	public void onHydrateOtherObjects_ShouldThrow() throws Exception {
+		try {
+			Skype.hydrate(new Object[] {"foo"}, "FULLNAME");
+			fail("a string is not a Skype object");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void onSkypeHydrate_ShouldSendEachMissingPropertyOnceWithinConfiguredWindow() throws Exception {
+		SlowConnector connector = install(1);
+		User[] users = createUsers(connector, "windowed", 20);
+		connector.sentCommands.clear();
+		Skype.setHydrationWindow(4);
+		try {
+			Skype.hydrate(users, PROPERTIES);
+		} finally {
+			Skype.setHydrationWindow(32);
+		}
+
+		assertEquals(20 * PROPERTIES.length, connector.sentCommands.size());
+		assertTrue(connector.maxInFlight.get() <= 4);
+		connector.sentCommands.clear();
+		readAll(users);
+		assertEquals(0, connector.sentCommands.size());
+	}
+
+	@Test
+	public void onStart_ShouldReturnBeforeRepliesAndSendTheRestFromCallbacks() throws Exception {
+		SlowConnector connector = install(200);
+		User[] users = createUsers(connector, "started", 5);
+		connector.sentCommands.clear();
+
+		PropertyHydrator.Hydration hydration = new PropertyHydrator(4).start(users, PROPERTIES);
+
+		assertEquals(0, connector.sentCommands.size());
+		assertEquals(5 * PROPERTIES.length, hydration.await());
+		assertTrue(connector.maxInFlight.get() <= 4);
+		connector.sentCommands.clear();
+		readAll(users);
+		assertEquals(0, connector.sentCommands.size());
+	}
+
+	private static SlowConnector install(long latencyMillis) throws Exception {
+		SlowConnector connector = SlowConnector.install(latencyMillis);
+		User.setPropertyCacheEnabled(false);
+		User.setPropertyCacheEnabled(true);
+		return connector;
+	}
+
+	static User[] createUsers(FakeConnector connector, String prefix, int count) {
+		User[] users = new User[count];
+		for (int i = 0; i < count; i++) {
+			String id = prefix + i;
+			connector.setProperty("USER", id, "FULLNAME", "Name " + i);
+			connector.setProperty("USER", id, "DISPLAYNAME", "Display " + i);
+			connector.setProperty("USER", id, "MOOD_TEXT", "Mood " + i);
+			connector.setProperty("USER", id, "CITY", "City " + i);
+			connector.setProperty("USER", id, "COUNTRY", "jp Japan");
+			users[i] = User.getInstance(id);
+		}
+		return users;
+	}
+
+	static void readAll(User[] users) throws SkypeException {
+		for (User user : users) {
+			user.getFullName();
+			user.getDisplayName();
+			user.getMoodMessage();
+			user.getCity();
+			user.getCountry();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.skype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RecentIdSetTest {
+	@Test
+	public void onAddTwice_ShouldReportDuplicate() {
+		RecentIdSet subject = new RecentIdSet(64);
+
+		assertTrue(subject.add(16649));
+		assertFalse(subject.add(16649));
+		assertTrue(subject.contains(16649));
+		assertFalse(subject.contains(16650));
+	}
+
+	@Test
+	public void onIdsBeyondCapacity_ShouldForgetOldestAsTooOld() {
+		RecentIdSet subject = new RecentIdSet(64);
+
+		for (int id = 0; id < 200; id++) {
+			assertTrue(subject.add(id));
+		}
+
+		assertEquals(64, subject.getCapacity());
+		assertFalse(subject.add(10));
+		assertTrue(subject.contains(10));
+		assertFalse(subject.add(199));
+		assertTrue(subject.add(1000));
+	}
+
+	@Test
+	public void onConcurrentAdds_ShouldAcceptEachIdOnce() throws Exception {
+		final RecentIdSet subject = new RecentIdSet(4096);
+		final AtomicInteger accepted = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int id = 0; id < 4096; id++) {
+						if (subject.add(id)) {
+							accepted.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(4096, accepted.get());
+	}
+}
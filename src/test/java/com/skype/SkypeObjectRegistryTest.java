@@ -0,0 +1,92 @@
+package com.skype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class SkypeObjectRegistryTest {
+	private static final SkypeObjectRegistry.Factory<SkypeObject> FACTORY = new SkypeObjectRegistry.Factory<SkypeObject>() {
+		public SkypeObject create(String id) {
+			return new SkypeObject();
+		}
+	};
+
+	@Test
+	public void onGetInstance_ShouldReturnSameObjectAndCountHitsAndMisses() {
+		SkypeObjectRegistry<SkypeObject> subject = new SkypeObjectRegistry<SkypeObject>(0);
+
+		SkypeObject first = subject.getInstance("1", FACTORY);
+		SkypeObject second = subject.getInstance("1", FACTORY);
+		subject.getInstance("2", FACTORY);
+
+		assertSame(first, second);
+		assertEquals(2, subject.getSize());
+		assertEquals(1, subject.getHitCount());
+		assertEquals(2, subject.getMissCount());
+	}
+
+	@Test
+	public void onUnreachableObjects_ShouldEvictAllButTheRecentOnes() throws Exception {
+		SkypeObjectRegistry<SkypeObject> subject = new SkypeObjectRegistry<SkypeObject>(1);
+		WeakReference<SkypeObject> old = new WeakReference<SkypeObject>(subject.getInstance("old", FACTORY));
+		subject.getInstance("recent", FACTORY);
+
+		for (int i = 0; i < 50 && old.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertNull(old.get());
+		assertEquals(1, subject.getSize());
+		assertEquals(1, subject.getEvictionCount());
+		assertNotNull(subject.get("recent"));
+	}
+
+	@Test
+	public void onFriendUpgradeRacingGetInstance_ShouldLeaveOneObjectPerId() throws Exception {
+		final int count = 2000;
+		final Friend[] friends = new Friend[count];
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread upgrader = new Thread() {
+			@Override
+			public void run() {
+				await(start);
+				for (int i = 0; i < count; i++) {
+					friends[i] = User.getFriendInstance("upgraded" + i);
+				}
+			}
+		};
+		Thread getter = new Thread() {
+			@Override
+			public void run() {
+				await(start);
+				for (int i = 0; i < count; i++) {
+					User.getInstance("upgraded" + i);
+				}
+			}
+		};
+		upgrader.start();
+		getter.start();
+		start.countDown();
+		upgrader.join();
+		getter.join();
+
+		for (int i = 0; i < count; i++) {
+			assertSame(friends[i], User.getInstance("upgraded" + i));
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
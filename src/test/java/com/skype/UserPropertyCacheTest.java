@@ -0,0 +1,82 @@
+package com.skype;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UserPropertyCacheTest {
+	private FakeConnector connector;
+
+	@Before
+	public void setUp() throws Exception {
+		connector = FakeConnector.install();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		User.setPropertyCacheEnabled(false);
+		User.setPropertyCacheTimeToLive(30, TimeUnit.SECONDS);
+		FakeConnector.uninstall();
+	}
+
+	@Test
+	public void onCacheDisabled_ShouldSendGetForEveryCall() throws Exception {
+		connector.setProperty("USER", "cache.disabled", "FULLNAME", "Disabled");
+		User user = User.getInstance("cache.disabled");
+
+		assertEquals("Disabled", user.getFullName());
+		assertEquals("Disabled", user.getFullName());
+
+		assertEquals(2, connector.countSentCommands("GET USER cache.disabled FULLNAME"));
+	}
+
+	@Test
+	public void onCacheEnabled_ShouldSendGetOnlyOnce() throws Exception {
+		User.setPropertyCacheEnabled(true);
+		connector.setProperty("USER", "cache.once", "FULLNAME", "Once");
+		User user = User.getInstance("cache.once");
+
+		assertEquals("Once", user.getFullName());
+		assertEquals("Once", user.getFullName());
+
+		assertEquals(1, connector.countSentCommands("GET USER cache.once FULLNAME"));
+	}
+
+	@Test
+	public void onNotification_ShouldReplaceCachedValue() throws Exception {
+		User.setPropertyCacheEnabled(true);
+		connector.setProperty("USER", "cache.notified", "ONLINESTATUS", "ONLINE");
+		User user = User.getInstance("cache.notified");
+		assertEquals(User.Status.ONLINE, user.getOnlineStatus());
+
+		connector.notify("USER cache.notified ONLINESTATUS AWAY");
+
+		long deadline = System.currentTimeMillis() + 1000;
+		while (user.getOnlineStatus() != User.Status.AWAY && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(User.Status.AWAY, user.getOnlineStatus());
+		assertEquals(1, connector.countSentCommands("GET USER cache.notified ONLINESTATUS"));
+	}
+
+	@Test
+	public void onExpiredTimeToLive_ShouldSendGetAgainForPropertyNotNotified() throws Exception {
+		User.setPropertyCacheEnabled(true);
+		User.setPropertyCacheTimeToLive(0, TimeUnit.SECONDS);
+		connector.setProperty("USER", "cache.ttl", "SPEEDDIAL", "12");
+		connector.setProperty("USER", "cache.ttl", "FULLNAME", "Ttl");
+		User user = User.getInstance("cache.ttl");
+
+		user.getSpeedDial();
+		user.getSpeedDial();
+		user.getFullName();
+		user.getFullName();
+
+		assertEquals(2, connector.countSentCommands("GET USER cache.ttl SPEEDDIAL"));
+		assertEquals(1, connector.countSentCommands("GET USER cache.ttl FULLNAME"));
+	}
+}
@@ -0,0 +1,112 @@
+package com.skype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WarmStartFileTest {
+	private FakeConnector connector;
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("warmstart", ".bin");
+		connector = FakeConnector.install();
+		connector.setResponse("SEARCH FRIENDS", "USERS alice, bob");
+		connector.setResponse("SEARCH GROUPS CUSTOM", "GROUPS 10");
+		connector.setResponse("SEARCH GROUPS HARDWIRED", "GROUPS 1");
+		connector.setProperty("GROUP", "10", "DISPLAYNAME", "Work");
+		connector.setProperty("GROUP", "10", "USERS", "alice");
+		connector.setProperty("GROUP", "1", "USERS", "alice, bob");
+		connector.setProperty("USER", "alice", "FULLNAME", "Alice Liddell");
+		connector.setProperty("USER", "bob", "FULLNAME", "Bob Dylan");
+		connector.properties.put("PROFILE FULLNAME", "Carol Ann");
+		User.setPropertyCacheEnabled(true);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		User.setPropertyCacheEnabled(false);
+		FakeConnector.uninstall();
+		file.delete();
+	}
+
+	@Test
+	public void onWriteThenRead_ShouldKeepContent() throws Exception {
+		WarmStartFile.capture().write(file);
+
+		WarmStartFile loaded = WarmStartFile.read(file);
+
+		assertEquals("[alice, bob]", loaded.getFriends().keySet().toString());
+		assertEquals("Alice Liddell", loaded.getFriends().get("alice").get("FULLNAME"));
+		assertNull(loaded.getFriends().get("alice").get("MOOD_TEXT"));
+		assertEquals("{10=Work}", loaded.getGroupDisplayNames().toString());
+		assertEquals(2, loaded.getGroupMembers().get("1").length);
+		assertEquals("Carol Ann", loaded.getProfile().get("FULLNAME"));
+	}
+
+	@Test
+	public void onApply_ShouldServeSavedValuesWithoutCommandsUntilReconciled() throws Exception {
+		WarmStartFile.capture().write(file);
+		FakeConnector.uninstall();
+		connector = FakeConnector.install();
+		connector.setResponse("SEARCH FRIENDS", "USERS alice");
+		connector.setResponse("SEARCH GROUPS CUSTOM", "GROUPS ");
+		connector.setResponse("SEARCH GROUPS HARDWIRED", "GROUPS ");
+		connector.setProperty("USER", "alice", "FULLNAME", "Alice Pleasance");
+		connector.properties.put("PROFILE FULLNAME", "Carol");
+
+		WarmStartFile.read(file).apply();
+		connector.sentCommands.clear();
+
+		ContactList contactList = Skype.getContactList();
+		assertEquals(2, contactList.getAllFriends().length);
+		assertEquals("10", contactList.getGroup("Work").getId());
+		assertEquals("Alice Liddell", User.getInstance("alice").getFullName());
+		assertEquals("Carol Ann", Skype.getProfile().getFullName());
+		assertEquals(0, connector.sentCommands.size());
+
+		WarmStartFile.reconcile();
+
+		assertEquals(1, contactList.getAllFriends().length);
+		assertNull(contactList.getGroup("Work"));
+		assertEquals("Alice Pleasance", User.getInstance("alice").getFullName());
+		assertEquals("Carol", Skype.getProfile().getFullName());
+	}
+
+	@Test
+	public void onApplyWithUserCacheDisabled_ShouldReadUserPropertiesFromClient() throws Exception {
+		WarmStartFile.capture().write(file);
+		User.setPropertyCacheEnabled(false);
+		connector.setProperty("USER", "alice", "FULLNAME", "Alice Pleasance");
+
+		WarmStartFile.read(file).apply();
+		connector.sentCommands.clear();
+
+		assertEquals("Alice Pleasance", User.getInstance("alice").getFullName());
+		assertEquals(1, connector.countSentCommands("GET USER alice FULLNAME"));
+		WarmStartFile.reconcile();
+	}
+
+	@Test
+	public void onTruncatedFile_ShouldFailToRead() throws Exception {
+		WarmStartFile.capture().write(file);
+		FileOutputStream out = new FileOutputStream(file, true);
+		out.getChannel().truncate(file.length() - 3);
+		out.close();
+
+		try {
+			WarmStartFile.read(file);
+			fail("the truncated file should not be read");
+		} catch (IOException e) {
+		}
+	}
+}
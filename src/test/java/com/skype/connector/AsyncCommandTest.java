@@ -0,0 +1,273 @@
+package com.skype.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncCommandTest {
+	/**
+	 * Connector answering GET commands with the requested property name as value,
+	 * and ignoring commands containing NOREPLY.
+	 */
+	static class AnsweringConnector extends Connector {
+		final List<String> sentCommands = new CopyOnWriteArrayList<String>();
+
+		@Override
+		protected void initializeImpl() throws ConnectorException {
+		}
+
+		@Override
+		protected Status connect(int timeout) throws ConnectorException {
+			setStatus(Status.ATTACHED);
+			return Status.ATTACHED;
+		}
+
+		@Override
+		protected void disposeImpl() throws ConnectorException {
+		}
+
+		@Override
+		protected void sendCommand(String command) {
+			sentCommands.add(command);
+			if (command.contains("NOREPLY")) {
+				return;
+			}
+			String id = "";
+			if (command.startsWith("#")) {
+				id = command.substring(0, command.indexOf(' ') + 1);
+				command = command.substring(id.length());
+			}
+			if (command.startsWith("GET ")) {
+				String property = command.substring(command.lastIndexOf(' ') + 1);
+				fireMessageReceived(id + command.substring("GET ".length()) + " " + property);
+			} else {
+				fireMessageReceived(id + command);
+			}
+		}
+	}
+
+	/**
+	 * Connector answering GET commands like {@link AnsweringConnector}, but
+	 * firing the responses and the notifications on its own receiving thread
+	 * like a real Skype client.
+	 */
+	static class ReceivingThreadConnector extends AnsweringConnector {
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		private final Thread receiver = new Thread("ReceivingThreadConnector") {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						fireMessageReceived(received.take());
+					}
+				} catch (InterruptedException e) {
+				}
+			}
+		};
+
+		ReceivingThreadConnector() {
+			receiver.setDaemon(true);
+			receiver.start();
+		}
+
+		@Override
+		protected void sendCommand(String command) {
+			sentCommands.add(command);
+			String id = command.substring(0, command.indexOf(' ') + 1);
+			command = command.substring(id.length());
+			String property = command.substring(command.lastIndexOf(' ') + 1);
+			received.add(id + command.substring("GET ".length()) + " " + property);
+		}
+
+		@Override
+		protected void disposeImpl() throws ConnectorException {
+			receiver.interrupt();
+		}
+	}
+
+	private final AnsweringConnector connector = new AnsweringConnector();
+
+	@After
+	public void tearDown() throws Exception {
+		connector.dispose();
+	}
+
+	@Test
+	public void onExecuteWithIdAsync_ShouldCompleteWithResponseWithoutId() throws Exception {
+		connector.connect();
+
+		CommandFuture future = connector.executeWithIdAsync("GET USER echo123 FULLNAME", "USER echo123 FULLNAME ");
+
+		assertEquals("USER echo123 FULLNAME FULLNAME", future.get(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void onExecuteAsync_ShouldNotifyCallback() throws Exception {
+		connector.connect();
+		final AtomicReference<String> actual = new AtomicReference<String>();
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		connector.executeAsync("GET CHAT foo STATUS", "CHAT foo STATUS ").addCallback(new CommandCallback() {
+			public void commandCompleted(String response) {
+				actual.set(response);
+				latch.countDown();
+			}
+
+			public void commandFailed(ConnectorException cause) {
+				latch.countDown();
+			}
+		});
+
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+		assertEquals("CHAT foo STATUS STATUS", actual.get());
+	}
+
+	@Test
+	public void onTimeout_ShouldRetryOnceThenFailWithNotAttached() throws Exception {
+		connector.connect();
+		connector.setCommandTimeout(50);
+
+		CommandFuture future = connector.executeWithIdAsync("GET USER NOREPLY FULLNAME", "USER NOREPLY FULLNAME ");
+		try {
+			future.get(2, TimeUnit.SECONDS);
+			throw new AssertionError("the command should time out");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof NotAttachedException);
+		}
+		int sent = 0;
+		for (String command : connector.sentCommands) {
+			if (command.contains("NOREPLY")) {
+				sent++;
+			}
+		}
+		assertEquals(2, sent);
+	}
+
+	@Test
+	public void onExecuteWithIdForSeveralCommands_ShouldReturnResponsesInOrder() throws Exception {
+		connector.connect();
+
+		String[] responses = connector.executeWithId(
+				new String[] {"GET USER echo123 FULLNAME", "GET USER echo123 CITY"},
+				new String[] {"USER echo123 FULLNAME ", "USER echo123 CITY "});
+
+		assertEquals("USER echo123 FULLNAME FULLNAME", responses[0]);
+		assertEquals("USER echo123 CITY CITY", responses[1]);
+	}
+
+	@Test
+	public void onSyncListenerExecutingCommandsDuringBurst_ShouldNotDeadlockOnFullRing() throws Exception {
+		final ReceivingThreadConnector receiving = new ReceivingThreadConnector();
+		try {
+			receiving.setStringProperty(Connector.SENDER_QUEUE_CAPACITY_PROPERTY, "8");
+			receiving.connect();
+			final AtomicInteger handled = new AtomicInteger();
+			receiving.addConnectorListener(new AbstractConnectorListener() {
+				@Override
+				public void messageReceived(ConnectorMessageEvent event) {
+					String message = event.getMessage();
+					if (!message.endsWith("STATUS RECEIVED")) {
+						return;
+					}
+					String id = message.split(" ")[1];
+					try {
+						receiving.executeWithId("GET CHATMESSAGE " + id + " BODY", "CHATMESSAGE " + id + " BODY ");
+						handled.incrementAndGet();
+					} catch (ConnectorException e) {
+					}
+				}
+			}, false, true);
+
+			for (int i = 0; i < 100; i++) {
+				receiving.received.add("CHATMESSAGE " + (1000 + i) + " STATUS RECEIVED");
+			}
+			long deadline = System.currentTimeMillis() + 5000;
+			while (handled.get() < 100 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+
+			assertEquals(100, handled.get());
+		} finally {
+			receiving.dispose();
+		}
+	}
+
+	@Test
+	public void onIdenticalGetInFlight_ShouldSendOneCommandAndShareResponse() throws Exception {
+		connector.connect();
+		connector.sentCommands.clear();
+
+		CommandFuture first = connector.executeWithIdAsync("GET CHATMESSAGE NOREPLY CHATNAME", "CHATMESSAGE NOREPLY CHATNAME ");
+		CommandFuture second = connector.executeWithIdAsync("GET CHATMESSAGE NOREPLY CHATNAME", "CHATMESSAGE NOREPLY CHATNAME ");
+		assertEquals(1, connector.sentCommands.size());
+		String sent = connector.sentCommands.get(0);
+		connector.fireMessageReceived(sent.substring(0, sent.indexOf(' ') + 1) + "CHATMESSAGE NOREPLY CHATNAME #foo/$bar;1");
+
+		assertEquals("CHATMESSAGE NOREPLY CHATNAME #foo/$bar;1", first.get(1, TimeUnit.SECONDS));
+		assertEquals("CHATMESSAGE NOREPLY CHATNAME #foo/$bar;1", second.get(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void onGetAfterSetWhileIdenticalGetInFlight_ShouldSendGetAgain() throws Exception {
+		connector.connect();
+		connector.sentCommands.clear();
+
+		CommandFuture before = connector.executeWithIdAsync("GET USER NOREPLY MOOD_TEXT", "USER NOREPLY MOOD_TEXT ");
+		connector.executeWithIdAsync("SET USER NOREPLY MOOD_TEXT changed", "USER NOREPLY MOOD_TEXT ");
+		CommandFuture after = connector.executeWithIdAsync("GET USER NOREPLY MOOD_TEXT", "USER NOREPLY MOOD_TEXT ");
+
+		assertEquals(3, connector.sentCommands.size());
+		String sent = connector.sentCommands.get(0);
+		connector.fireMessageReceived(sent.substring(0, sent.indexOf(' ') + 1) + "USER NOREPLY MOOD_TEXT old");
+		assertEquals("USER NOREPLY MOOD_TEXT old", before.get(1, TimeUnit.SECONDS));
+		assertFalse(after.isDone());
+		sent = connector.sentCommands.get(2);
+		connector.fireMessageReceived(sent.substring(0, sent.indexOf(' ') + 1) + "USER NOREPLY MOOD_TEXT changed");
+		assertEquals("USER NOREPLY MOOD_TEXT changed", after.get(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void onBlockingCallback_ShouldNotHoldBackOtherResponses() throws Exception {
+		connector.connect();
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch called = new CountDownLatch(1);
+		final AtomicReference<Thread> callbackThread = new AtomicReference<Thread>();
+
+		connector.executeWithIdAsync("GET USER echo123 FULLNAME", "USER echo123 FULLNAME ").addCallback(new CommandCallback() {
+			public void commandCompleted(String response) {
+				callbackThread.set(Thread.currentThread());
+				called.countDown();
+				try {
+					blocked.await();
+				} catch (InterruptedException e) {
+				}
+			}
+
+			public void commandFailed(ConnectorException cause) {
+			}
+		});
+		assertTrue(called.await(1, TimeUnit.SECONDS));
+		CommandFuture next = connector.executeWithIdAsync("GET USER echo123 CITY", "USER echo123 CITY ");
+
+		try {
+			assertEquals("USER echo123 CITY CITY", next.get(1, TimeUnit.SECONDS));
+			assertNotSame(Thread.currentThread(), callbackThread.get());
+		} finally {
+			blocked.countDown();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.skype.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class CommandAdmissionTest {
+	private static final Executor DIRECT = new Executor() {
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	private final List<String> started = new ArrayList<String>();
+
+	private Runnable start(final String command) {
+		return new Runnable() {
+			public void run() {
+				started.add(command);
+			}
+		};
+	}
+
+	@Test
+	public void onAdmitOverLimitWithRejectPolicy_ShouldThrowConnectorException() throws Exception {
+		CommandAdmission subject = new CommandAdmission(1, CommandAdmission.Policy.REJECT, 0, DIRECT);
+		subject.admit("A", start("A"));
+		try {
+			subject.admit("B", start("B"));
+			fail("the second command should be rejected");
+		} catch (ConnectorException e) {
+		}
+		subject.release();
+		subject.admit("C", start("C"));
+
+		assertEquals("[A, C]", started.toString());
+	}
+
+	@Test
+	public void onAdmitOverLimitWithQueuePolicy_ShouldStartQueuedCommandOnRelease() throws Exception {
+		CommandAdmission subject = new CommandAdmission(1, CommandAdmission.Policy.QUEUE, 1, DIRECT);
+		subject.admit("A", start("A"));
+		subject.admit("B", start("B"));
+		assertEquals(1, subject.getQueuedCount());
+		try {
+			subject.admit("C", start("C"));
+			fail("the queue should be full");
+		} catch (ConnectorException e) {
+		}
+
+		subject.release();
+
+		assertEquals("[A, B]", started.toString());
+		assertEquals(0, subject.getQueuedCount());
+		assertEquals(1, subject.getInFlightCount());
+	}
+
+	@Test
+	public void onAdmitOverLimitWithBlockPolicy_ShouldWaitForRelease() throws Exception {
+		final CommandAdmission subject = new CommandAdmission(1, CommandAdmission.Policy.BLOCK, 0, DIRECT);
+		subject.admit("A", start("A"));
+		Thread releaser = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+				}
+				subject.release();
+			}
+		};
+		releaser.start();
+
+		subject.admit("B", start("B"));
+
+		releaser.join();
+		assertEquals(1, subject.getInFlightCount());
+	}
+
+	@Test
+	public void onRelease_ShouldStartQueuedCommandOnStarterNotOnReleasingThread() throws Exception {
+		ExecutorService starter = Executors.newSingleThreadExecutor();
+		try {
+			CommandAdmission subject = new CommandAdmission(1, CommandAdmission.Policy.QUEUE, 1, starter);
+			final AtomicReference<Thread> startThread = new AtomicReference<Thread>();
+			subject.admit("A", start("A"));
+			subject.admit("B", new Runnable() {
+				public void run() {
+					startThread.set(Thread.currentThread());
+				}
+			});
+
+			subject.release();
+			starter.shutdown();
+			assertTrue(starter.awaitTermination(1, TimeUnit.SECONDS));
+
+			assertNotSame(Thread.currentThread(), startThread.get());
+			assertEquals(1, subject.getInFlightCount());
+		} finally {
+			starter.shutdownNow();
+		}
+	}
+
+	@Test
+	public void onManyQueuedCommandsReleasingAtOnce_ShouldLoopWithoutRecursion() throws Exception {
+		final CommandAdmission subject = new CommandAdmission(1, CommandAdmission.Policy.QUEUE, 100000, DIRECT);
+		subject.admit("A", start("A"));
+		for (int i = 0; i < 100000; i++) {
+			// like a command cancelled while queued
+			subject.admit("B", new Runnable() {
+				public void run() {
+					subject.release();
+				}
+			});
+		}
+
+		subject.release();
+
+		assertEquals(0, subject.getQueuedCount());
+		assertEquals(0, subject.getInFlightCount());
+	}
+}
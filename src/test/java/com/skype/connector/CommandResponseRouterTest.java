@@ -0,0 +1,76 @@
+package com.skype.connector;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CommandResponseRouterTest {
+	private final CommandResponseRouter subject = new CommandResponseRouter();
+
+	private static class RecordingHandler implements CommandResponseRouter.ResponseHandler {
+		final List<String> responses = new ArrayList<String>();
+
+		public void responseReceived(String response) {
+			responses.add(response);
+		}
+	}
+
+	@Test
+	public void onDispatch_ShouldDeliverResponseToRouteWithSameCommandId() {
+		RecordingHandler first = new RecordingHandler();
+		RecordingHandler second = new RecordingHandler();
+		subject.addRoute(new String[] {"#1 USER echo123 FULLNAME ", "#1 ERROR "}, first);
+		subject.addRoute(new String[] {"#2 USER echo123 FULLNAME ", "#2 ERROR "}, second);
+
+		subject.dispatch("#2 USER echo123 FULLNAME Echo Test");
+		subject.dispatch("#1 ERROR 7 Invalid property");
+
+		assertEquals("[#1 ERROR 7 Invalid property]", first.responses.toString());
+		assertEquals("[#2 USER echo123 FULLNAME Echo Test]", second.responses.toString());
+	}
+
+	@Test
+	public void onDispatch_ShouldDeliverResponseToRouteWithMatchingHeader() {
+		RecordingHandler users = new RecordingHandler();
+		RecordingHandler topic = new RecordingHandler();
+		subject.addRoute(new String[] {"USERS ", "ERROR "}, users);
+		subject.addRoute(new String[] {"ALTER CHAT SETTOPIC", "ERROR "}, topic);
+
+		subject.dispatch("USER echo123 ONLINESTATUS ONLINE");
+		subject.dispatch("USERS echo123, foo");
+		subject.dispatch("ALTER CHAT SETTOPIC");
+
+		assertEquals("[USERS echo123, foo]", users.responses.toString());
+		assertEquals("[ALTER CHAT SETTOPIC]", topic.responses.toString());
+	}
+
+	@Test
+	public void onDispatch_ShouldNotDeliverToRemovedRoute() {
+		RecordingHandler handler = new RecordingHandler();
+		subject.addRoute(new String[] {"#3 CHAT foo STATUS ", "#3 ERROR "}, handler).remove();
+		subject.addRoute(new String[] {"CHATS ", "ERROR "}, handler).remove();
+
+		subject.dispatch("#3 CHAT foo STATUS DIALOG");
+		subject.dispatch("CHATS foo, bar");
+
+		assertEquals(0, handler.responses.size());
+	}
+
+	@Test
+	public void onDispatch_ShouldAskCheckerRoutesForEveryMessage() {
+		RecordingHandler handler = new RecordingHandler();
+		subject.addRoute(new NotificationChecker() {
+			public boolean isTarget(String message) {
+				return message.endsWith("SENDING ");
+			}
+		}, handler);
+
+		subject.dispatch("APPLICATION foo SENDING 1=10");
+		subject.dispatch("APPLICATION foo SENDING ");
+
+		assertEquals("[APPLICATION foo SENDING ]", handler.responses.toString());
+	}
+}
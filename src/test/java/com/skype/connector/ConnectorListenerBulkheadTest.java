@@ -0,0 +1,115 @@
+package com.skype.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ConnectorListenerBulkheadTest {
+	private ConnectorListenerBulkhead subject;
+
+	/**
+	 * Listener recording the received messages, blocked until released.
+	 */
+	private static class GatedListener extends AbstractConnectorListener {
+		final List<String> messages = new CopyOnWriteArrayList<String>();
+		final CountDownLatch gate = new CountDownLatch(1);
+		final CountDownLatch entered = new CountDownLatch(1);
+
+		@Override
+		public void messageReceived(ConnectorMessageEvent event) {
+			entered.countDown();
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				return;
+			}
+			messages.add(event.getMessage());
+		}
+	}
+
+	@After
+	public void tearDown() {
+		subject.close();
+	}
+
+	@Test
+	public void onFullQueueWithDropNewest_ShouldDropTheNewEvents() throws Exception {
+		GatedListener listener = new GatedListener();
+		subject = new ConnectorListenerBulkhead(listener, 2, ConnectorListenerBulkhead.OverflowPolicy.DROP_NEWEST);
+
+		fire("USER a FULLNAME A");
+		assertTrue(listener.entered.await(1, TimeUnit.SECONDS));
+		fire("USER b FULLNAME B");
+		fire("USER c FULLNAME C");
+		fire("USER d FULLNAME D");
+		assertEquals(2, subject.getQueueSize());
+		listener.gate.countDown();
+
+		awaitDelivered(3);
+		assertEquals("[USER a FULLNAME A, USER b FULLNAME B, USER c FULLNAME C]", listener.messages.toString());
+		assertEquals(1, subject.getDroppedCount());
+	}
+
+	@Test
+	public void onFullQueueWithDropOldest_ShouldDropTheQueuedEvents() throws Exception {
+		GatedListener listener = new GatedListener();
+		subject = new ConnectorListenerBulkhead(listener, 2, ConnectorListenerBulkhead.OverflowPolicy.DROP_OLDEST);
+
+		fire("USER a FULLNAME A");
+		assertTrue(listener.entered.await(1, TimeUnit.SECONDS));
+		fire("USER b FULLNAME B");
+		fire("USER c FULLNAME C");
+		fire("USER d FULLNAME D");
+		listener.gate.countDown();
+
+		awaitDelivered(3);
+		assertEquals("[USER a FULLNAME A, USER c FULLNAME C, USER d FULLNAME D]", listener.messages.toString());
+		assertEquals(1, subject.getDroppedCount());
+	}
+
+	@Test
+	public void onSlowListener_ShouldCountSlowEventsAndTimeSpent() throws Exception {
+		subject = new ConnectorListenerBulkhead(new AbstractConnectorListener() {
+			@Override
+			public void messageReceived(ConnectorMessageEvent event) {
+				if (event.getMessage().startsWith("USER slow")) {
+					try {
+						Thread.sleep(30);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}, 16, ConnectorListenerBulkhead.OverflowPolicy.BLOCK);
+		subject.setSlowEventThreshold(20, TimeUnit.MILLISECONDS);
+
+		fire("USER fast FULLNAME F");
+		fire("USER slow FULLNAME S");
+		fire("USER fast FULLNAME F");
+
+		awaitDelivered(3);
+		assertEquals(1, subject.getSlowCount());
+		assertEquals(0, subject.getDroppedCount());
+		assertTrue(subject.getMaxTime(TimeUnit.MILLISECONDS) >= 20);
+		assertTrue(subject.getBusyTime(TimeUnit.MILLISECONDS) >= subject.getMaxTime(TimeUnit.MILLISECONDS));
+	}
+
+	private void fire(String message) {
+		subject.messageReceived(new ConnectorMessageEvent(this, message));
+	}
+
+	private void awaitDelivered(long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 1000;
+		while (subject.getDeliveredCount() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(count, subject.getDeliveredCount());
+	}
+}
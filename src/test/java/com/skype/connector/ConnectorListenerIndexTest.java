@@ -0,0 +1,41 @@
+package com.skype.connector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ConnectorListenerIndexTest {
+	private final ConnectorListenerIndex subject = new ConnectorListenerIndex();
+	private final ConnectorListener all = new AbstractConnectorListener() {};
+	private final ConnectorListener users = new AbstractConnectorListener() {};
+	private final ConnectorListener chats = new AbstractConnectorListener() {};
+	private final ConnectorListener application = new AbstractConnectorListener() {};
+
+	@Test
+	public void onGetListeners_ShouldOnlyReturnListenersSubscribedToMessageTopic() {
+		subject.add(users, new String[] {"USER"});
+		subject.add(all, null);
+		subject.add(chats, new String[] {"CHAT", "CHATMESSAGE"});
+		subject.add(application, new String[] {"APPLICATION foo"});
+
+		assertArrayEquals(new ConnectorListener[] {users, all}, subject.getListeners("USER echo123 ONLINESTATUS ONLINE"));
+		assertArrayEquals(new ConnectorListener[] {all, chats}, subject.getListeners("CHATMESSAGE 12 STATUS RECEIVED"));
+		assertArrayEquals(new ConnectorListener[] {all, application}, subject.getListeners("APPLICATION foo STREAMS "));
+		assertArrayEquals(new ConnectorListener[] {all}, subject.getListeners("APPLICATION foobar STREAMS "));
+		assertArrayEquals(new ConnectorListener[] {all}, subject.getListeners("USERSTATUS ONLINE"));
+	}
+
+	@Test
+	public void onRemove_ShouldRemoveAllRegistrationsOfListener() {
+		subject.add(chats, new String[] {"CHAT"});
+		subject.add(chats, null);
+		subject.add(users, new String[] {"USER"});
+
+		subject.remove(chats);
+
+		assertEquals(0, subject.getListeners("CHAT foo STATUS DIALOG").length);
+		assertArrayEquals(new ConnectorListener[] {users}, subject.getAllListeners());
+		assertEquals(0, subject.getUnfilteredListeners().length);
+	}
+}
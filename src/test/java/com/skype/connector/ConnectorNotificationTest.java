@@ -0,0 +1,41 @@
+package com.skype.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ConnectorNotificationTest {
+	@Test
+	public void onParse_ShouldSplitTypeIdPropertyAndValue() {
+		ConnectorNotification subject = new ConnectorNotification("USER echo123 MOOD_TEXT Hello world");
+
+		assertTrue(subject.isObjectType("USER"));
+		assertFalse(subject.isObjectType("USERSTATUS"));
+		assertTrue(subject.isObjectId("echo123"));
+		assertTrue(subject.isPropertyName("MOOD_TEXT"));
+		assertFalse(subject.isPropertyName("MOOD"));
+		assertEquals("USER", subject.getObjectType());
+		assertEquals("echo123", subject.getObjectId());
+		assertEquals("MOOD_TEXT", subject.getPropertyName());
+		assertEquals("Hello world", subject.getPropertyValue());
+	}
+
+	@Test
+	public void onParseOfShortMessages_ShouldReturnNullForMissingParts() {
+		ConnectorNotification status = new ConnectorNotification("USERSTATUS ONLINE");
+		assertEquals("ONLINE", status.getObjectId());
+		assertNull(status.getPropertyName());
+		assertNull(status.getPropertyValue());
+
+		ConnectorNotification emptyValue = new ConnectorNotification("USER echo123 FULLNAME ");
+		assertEquals("FULLNAME", emptyValue.getPropertyName());
+		assertEquals("", emptyValue.getPropertyValue());
+
+		ConnectorNotification pong = new ConnectorNotification("PONG");
+		assertTrue(pong.isObjectType("PONG"));
+		assertNull(pong.getObjectId());
+	}
+}
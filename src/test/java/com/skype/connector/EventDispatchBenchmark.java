@@ -0,0 +1,145 @@
+package com.skype.connector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.skype.connector.Connector.Status;
+
+/**
+ * Measures the messages per second delivered to one synchronous and one
+ * asynchronous listener group, with the former executor-based dispatch
+ * (two Runnables and two listener array copies per message) and with the
+ * event rings. Run it with <tt>java com.skype.connector.EventDispatchBenchmark [messages]</tt>.
+ */
+public class EventDispatchBenchmark {
+	private static final int LISTENERS_PER_GROUP = 3;
+	private static final int ASYNC_STRIPES = 4;
+
+	private static final AtomicLong delivered = new AtomicLong();
+
+	private static final ThreadFactory DAEMON = new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r);
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	public static void main(String[] args) throws Exception {
+		int messages = args.length == 0 ? 1000000 : Integer.parseInt(args[0]);
+		String[] lines = new String[1024];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = "CHATMESSAGE " + (100000 + i) + " STATUS RECEIVED";
+		}
+		for (int round = 0; round < 3; round++) {
+			System.out.println("round " + (round + 1));
+			report("executors", runExecutors(lines, messages), messages);
+			report("rings    ", runRings(lines, messages), messages);
+		}
+	}
+
+	private static void report(String name, long nanos, int messages) {
+		System.out.printf("  %s %,12.0f messages/sec%n", name, messages / (nanos / 1e9));
+	}
+
+	private static List<ConnectorListener> createListeners() {
+		List<ConnectorListener> listeners = new CopyOnWriteArrayList<ConnectorListener>();
+		for (int i = 0; i < LISTENERS_PER_GROUP; i++) {
+			listeners.add(new AbstractConnectorListener() {
+				@Override
+				public void messageReceived(ConnectorMessageEvent event) {
+					if (event.getMessage().length() > 0) {
+						delivered.incrementAndGet();
+					}
+				}
+			});
+		}
+		return listeners;
+	}
+
+	private static void fire(ConnectorListener[] listeners, ConnectorMessageEvent event) {
+		for (int i = listeners.length - 1; 0 <= i; i--) {
+			listeners[i].messageReceived(event);
+		}
+	}
+
+	private static long runExecutors(String[] lines, int messages) throws Exception {
+		final List<ConnectorListener> syncListeners = createListeners();
+		final List<ConnectorListener> asyncListeners = createListeners();
+		ExecutorService syncSender = Executors.newSingleThreadExecutor(DAEMON);
+		ExecutorService asyncSender = Executors.newCachedThreadPool(DAEMON);
+		final Object source = new Object();
+		delivered.set(0);
+		long start = System.nanoTime();
+		for (int i = 0; i < messages; i++) {
+			final String message = lines[i & (lines.length - 1)];
+			syncSender.execute(new Runnable() {
+				public void run() {
+					fire(syncListeners.toArray(new ConnectorListener[0]), new ConnectorMessageEvent(source, message));
+				}
+			});
+			asyncSender.execute(new Runnable() {
+				public void run() {
+					fire(asyncListeners.toArray(new ConnectorListener[0]), new ConnectorMessageEvent(source, message));
+				}
+			});
+		}
+		awaitDelivery(messages);
+		long elapsed = System.nanoTime() - start;
+		syncSender.shutdown();
+		asyncSender.shutdown();
+		return elapsed;
+	}
+
+	private static long runRings(String[] lines, int messages) throws Exception {
+		List<ConnectorListener> syncListeners = createListeners();
+		List<ConnectorListener> asyncListeners = createListeners();
+		EventRing syncSender = new EventRing(4096, new Handler(syncListeners), DAEMON);
+		EventRing[] asyncSenders = new EventRing[ASYNC_STRIPES];
+		for (int i = 0; i < ASYNC_STRIPES; i++) {
+			asyncSenders[i] = new EventRing(4096, new Handler(asyncListeners), DAEMON);
+		}
+		Object source = new Object();
+		delivered.set(0);
+		long start = System.nanoTime();
+		for (int i = 0; i < messages; i++) {
+			ConnectorMessageEvent event = new ConnectorMessageEvent(source, lines[i & (lines.length - 1)]);
+			syncSender.publish(event, true);
+			asyncSenders[(event.getNotification().getObjectId().hashCode() & 0x7fffffff) % ASYNC_STRIPES].publish(event, true);
+		}
+		awaitDelivery(messages);
+		long elapsed = System.nanoTime() - start;
+		syncSender.stop();
+		for (EventRing asyncSender : asyncSenders) {
+			asyncSender.stop();
+		}
+		return elapsed;
+	}
+
+	private static void awaitDelivery(int messages) throws InterruptedException {
+		long expected = (long)messages * LISTENERS_PER_GROUP * 2;
+		while (delivered.get() < expected) {
+			Thread.sleep(1);
+		}
+	}
+
+	private static final class Handler implements EventRing.Handler {
+		private final List<ConnectorListener> listeners;
+
+		Handler(List<ConnectorListener> listeners) {
+			this.listeners = listeners;
+		}
+
+		public void messageEvent(ConnectorMessageEvent event, boolean isReceived) {
+			// the connector also takes a snapshot of the listeners per message
+			fire(listeners.toArray(new ConnectorListener[0]), event);
+		}
+
+		public void statusChanged(Status status) {
+		}
+	}
+}
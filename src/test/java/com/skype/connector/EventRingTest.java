@@ -0,0 +1,123 @@
+package com.skype.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.skype.connector.Connector.Status;
+
+public class EventRingTest {
+	private final List<String> delivered = new CopyOnWriteArrayList<String>();
+
+	private class RecordingHandler implements EventRing.Handler {
+		private final CountDownLatch latch;
+
+		RecordingHandler(int expected) {
+			latch = new CountDownLatch(expected);
+		}
+
+		public void messageEvent(ConnectorMessageEvent event, boolean isReceived) {
+			delivered.add(event.getMessage());
+			latch.countDown();
+		}
+
+		public void statusChanged(Status status) {
+			delivered.add(status.toString());
+			latch.countDown();
+		}
+	}
+
+	@Test
+	public void onPublish_ShouldDeliverInOrderEvenWhenRingWraps() throws Exception {
+		RecordingHandler handler = new RecordingHandler(1001);
+		EventRing subject = new EventRing(8, handler, Executors.defaultThreadFactory());
+
+		for (int i = 0; i < 1000; i++) {
+			subject.publish(new ConnectorMessageEvent(this, "CALL 1 DURATION " + i), true);
+		}
+		subject.publish(Status.ATTACHED);
+
+		assertTrue(handler.latch.await(5, TimeUnit.SECONDS));
+		subject.stop();
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("CALL 1 DURATION " + i, delivered.get(i));
+		}
+		assertEquals("ATTACHED", delivered.get(1000));
+		assertEquals(0, subject.size());
+	}
+
+	@Test
+	public void onPublishFromConsumerWithFullRing_ShouldSpillWithoutWaitingForItself() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(4);
+		final EventRing[] ring = new EventRing[1];
+		ring[0] = new EventRing(1, new EventRing.Handler() {
+			public void messageEvent(ConnectorMessageEvent event, boolean isReceived) {
+				if (event.getMessage().equals("FIRST")) {
+					ring[0].publish(new ConnectorMessageEvent(this, "SECOND"), true);
+					ring[0].publish(new ConnectorMessageEvent(this, "THIRD"), true);
+				}
+				delivered.add(event.getMessage());
+				latch.countDown();
+			}
+
+			public void statusChanged(Status status) {
+			}
+		}, Executors.defaultThreadFactory());
+
+		ring[0].publish(new ConnectorMessageEvent(this, "FIRST"), true);
+		ring[0].publish(new ConnectorMessageEvent(this, "FOURTH"), true);
+
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		ring[0].stop();
+		assertEquals(4, delivered.size());
+	}
+
+	@Test
+	public void onPublishToFullRing_ShouldSpillWithoutBlockingAndKeepOrder() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(101);
+		EventRing subject = new EventRing(4, new EventRing.Handler() {
+			public void messageEvent(ConnectorMessageEvent event, boolean isReceived) {
+				if (event.getMessage().equals("CALL 1 DURATION 0")) {
+					started.countDown();
+					try {
+						blocked.await();
+					} catch (InterruptedException e) {
+					}
+				}
+				delivered.add(event.getMessage());
+				done.countDown();
+			}
+
+			public void statusChanged(Status status) {
+				delivered.add(status.toString());
+				done.countDown();
+			}
+		}, Executors.defaultThreadFactory());
+
+		subject.publish(new ConnectorMessageEvent(this, "CALL 1 DURATION 0"), true);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		for (int i = 1; i < 100; i++) {
+			subject.publish(new ConnectorMessageEvent(this, "CALL 1 DURATION " + i), true);
+		}
+		subject.publish(Status.ATTACHED);
+		assertTrue(subject.size() > 4);
+		blocked.countDown();
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		subject.stop();
+		for (int i = 0; i < 100; i++) {
+			assertEquals("CALL 1 DURATION " + i, delivered.get(i));
+		}
+		assertEquals("ATTACHED", delivered.get(100));
+		assertEquals(0, subject.size());
+	}
+}
@@ -0,0 +1,141 @@
+package com.skype.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MissedMessageSynchronizerTest {
+	/**
+	 * Connector answering SEARCH MISSEDMESSAGES with a settable list and
+	 * echoing the other commands.
+	 */
+	static class MissedMessagesConnector extends Connector {
+		final List<String> sentCommands = new CopyOnWriteArrayList<String>();
+		volatile String missedMessages = "";
+		volatile boolean failAcknowledgements;
+
+		@Override
+		protected void initializeImpl() throws ConnectorException {
+		}
+
+		@Override
+		protected Status connect(int timeout) throws ConnectorException {
+			setStatus(Status.ATTACHED);
+			return Status.ATTACHED;
+		}
+
+		@Override
+		protected void disposeImpl() throws ConnectorException {
+		}
+
+		@Override
+		protected void sendCommand(String command) {
+			sentCommands.add(command);
+			String id = "";
+			if (command.startsWith("#")) {
+				id = command.substring(0, command.indexOf(' ') + 1);
+				command = command.substring(id.length());
+			}
+			if ("SEARCH MISSEDMESSAGES".equals(command)) {
+				fireMessageReceived(id + "CHATMESSAGES " + missedMessages);
+			} else if (command.startsWith("SET ") && failAcknowledgements) {
+				throw new IllegalStateException("broken pipe");
+			} else if (command.startsWith("SET ")) {
+				fireMessageReceived(id + command.substring("SET ".length()).replace(" SEEN", " STATUS READ"));
+			} else {
+				fireMessageReceived(id + command);
+			}
+		}
+
+		int countSentCommands(String prefix) {
+			int count = 0;
+			for (String command : sentCommands) {
+				if (command.replaceFirst("^#\\d+ ", "").startsWith(prefix)) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	private final MissedMessagesConnector connector = new MissedMessagesConnector();
+	private final List<String> received = new CopyOnWriteArrayList<String>();
+
+	@Before
+	public void setUp() throws Exception {
+		connector.connect();
+		connector.addConnectorListener(new AbstractConnectorListener() {
+			@Override
+			public void messageReceived(ConnectorMessageEvent event) {
+				if (event.getMessage().endsWith(" STATUS RECEIVED")) {
+					received.add(event.getMessage());
+				}
+			}
+		}, false, true);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connector.dispose();
+	}
+
+	@Test
+	public void onBurstOfRequests_ShouldScanOnce() throws Exception {
+		connector.missedMessages = "12";
+		connector.setMissedMessagesDebounceDelay(50);
+
+		for (int i = 0; i < 10; i++) {
+			connector.requestMissedMessages();
+		}
+		MissedMessageSynchronizer synchronizer = connector.getMissedMessageSynchronizer();
+		long deadline = System.currentTimeMillis() + 2000;
+		while (connector.countSentCommands("SET CHATMESSAGE 12 SEEN") == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+
+		assertEquals(1, synchronizer.getScanCount());
+		assertEquals(9, synchronizer.getCoalescedCount());
+		assertEquals(1, connector.countSentCommands("SEARCH MISSEDMESSAGES"));
+	}
+
+	@Test
+	public void onSeveralScans_ShouldFireOnlyNewMessagesInIdOrder() throws Exception {
+		connector.missedMessages = "5, 3";
+		connector.getMissedMessages();
+		connector.missedMessages = "6, 5, 3";
+		connector.getMissedMessages();
+
+		long deadline = System.currentTimeMillis() + 1000;
+		while (received.size() < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals("[CHATMESSAGE 3 STATUS RECEIVED, CHATMESSAGE 5 STATUS RECEIVED, CHATMESSAGE 6 STATUS RECEIVED]", received.toString());
+		assertEquals(5, connector.countSentCommands("SET CHATMESSAGE"));
+	}
+
+	@Test
+	public void onFailedRequestedScan_ShouldWriteToDebugOutput() throws Exception {
+		StringWriter debugOut = new StringWriter();
+		connector.setDebugOut(new PrintWriter(debugOut, true));
+		connector.setDebug(true);
+		connector.missedMessages = "7";
+		connector.failAcknowledgements = true;
+		connector.setMissedMessagesDebounceDelay(0);
+
+		connector.requestMissedMessages();
+		long deadline = System.currentTimeMillis() + 2000;
+		while (!debugOut.toString().contains("!! ") && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+
+		assertTrue(debugOut.toString().contains("!! The missed messages cannot be read: "));
+	}
+}